@@ -0,0 +1,100 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.config.TenantProperties;
+import com.portfoliogenerator.filter.ApiKeyAuthFilter;
+import com.portfoliogenerator.filter.BucketStore;
+import com.portfoliogenerator.filter.DistributedBucketStore;
+import com.portfoliogenerator.filter.InMemoryBucketProxyManager;
+import com.portfoliogenerator.filter.LocalBucketStore;
+import com.portfoliogenerator.filter.RateLimitingFilter;
+import com.portfoliogenerator.service.PortfolioIdCodec;
+import com.portfoliogenerator.service.TenantRegistry;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the servlet filters in front of every endpoint: the API key check
+ * followed by the per-client rate limiter. {@code distinctClients} spreads requests over
+ * that many client IPs to include bucket lookup and creation; most requests end up
+ * rate-limited either way, which is the path an abusive client exercises. {@code store}
+ * compares the in-process bucket store with the compare-and-swap distributed one.
+ * <p>
+ * {@code baseline} measures the mock request and response alone so their allocation can be
+ * subtracted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark {
+	private static final String API_KEY = "benchmark-key";
+	private static final FilterChain ENDPOINT = (request, response) -> { };
+
+	@Param({"/api/v1/jobs/stats", "/api/v1/resume/upload", "/abcde"})
+	private String path;
+
+	@Param({"1", "100000"})
+	private int distinctClients;
+
+	@Param({"local", "distributed"})
+	private String store;
+
+	private ApiKeyAuthFilter apiKeyAuthFilter;
+	private RateLimitingFilter rateLimitingFilter;
+	private FilterChain chain;
+	private int requestCount;
+
+	@Setup
+	public void setUp() {
+		TenantRegistry tenantRegistry = new TenantRegistry(new TenantProperties(), API_KEY, 1);
+		apiKeyAuthFilter = new ApiKeyAuthFilter(new PortfolioIdCodec(8, "filter-chain-benchmark"), tenantRegistry);
+		BucketStore bucketStore = "local".equals(store)
+				? new LocalBucketStore(100_000, Duration.ofMinutes(10), 16)
+				: new DistributedBucketStore(new InMemoryBucketProxyManager(
+						ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofMinutes(1))));
+		rateLimitingFilter = new RateLimitingFilter(bucketStore);
+		chain = (request, response) -> rateLimitingFilter.doFilter(request, response, ENDPOINT);
+	}
+
+	@Benchmark
+	public MockHttpServletResponse filterChain() throws ServletException, IOException {
+		MockHttpServletRequest request = newRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		apiKeyAuthFilter.doFilter(request, response, chain);
+		return response;
+	}
+
+	@Benchmark
+	public MockHttpServletResponse baseline() {
+		newRequest();
+		return new MockHttpServletResponse();
+	}
+
+	private MockHttpServletRequest newRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest(path.endsWith("upload") ? "POST" : "GET", path);
+		request.addHeader("X-API-Key", API_KEY);
+		int client = requestCount++ % distinctClients;
+		request.setRemoteAddr("10." + (client >>> 16 & 0xff) + "." + (client >>> 8 & 0xff) + "." + (client & 0xff));
+		return request;
+	}
+}
@@ -0,0 +1,76 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.service.StreamingHtmlCleaner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleaning of model output into a bare HTML document, which is all
+ * {@code GeminiService.cleanGeminiResponse} does. The input is wrapped in a markdown
+ * fence the way Gemini usually answers. {@code streamed} feeds it in small chunks as the
+ * SSE endpoint does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlCleaningBenchmark {
+	@Param({"16384", "262144", "2097152"})
+	private int htmlLength;
+
+	@Param({"64"})
+	private int chunkLength;
+
+	private String rawResponse;
+	private List<String> chunks;
+
+	@Setup
+	public void setUp() {
+		StringBuilder html = new StringBuilder(htmlLength + 256)
+				.append("```html\n")
+				.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<style>body{font-family:Arial,sans-serif}</style>\n</head>\n<body>\n");
+		int section = 0;
+		while (html.length() < htmlLength) {
+			html.append("<section class=\"card\"><h2>Section ").append(section++)
+					.append("</h2><p>Designed and shipped a resilient event pipeline on Kafka and Kubernetes.</p></section>\n");
+		}
+		rawResponse = html.append("</body>\n</html>\n```\n").toString();
+
+		chunks = new ArrayList<>();
+		for (int i = 0; i < rawResponse.length(); i += chunkLength) {
+			chunks.add(rawResponse.substring(i, Math.min(rawResponse.length(), i + chunkLength)));
+		}
+	}
+
+	@Benchmark
+	public String whole() throws IOException {
+		StreamingHtmlCleaner cleaner = new StreamingHtmlCleaner();
+		return cleaner.accept(rawResponse) + cleaner.finish();
+	}
+
+	@Benchmark
+	public void streamed(Blackhole blackhole) throws IOException {
+		StreamingHtmlCleaner cleaner = new StreamingHtmlCleaner();
+		for (String chunk : chunks) {
+			blackhole.consume(cleaner.accept(chunk));
+		}
+		blackhole.consume(cleaner.finish());
+	}
+}
@@ -0,0 +1,66 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.service.IdGeneratorService;
+import com.portfoliogenerator.service.PortfolioIdCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Portfolio ID allocation, single-threaded and contended. {@code blockSize} controls how
+ * often the allocator persists its high-water mark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+	@Param({"8"})
+	private int idLength;
+
+	@Param({"1000"})
+	private int blockSize;
+
+	private Path stateDirectory;
+	private IdGeneratorService idGeneratorService;
+
+	@Setup
+	public void setUp() throws IOException {
+		stateDirectory = Files.createTempDirectory("id-allocator-");
+		idGeneratorService = new IdGeneratorService(new PortfolioIdCodec(idLength, "id-generator-benchmark"), stateDirectory.toString(), 0, 6, blockSize);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		FileSystemUtils.deleteRecursively(stateDirectory);
+	}
+
+	@Benchmark
+	public String generateUniqueId() {
+		return idGeneratorService.generateUniqueId();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String generateUniqueIdContended() {
+		return idGeneratorService.generateUniqueId();
+	}
+}
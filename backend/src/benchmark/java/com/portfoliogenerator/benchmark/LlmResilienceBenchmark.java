@@ -0,0 +1,121 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.config.LlmResilienceProperties;
+import com.portfoliogenerator.config.TenantProperties;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import com.portfoliogenerator.service.AdaptiveConcurrencyLimit;
+import com.portfoliogenerator.service.LlmClient;
+import com.portfoliogenerator.service.ResilientLlmClient;
+import com.portfoliogenerator.service.StubLlmClient;
+import com.portfoliogenerator.service.TenantRegistry;
+import com.portfoliogenerator.service.WeightedFairScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the LLM call path (fair scheduler plus client) against the stub backend
+ * with injected faults: calls take {@code latencyMillis}, {@code slowRate} of them take
+ * {@code slowLatencyMillis} instead, and {@code errorRate} fail as UNAVAILABLE. Latency is
+ * sampled per call, so the percentiles show what hedging does to the tail.
+ * <p>
+ * {@code direct} is the path without the resilience layer, with the concurrency limit held
+ * at its initial value; {@code resilient} adds timeouts, retries, hedging, the circuit
+ * breaker and the adaptive limit. The share of calls that still failed is printed at the
+ * end of each run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(32)
+@Fork(1)
+public class LlmResilienceBenchmark {
+	private static final String PROMPT = "Input Resume Text:\n```\nJane Doe\nSenior Engineer\n```";
+	private static final int INITIAL_LIMIT = 8;
+
+	@Param({"direct", "resilient"})
+	private String client;
+
+	@Param({"0", "0.1"})
+	private double errorRate;
+
+	@Param({"0.05"})
+	private double slowRate;
+
+	@Param({"20"})
+	private long latencyMillis;
+
+	@Param({"1000"})
+	private long slowLatencyMillis;
+
+	private LlmClient llmClient;
+	private WeightedFairScheduler scheduler;
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	@Setup
+	public void setUp() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		StubLlmClient stub = new StubLlmClient(Duration.ofMillis(latencyMillis), 0, 20, errorRate, slowRate,
+				Duration.ofMillis(slowLatencyMillis));
+
+		LlmResilienceProperties properties = new LlmResilienceProperties();
+		properties.setAttemptTimeout(Duration.ofSeconds(2));
+		properties.setDeadline(Duration.ofSeconds(5));
+		properties.getRetry().setInitialBackoff(Duration.ofMillis(5));
+		properties.getRetry().setMaxBackoff(Duration.ofMillis(100));
+		properties.getHedge().setEnabled(true);
+		properties.getHedge().setPercentile(0.9);
+		properties.getHedge().setMinDelay(Duration.ofMillis(2 * latencyMillis));
+		properties.getCircuitBreaker().setWindow(100);
+		properties.getLimit().setMax(64);
+		if ("direct".equals(client)) {
+			properties.getLimit().setMin(INITIAL_LIMIT);
+			properties.getLimit().setMax(INITIAL_LIMIT);
+		}
+
+		AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(properties, INITIAL_LIMIT, meterRegistry);
+		scheduler = new WeightedFairScheduler(concurrencyLimit,
+				new TenantRegistry(new TenantProperties(), "benchmark-key", 1), meterRegistry);
+		llmClient = "direct".equals(client) ? stub : new ResilientLlmClient(stub, concurrencyLimit, scheduler, properties, meterRegistry, false);
+	}
+
+	@Benchmark
+	public String generate() {
+		calls.incrementAndGet();
+		try {
+			return scheduler.run(null, () -> llmClient.generateContent(PROMPT));
+		} catch (IOException | LlmUnavailableException e) {
+			failures.incrementAndGet();
+			return null;
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.printf("%n%s errorRate=%s: %d of %d calls failed (%.2f%%)%n", client, errorRate,
+				failures.get(), calls.get(), 100.0 * failures.get() / Math.max(1, calls.get()));
+		if (llmClient instanceof ResilientLlmClient resilient) {
+			System.out.println(resilient.getStats());
+			resilient.shutdown();
+		}
+	}
+}
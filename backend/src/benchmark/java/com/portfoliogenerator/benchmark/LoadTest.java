@@ -0,0 +1,459 @@
+package com.portfoliogenerator.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.portfoliogenerator.PortfolioGeneratorApplication;
+import com.portfoliogenerator.service.WorkerThreads;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test. Starts the application in-process with the stub LLM client
+ * ({@code app.llm.provider=stub}), whose latency distribution, stream chunking and error
+ * rate come from the options below, and drives it over HTTP with an open workload: requests
+ * arrive as a Poisson process at {@code rate} per second whatever the response times, and
+ * each latency is measured from the request's scheduled start, so queueing in the server
+ * is not hidden by a slowed-down client.
+ * <p>
+ * Traffic mixes synchronous uploads, streaming uploads ({@code mode=stream}) and
+ * {@code GET /{portfolioId}} views of portfolios created before or during the run. Uploads
+ * draw from a corpus of {@code corpus-size} distinct synthetic resumes, so once a resume
+ * comes round again it is served from the generation cache; use a corpus larger than the
+ * number of uploads to measure generation only.
+ * <p>
+ * Throughput, p50/p90/p99/p99.9 latency and errors per endpoint are printed and written as
+ * JSON to {@code report} (default {@code target/load-test-report.json}) for comparing
+ * builds. Run with
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dload.args="--rate=50 --duration=PT2M"
+ * </pre>
+ * Options are {@code --name=value}. Options starting with {@code app.}, {@code spring.} or
+ * {@code server.} are passed to the application. With {@code target} set, an
+ * already-running server is tested instead (with {@code api-key}) and the LLM options do
+ * not apply.
+ */
+public final class LoadTest {
+	private static final String UPLOAD = "upload";
+	private static final String UPLOAD_STREAM = "upload_stream";
+	private static final String VIEW = "view";
+	private static final String DOCX_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+	private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("rate", "20");
+		DEFAULTS.put("duration", "PT60S");
+		DEFAULTS.put("warmup", "PT10S");
+		DEFAULTS.put("upload-ratio", "0.1");
+		DEFAULTS.put("stream-ratio", "0");
+		DEFAULTS.put("corpus-size", "200");
+		DEFAULTS.put("pages", "1");
+		DEFAULTS.put("seed-portfolios", "20");
+		DEFAULTS.put("max-in-flight", "5000");
+		DEFAULTS.put("request-timeout", "PT5M");
+		DEFAULTS.put("llm-latency", "PT2S");
+		DEFAULTS.put("llm-latency-sigma", "0.4");
+		DEFAULTS.put("llm-error-rate", "0");
+		DEFAULTS.put("llm-slow-rate", "0");
+		DEFAULTS.put("llm-slow-latency", "PT20S");
+		DEFAULTS.put("llm-stream-chunks", "20");
+		DEFAULTS.put("virtual-threads", "false");
+		DEFAULTS.put("target", "");
+		DEFAULTS.put("api-key", "load-test-key");
+		DEFAULTS.put("report", "target/load-test-report.json");
+	}
+
+	private final Map<String, String> options;
+	private final Map<String, String> applicationProperties;
+	private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+	private final List<String> portfolioIds = new CopyOnWriteArrayList<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder dropped = new LongAdder();
+
+	private HttpClient client;
+	private String baseUrl;
+	private String apiKey;
+	private Duration requestTimeout;
+	private List<byte[]> corpus;
+	private volatile boolean recording;
+
+	private LoadTest(Map<String, String> options, Map<String, String> applicationProperties) {
+		this.options = options;
+		this.applicationProperties = applicationProperties;
+		for (String endpoint : List.of(UPLOAD, UPLOAD_STREAM, VIEW)) {
+			stats.put(endpoint, new EndpointStats());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+		Map<String, String> applicationProperties = new LinkedHashMap<>();
+		for (String arg : args) {
+			for (String option : arg.trim().split("\\s+")) {
+				if (option.isEmpty()) {
+					continue;
+				}
+				int equals = option.indexOf('=');
+				if (!option.startsWith("--") || equals < 0) {
+					throw new IllegalArgumentException("Expected --name=value but got " + option);
+				}
+				String name = option.substring(2, equals);
+				String value = option.substring(equals + 1);
+				if (name.startsWith("app.") || name.startsWith("spring.") || name.startsWith("server.")) {
+					applicationProperties.put(name, value);
+				} else if (DEFAULTS.containsKey(name)) {
+					options.put(name, value);
+				} else {
+					throw new IllegalArgumentException("Unknown option --" + name + "; known options are " + DEFAULTS.keySet());
+				}
+			}
+		}
+		new LoadTest(options, applicationProperties).run();
+		// The HTTP client and any server threads left over must not keep the JVM alive.
+		System.exit(0);
+	}
+
+	private void run() throws Exception {
+		Path workDirectory = Files.createTempDirectory("load-test-");
+		ConfigurableApplicationContext application = null;
+		try {
+			corpus = writeCorpus(workDirectory.resolve("corpus"), intOption("corpus-size"), intOption("pages"));
+			requestTimeout = Duration.parse(options.get("request-timeout"));
+			apiKey = options.get("api-key");
+			if (options.get("target").isEmpty()) {
+				application = startApplication(workDirectory.resolve("portfolios"));
+				baseUrl = "http://localhost:" + application.getEnvironment().getProperty("local.server.port");
+			} else {
+				baseUrl = options.get("target").replaceAll("/+$", "");
+			}
+			client = HttpClient.newBuilder()
+					.executor(WorkerThreads.unbounded("load-client-", true))
+					.connectTimeout(Duration.ofSeconds(10))
+					.build();
+
+			seedPortfolios(intOption("seed-portfolios"));
+			Instant started = Instant.now();
+			Duration warmup = Duration.parse(options.get("warmup"));
+			Duration duration = Duration.parse(options.get("duration"));
+			System.out.printf("Load test against %s: %s req/s for %s after %s warm-up%n", baseUrl, options.get("rate"), duration, warmup);
+			generateLoad(warmup, false);
+			generateLoad(duration, true);
+			awaitInFlight();
+			writeReport(started, duration);
+		} finally {
+			if (application != null) {
+				application.close();
+			}
+			FileSystemUtils.deleteRecursively(workDirectory);
+		}
+	}
+
+	private List<byte[]> writeCorpus(Path directory, int size, int pages) throws IOException {
+		Files.createDirectories(directory);
+		List<byte[]> documents = new ArrayList<>(size);
+		for (int variant = 1; variant <= size; variant++) {
+			documents.add(Files.readAllBytes(ResumeCorpus.writeDocx(directory, pages, variant)));
+		}
+		return documents;
+	}
+
+	private ConfigurableApplicationContext startApplication(Path storage) {
+		String keySha256 = sha256(apiKey);
+		Map<String, String> properties = new LinkedHashMap<>();
+		properties.put("server.port", "0");
+		properties.put("app.portfolio.storage-path", storage.toString());
+		properties.put("app.portfolio.base-url", "http://localhost");
+		properties.put("gemini.project-id", "load-test");
+		properties.put("gemini.location", "load-test");
+		properties.put("gemini.model-name", "stub");
+		properties.put("app.portfolio.id.secret", "load-test-portfolio-id-secret");
+		properties.put("app.llm.provider", "stub");
+		properties.put("app.llm.stub.latency", options.get("llm-latency"));
+		properties.put("app.llm.stub.latency-sigma", options.get("llm-latency-sigma"));
+		properties.put("app.llm.stub.error-rate", options.get("llm-error-rate"));
+		properties.put("app.llm.stub.slow-rate", options.get("llm-slow-rate"));
+		properties.put("app.llm.stub.slow-latency", options.get("llm-slow-latency"));
+		properties.put("app.llm.stub.stream-chunks", options.get("llm-stream-chunks"));
+		properties.put("spring.threads.virtual.enabled", options.get("virtual-threads"));
+		// One tenant whose upload quota is out of the way; the rate limiter is not under test.
+		properties.put("app.security.tenants[0].name", "load-test");
+		properties.put("app.security.tenants[0].key-sha256", keySha256);
+		properties.put("app.security.tenants[0].uploads-per-minute", Integer.toString(Integer.MAX_VALUE / 2));
+		properties.put("app.security.tenants[0].requests-per-minute", Integer.toString(Integer.MAX_VALUE / 2));
+		properties.putAll(applicationProperties);
+		// As command-line arguments, so they take precedence over application.properties.
+		String[] arguments = properties.entrySet().stream().map(property -> "--" + property.getKey() + "=" + property.getValue()).toArray(String[]::new);
+		return new SpringApplicationBuilder(PortfolioGeneratorApplication.class).run(arguments);
+	}
+
+	private void seedPortfolios(int count) throws InterruptedException {
+		ExecutorService seeders = WorkerThreads.unbounded("load-seed-", true);
+		try {
+			for (int i = 0; i < count; i++) {
+				byte[] resume = corpus.get(i % corpus.size());
+				seeders.execute(() -> upload(resume, false, System.nanoTime()));
+			}
+		} finally {
+			seeders.shutdown();
+			seeders.awaitTermination(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		if (count > 0 && portfolioIds.isEmpty()) {
+			throw new IllegalStateException("No seed upload succeeded; check the application log.");
+		}
+		System.out.printf("Seeded %d portfolios%n", portfolioIds.size());
+	}
+
+	/**
+	 * Issues requests as a Poisson process for {@code period}. Each request runs on its own
+	 * virtual thread so a slow response never delays the next arrival.
+	 */
+	private void generateLoad(Duration period, boolean record) {
+		double rate = Double.parseDouble(options.get("rate"));
+		double uploadRatio = Double.parseDouble(options.get("upload-ratio"));
+		double streamRatio = Double.parseDouble(options.get("stream-ratio"));
+		int maxInFlight = intOption("max-in-flight");
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		recording = record;
+		long end = System.nanoTime() + period.toNanos();
+		long next = System.nanoTime();
+		while (next - end < 0) {
+			long now = System.nanoTime();
+			if (next - now > 0) {
+				LockSupport.parkNanos(next - now);
+				continue;
+			}
+			long scheduled = next;
+			next += (long) (-Math.log(1 - random.nextDouble()) / rate * 1_000_000_000L);
+
+			if (inFlight.get() >= maxInFlight) {
+				if (record) {
+					dropped.increment();
+				}
+				continue;
+			}
+			inFlight.incrementAndGet();
+			if (random.nextDouble() < uploadRatio || portfolioIds.isEmpty()) {
+				byte[] resume = corpus.get(random.nextInt(corpus.size()));
+				boolean stream = random.nextDouble() < streamRatio;
+				Thread.ofVirtual().start(() -> {
+					try {
+						upload(resume, stream, scheduled);
+					} finally {
+						inFlight.decrementAndGet();
+					}
+				});
+			} else {
+				String portfolioId = portfolioIds.get(random.nextInt(portfolioIds.size()));
+				Thread.ofVirtual().start(() -> {
+					try {
+						view(portfolioId, scheduled);
+					} finally {
+						inFlight.decrementAndGet();
+					}
+				});
+			}
+		}
+	}
+
+	private void upload(byte[] resume, boolean stream, long scheduled) {
+		String boundary = "load-test-" + UUID.randomUUID();
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/resume/upload" + (stream ? "?mode=stream" : "")))
+				.timeout(requestTimeout)
+				.header("X-API-Key", apiKey)
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, resume)))
+				.build();
+		String endpoint = stream ? UPLOAD_STREAM : UPLOAD;
+		try {
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			String portfolioId = response.statusCode() == 200 ? portfolioId(response.body(), stream) : null;
+			record(endpoint, scheduled, portfolioId != null ? 200 : response.statusCode() == 200 ? -1 : response.statusCode());
+			if (portfolioId != null && !portfolioIds.contains(portfolioId)) {
+				portfolioIds.add(portfolioId);
+			}
+		} catch (IOException e) {
+			record(endpoint, scheduled, 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void view(String portfolioId, long scheduled) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + portfolioId))
+				.timeout(requestTimeout)
+				.header("Accept-Encoding", "br, gzip")
+				.GET()
+				.build();
+		try {
+			HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+			try (InputStream body = response.body()) {
+				// Read to the end so the transfer is part of the latency.
+				body.transferTo(OutputStream.nullOutputStream());
+			}
+			record(VIEW, scheduled, response.statusCode());
+		} catch (IOException e) {
+			record(VIEW, scheduled, 0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The portfolio ID of a successful upload: from the JSON body, or for a stream from its
+	 * {@code completed} event. {@code null} when the upload failed.
+	 */
+	private String portfolioId(String body, boolean stream) throws IOException {
+		String json = body;
+		if (stream) {
+			int completed = body.indexOf("event:completed");
+			if (completed < 0) {
+				return null;
+			}
+			int data = body.indexOf("data:", completed);
+			int endOfLine = body.indexOf('\n', data);
+			json = body.substring(data + "data:".length(), endOfLine < 0 ? body.length() : endOfLine);
+		}
+		JsonNode id = objectMapper.readTree(json).get("portfolioId");
+		return id == null || id.isNull() ? null : id.asText();
+	}
+
+	private void record(String endpoint, long scheduled, int status) {
+		if (!recording) {
+			return;
+		}
+		EndpointStats endpointStats = stats.get(endpoint);
+		long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+		endpointStats.latency.recordValue(Math.min(Math.max(1, latencyMicros), HIGHEST_LATENCY_MICROS));
+		endpointStats.statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+	}
+
+	private void awaitInFlight() throws InterruptedException {
+		long deadline = System.nanoTime() + requestTimeout.toNanos();
+		while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+	}
+
+	private void writeReport(Instant started, Duration duration) throws IOException {
+		double seconds = duration.toNanos() / 1e9;
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("startedAt", started.toString());
+		report.put("target", baseUrl);
+		report.put("options", options);
+		report.put("applicationProperties", applicationProperties);
+		report.put("droppedArrivals", dropped.sum());
+
+		Map<String, Object> endpoints = new LinkedHashMap<>();
+		System.out.printf("%n%-14s %9s %9s %8s %10s %10s %10s %10s %10s%n",
+				"endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+		stats.forEach((endpoint, endpointStats) -> {
+			Histogram latency = endpointStats.latency;
+			long requests = latency.getTotalCount();
+			if (requests == 0) {
+				return;
+			}
+			Map<Integer, Long> statuses = new TreeMap<>();
+			endpointStats.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+			long errors = requests - statuses.getOrDefault(200, 0L) - statuses.getOrDefault(304, 0L);
+
+			Map<String, Object> latencyMillis = new LinkedHashMap<>();
+			latencyMillis.put("p50", millis(latency.getValueAtPercentile(50)));
+			latencyMillis.put("p90", millis(latency.getValueAtPercentile(90)));
+			latencyMillis.put("p99", millis(latency.getValueAtPercentile(99)));
+			latencyMillis.put("p999", millis(latency.getValueAtPercentile(99.9)));
+			latencyMillis.put("max", millis(latency.getMaxValue()));
+			latencyMillis.put("mean", millis((long) latency.getMean()));
+
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("requests", requests);
+			result.put("throughputPerSecond", requests / seconds);
+			result.put("errors", errors);
+			// 0 is a transport failure, -1 a 200 without a portfolio (a failed stream).
+			result.put("statusCodes", statuses);
+			result.put("latencyMillis", latencyMillis);
+			endpoints.put(endpoint, result);
+
+			System.out.printf("%-14s %9d %9.1f %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", endpoint, requests, requests / seconds, errors,
+					latencyMillis.get("p50"), latencyMillis.get("p90"), latencyMillis.get("p99"), latencyMillis.get("p999"), latencyMillis.get("max"));
+		});
+		report.put("endpoints", endpoints);
+
+		Path reportFile = Paths.get(options.get("report"));
+		if (reportFile.getParent() != null) {
+			Files.createDirectories(reportFile.getParent());
+		}
+		objectMapper.writeValue(reportFile.toFile(), report);
+		System.out.printf("%nDropped arrivals (max-in-flight reached): %d%nReport written to %s%n", dropped.sum(), reportFile.toAbsolutePath());
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+
+	private int intOption(String name) {
+		return Integer.parseInt(options.get(name));
+	}
+
+	private static byte[] multipart(String boundary, byte[] resume) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(resume.length + 256);
+		String head = "--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"resumeFile\"; filename=\"resume.docx\"\r\n"
+				+ "Content-Type: " + DOCX_TYPE + "\r\n\r\n";
+		body.writeBytes(head.getBytes(StandardCharsets.US_ASCII));
+		body.writeBytes(resume);
+		body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+		return body.toByteArray();
+	}
+
+	private static String sha256(String text) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static final class EndpointStats {
+		final Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+		final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+	}
+}
@@ -0,0 +1,201 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.controller.PortfolioFileSender;
+import com.portfoliogenerator.service.ContentEncoding;
+import com.portfoliogenerator.service.StoredFile;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.UrlResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download throughput of a stored portfolio over real HTTP, from an embedded Tomcat with
+ * the application's defaults (NIO connector, sendfile enabled):
+ * <ul>
+ *   <li>{@code sendfile}: {@link PortfolioFileSender} handing the file to Tomcat's sendfile
+ *   support, as the download endpoint does now;</li>
+ *   <li>{@code transferTo}: the same sender with sendfile unavailable, so it copies with
+ *   {@code FileChannel.transferTo} into the response stream;</li>
+ *   <li>{@code urlResource}: the previous endpoint, which returned a {@link UrlResource}
+ *   that {@link ResourceHttpMessageConverter} copied through a heap buffer.</li>
+ * </ul>
+ * Each benchmark thread is a keep-alive HTTP/1.1 connection that reads the body into a
+ * reused buffer, so the gc profiler's allocation rate is essentially the server's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PortfolioServingBenchmark {
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final MediaType HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+	@Param({"sendfile", "transferTo", "urlResource"})
+	private String path;
+
+	@Param({"16KB", "256KB", "4MB"})
+	private String fileSize;
+
+	private Path directory;
+	private Path file;
+	private Tomcat tomcat;
+	private int port;
+
+	@Setup
+	public void setUp() throws IOException, LifecycleException {
+		directory = Files.createTempDirectory("portfolio-serving-");
+		file = directory.resolve("portfolio.html");
+		byte[] content = new byte[Math.toIntExact(DataSize.parse(fileSize).toBytes())];
+		ThreadLocalRandom.current().nextBytes(content);
+		Files.write(file, content);
+
+		PortfolioFileSender sender = new PortfolioFileSender();
+		StoredFile storedFile = new StoredFile(file, 0, content.length, Files.getLastModifiedTime(file).toMillis());
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(directory.resolve("tomcat").toString());
+		tomcat.setPort(0);
+		Context context = tomcat.addContext("", null);
+		Tomcat.addServlet(context, "portfolio", new HttpServlet() {
+			@Override
+			protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				switch (path) {
+					case "sendfile" -> sender.send(storedFile, ContentEncoding.IDENTITY, HTML_UTF8, null, request, response);
+					case "transferTo" -> {
+						request.removeAttribute(SENDFILE_SUPPORT);
+						sender.send(storedFile, ContentEncoding.IDENTITY, HTML_UTF8, null, request, response);
+					}
+					default -> new ResourceHttpMessageConverter().write(new UrlResource(file.toUri()), HTML_UTF8, new ServletServerHttpResponse(response));
+				}
+			}
+		});
+		context.addServletMappingDecoded("/*", "portfolio");
+		// Each benchmark thread keeps its connection for the whole run.
+		tomcat.getConnector().setProperty("maxKeepAliveRequests", "-1");
+		tomcat.start();
+
+		port = tomcat.getConnector().getLocalPort();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, LifecycleException {
+		tomcat.stop();
+		tomcat.destroy();
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@State(Scope.Thread)
+	public static class Connection {
+		private static final byte[] REQUEST = "GET /portfolio HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+		private final byte[] buffer = new byte[64 * 1024];
+		private Socket socket;
+		private InputStream in;
+		private OutputStream out;
+
+		@Setup
+		public void open(PortfolioServingBenchmark benchmark) throws IOException {
+			socket = new Socket("localhost", benchmark.port);
+			socket.setTcpNoDelay(true);
+			in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+			out = socket.getOutputStream();
+		}
+
+		@TearDown
+		public void close() throws IOException {
+			socket.close();
+		}
+
+		/**
+		 * Sends one request and reads the response to its end; returns the body length.
+		 */
+		long get() throws IOException {
+			out.write(REQUEST);
+			out.flush();
+			long contentLength = readHeaders();
+			long remaining = contentLength;
+			while (remaining > 0) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read < 0) {
+					throw new EOFException("Connection closed inside the body");
+				}
+				remaining -= read;
+			}
+			return contentLength;
+		}
+
+		private long readHeaders() throws IOException {
+			// Only the status line and Content-Length matter; both are ASCII.
+			StringBuilder line = new StringBuilder();
+			long contentLength = -1;
+			boolean statusLine = true;
+			while (true) {
+				int b = in.read();
+				if (b < 0) {
+					throw new EOFException("Connection closed inside the headers");
+				}
+				if (b != '\n') {
+					if (b != '\r') {
+						line.append((char) b);
+					}
+					continue;
+				}
+				if (line.isEmpty()) {
+					if (contentLength < 0) {
+						throw new IllegalStateException("Response without Content-Length");
+					}
+					return contentLength;
+				}
+				String header = line.toString();
+				if (statusLine && !header.startsWith("HTTP/1.1 200")) {
+					throw new IllegalStateException("Unexpected status: " + header);
+				}
+				statusLine = false;
+				if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+					contentLength = Long.parseLong(header.substring(15).trim());
+				}
+				line.setLength(0);
+			}
+		}
+	}
+
+	@Benchmark
+	public long download(Connection connection) throws IOException {
+		return connection.get();
+	}
+}
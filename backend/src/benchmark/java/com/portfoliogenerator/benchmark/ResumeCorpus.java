@@ -0,0 +1,175 @@
+package com.portfoliogenerator.benchmark;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.BreakType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic resumes for the benchmarks. Content is generated from a fixed seed so every
+ * run parses the same documents, and carries the same noise real extractions do: a
+ * running header, "Page n of m" footers and words hyphenated across line breaks.
+ * <p>
+ * {@code main} writes the whole corpus to a directory (default {@code target/resume-corpus})
+ * for inspection or for use outside JMH.
+ */
+public final class ResumeCorpus {
+	public enum Size {
+		SMALL(1), MEDIUM(4), LARGE(16);
+
+		public final int pages;
+
+		Size(int pages) {
+			this.pages = pages;
+		}
+	}
+
+	private static final int LINES_PER_PAGE = 46;
+	private static final String HEADER = "Jane Doe - Senior Software Engineer - jane.doe@example.com";
+
+	private static final String[] SECTIONS = {"Experience", "Projects", "Skills", "Education", "Certifications", "Publications"};
+	private static final String[] VERBS = {"Built", "Designed", "Led", "Migrated", "Optimized", "Automated", "Shipped", "Scaled"};
+	private static final String[] THINGS = {"a payment ledger", "the search indexer", "an event pipeline", "the billing API",
+			"a feature-flag service", "the mobile backend", "an ML feature store", "the audit log"};
+	private static final String[] TECH = {"Java 17", "Spring Boot", "PostgreSQL", "Kafka", "Kubernetes", "Redis", "gRPC", "React"};
+
+	private ResumeCorpus() {
+	}
+
+	/**
+	 * The body lines of a resume of {@code pages} pages, without header and footer.
+	 */
+	public static List<List<String>> pages(int pages) {
+		return pages(pages, 0);
+	}
+
+	/**
+	 * Like {@link #pages(int)}, but each {@code variant} is a different resume, for runs that
+	 * must not be served from the generation cache.
+	 */
+	public static List<List<String>> pages(int pages, int variant) {
+		Random random = new Random(42L * pages + 7919L * variant);
+		List<List<String>> result = new ArrayList<>(pages);
+		int section = 0;
+		for (int page = 0; page < pages; page++) {
+			List<String> lines = new ArrayList<>(LINES_PER_PAGE);
+			for (int line = 0; line < LINES_PER_PAGE; line++) {
+				if (line % 12 == 0) {
+					lines.add(SECTIONS[section++ % SECTIONS.length]);
+				} else if (line % 12 == 1) {
+					lines.add("Staff Engineer, Example Corp " + (page * 4 + line) + ", Berlin   2019 - 2024");
+				} else if (random.nextInt(10) == 0 && line < LINES_PER_PAGE - 1) {
+					// A word split over two lines, as PDF extraction leaves it.
+					lines.add("- Reduced p99 latency of " + pick(random, THINGS) + " through careful perfor-");
+					lines.add("mance work on " + pick(random, TECH) + " and " + pick(random, TECH) + ".");
+					line++;
+				} else {
+					lines.add("- " + pick(random, VERBS) + " " + pick(random, THINGS) + " using " + pick(random, TECH)
+							+ " and " + pick(random, TECH) + ", cutting cost by " + (5 + random.nextInt(60)) + "%.");
+				}
+			}
+			result.add(lines);
+		}
+		return result;
+	}
+
+	/**
+	 * Roughly what PDF extraction returns for {@link #writePdf}, for benchmarks that start
+	 * from text.
+	 */
+	public static String extractedText(int pages) {
+		StringBuilder text = new StringBuilder();
+		List<List<String>> body = pages(pages);
+		for (int page = 0; page < body.size(); page++) {
+			text.append(HEADER).append('\n');
+			for (String line : body.get(page)) {
+				text.append(line).append('\n');
+			}
+			text.append("Page ").append(page + 1).append(" of ").append(pages).append("\n\f");
+		}
+		return text.toString();
+	}
+
+	public static Path writePdf(Path directory, int pages) throws IOException {
+		Path file = directory.resolve("resume-" + pages + "p.pdf");
+		PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+		List<List<String>> body = pages(pages);
+
+		try (PDDocument document = new PDDocument()) {
+			for (int page = 0; page < body.size(); page++) {
+				PDPage pdPage = new PDPage(PDRectangle.LETTER);
+				document.addPage(pdPage);
+				try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+					content.beginText();
+					content.setFont(font, 10);
+					content.setLeading(14);
+					content.newLineAtOffset(50, 750);
+					content.showText(HEADER);
+					content.newLine();
+					for (String line : body.get(page)) {
+						content.showText(line);
+						content.newLine();
+					}
+					content.showText("Page " + (page + 1) + " of " + pages);
+					content.endText();
+				}
+			}
+			document.save(file.toFile());
+		}
+		return file;
+	}
+
+	public static Path writeDocx(Path directory, int pages) throws IOException {
+		return writeDocx(directory, pages, 0);
+	}
+
+	public static Path writeDocx(Path directory, int pages, int variant) throws IOException {
+		Path file = directory.resolve(variant == 0 ? "resume-" + pages + "p.docx" : "resume-" + pages + "p-" + variant + ".docx");
+		List<List<String>> body = pages(pages, variant);
+
+		try (XWPFDocument document = new XWPFDocument()) {
+			document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText(HEADER);
+			for (int page = 0; page < body.size(); page++) {
+				for (String line : body.get(page)) {
+					XWPFParagraph paragraph = document.createParagraph();
+					paragraph.createRun().setText(line);
+				}
+				if (page < body.size() - 1) {
+					document.createParagraph().createRun().addBreak(BreakType.PAGE);
+				}
+			}
+			try (OutputStream out = Files.newOutputStream(file)) {
+				document.write(out);
+			}
+		}
+		return file;
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : "target/resume-corpus");
+		Files.createDirectories(directory);
+		for (Size size : Size.values()) {
+			System.out.println(writePdf(directory, size.pages));
+			System.out.println(writeDocx(directory, size.pages));
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.service.ResumeTextExtractor;
+import com.portfoliogenerator.service.ResumeTextPreprocessor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resume parsing as done for every upload: text extraction from PDF and DOCX files on
+ * disk, then the prompt preprocessing of the extracted text. Run with the gc profiler to
+ * see allocation per parsed document next to throughput. {@code extractPdfPeakHeap}
+ * reports how far the heap grows while a single PDF is extracted.
+ * <p>
+ * Pass {@code -p parallelThresholdPages=1000} to compare against single-threaded PDF
+ * extraction, and {@code -p parallelism=<n>} to fix the number of page workers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResumeExtractionBenchmark {
+	@Param({"SMALL", "MEDIUM", "LARGE"})
+	private ResumeCorpus.Size size;
+
+	@Param({"8"})
+	private int parallelThresholdPages;
+
+	// Workers of the page pool; 0 is one per CPU.
+	@Param({"0"})
+	private int parallelism;
+
+	private Path corpusDirectory;
+	private Path pdf;
+	private Path docx;
+	private String extractedText;
+	private ResumeTextExtractor extractor;
+	private ResumeTextPreprocessor preprocessor;
+
+	@Setup
+	public void setUp() throws IOException {
+		corpusDirectory = Files.createTempDirectory("resume-corpus-");
+		pdf = ResumeCorpus.writePdf(corpusDirectory, size.pages);
+		docx = ResumeCorpus.writeDocx(corpusDirectory, size.pages);
+		extractedText = ResumeCorpus.extractedText(size.pages);
+
+		extractor = new ResumeTextExtractor(DataSize.ofMegabytes(4), 4, parallelThresholdPages, parallelism);
+		preprocessor = new ResumeTextPreprocessor(6000, 3);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		extractor.shutdown();
+		FileSystemUtils.deleteRecursively(corpusDirectory);
+	}
+
+	@Benchmark
+	public String extractPdf() throws IOException {
+		return extractor.extractPdf(pdf);
+	}
+
+	/**
+	 * One PDF extraction per call, after a full GC and with the peak usage of every heap
+	 * pool reset. The {@code peakHeapBytes} counter is the summed pool peaks minus what was
+	 * in use before the call, averaged over the measurement iterations. The fork runs with a
+	 * 4 MB young generation, so garbage is collected as it goes and the peak is the live data
+	 * plus at most that.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-Xmn4m"})
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 20)
+	public String extractPdfPeakHeap(HeapUsage heapUsage) throws IOException {
+		long before = heapUsage.reset();
+		String text = extractor.extractPdf(pdf);
+		heapUsage.record(heapUsage.peak() - before);
+		return text;
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class HeapUsage {
+		private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.toList();
+
+		public long peakHeapBytes;
+		private int iterations;
+
+		@Setup
+		public void setUp(BenchmarkParams params) {
+			iterations = params.getMeasurement().getCount();
+		}
+
+		long reset() {
+			System.gc();
+			long used = 0;
+			for (MemoryPoolMXBean pool : heapPools) {
+				pool.resetPeakUsage();
+				used += pool.getUsage().getUsed();
+			}
+			return used;
+		}
+
+		void record(long peak) {
+			// JMH sums event counters over the iterations, so each one contributes its share of the mean.
+			peakHeapBytes = peak / iterations;
+		}
+
+		long peak() {
+			long peak = 0;
+			for (MemoryPoolMXBean pool : heapPools) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+			return peak;
+		}
+	}
+
+	@Benchmark
+	public String extractDocx() throws IOException {
+		return extractor.extractDocx(docx);
+	}
+
+	@Benchmark
+	public String preprocessExtractedText() {
+		return preprocessor.prepare("benchmark.pdf", extractedText);
+	}
+}
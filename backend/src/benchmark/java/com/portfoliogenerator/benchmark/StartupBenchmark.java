@@ -0,0 +1,308 @@
+package com.portfoliogenerator.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start benchmark comparing two builds of the application. Each run starts a fresh
+ * process and measures
+ * <ul>
+ * <li>time to ready: from launching the process to the first successful
+ * {@code GET /actuator/health};</li>
+ * <li>first request: the latency of the first upload right after that, which is where the
+ * one-off costs left after startup (class loading, parser initialization) show up.</li>
+ * </ul>
+ * A build is given as {@code image:<name>} for a Docker image (started with {@code docker run}),
+ * {@code jar:<path>} for an executable jar, or {@code dist:<directory>} for the unpacked
+ * layout of {@code Dockerfile.fast-startup} ({@code application.jar}, {@code lib/},
+ * {@code classpath.args} and, if present, the {@code application.jsa} archive). The default
+ * compares the standard image with the fast-startup one:
+ * <pre>
+ * docker build -t portfolio-generator .
+ * docker build -f Dockerfile.fast-startup --build-arg AOT_LLM_PROVIDER=stub -t portfolio-generator:fast-startup .
+ * mvn -Pbenchmark test-compile exec:exec@startup -Dstartup.args="--runs=10"
+ * </pre>
+ * The application runs with the stub LLM client, so a fast-startup build must have been
+ * AOT-processed for it (as above). Options are {@code --name=value}; results (median, min
+ * and max per build) are printed and written as JSON to {@code report}.
+ */
+public final class StartupBenchmark {
+	private static final String API_KEY = "startup-benchmark";
+	private static final String MAIN_CLASS = "com.portfoliogenerator.PortfolioGeneratorApplication";
+	private static final Map<String, String> CONTENT_TYPES = Map.of(
+			"pdf", "application/pdf",
+			"docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("baseline", "image:portfolio-generator:latest");
+		DEFAULTS.put("candidate", "image:portfolio-generator:fast-startup");
+		DEFAULTS.put("runs", "5");
+		DEFAULTS.put("resume", "pdf");
+		DEFAULTS.put("pages", "2");
+		DEFAULTS.put("ready-timeout", "PT2M");
+		DEFAULTS.put("java", "java");
+		DEFAULTS.put("report", "target/startup-benchmark.json");
+	}
+
+	private final Map<String, String> options;
+	private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+	private StartupBenchmark(Map<String, String> options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+		for (String arg : args) {
+			for (String option : arg.trim().split("\\s+")) {
+				if (option.isEmpty()) {
+					continue;
+				}
+				int equals = option.indexOf('=');
+				if (!option.startsWith("--") || equals < 0) {
+					throw new IllegalArgumentException("Expected --name=value but got " + option);
+				}
+				String name = option.substring(2, equals);
+				if (!DEFAULTS.containsKey(name)) {
+					throw new IllegalArgumentException("Unknown option --" + name + "; known options are " + DEFAULTS.keySet());
+				}
+				options.put(name, option.substring(equals + 1));
+			}
+		}
+		if (!CONTENT_TYPES.containsKey(options.get("resume"))) {
+			throw new IllegalArgumentException("--resume must be one of " + CONTENT_TYPES.keySet());
+		}
+		new StartupBenchmark(options).run();
+		System.exit(0);
+	}
+
+	private void run() throws Exception {
+		Path workDirectory = Files.createTempDirectory("startup-benchmark-");
+		try {
+			String resumeType = options.get("resume");
+			Path resumeFile = "pdf".equals(resumeType)
+					? ResumeCorpus.writePdf(workDirectory, Integer.parseInt(options.get("pages")))
+					: ResumeCorpus.writeDocx(workDirectory, Integer.parseInt(options.get("pages")));
+			byte[] resume = Files.readAllBytes(resumeFile);
+			Path logDirectory = Paths.get(options.get("report")).toAbsolutePath().getParent().resolve("startup-benchmark-logs");
+			Files.createDirectories(logDirectory);
+
+			int runs = Integer.parseInt(options.get("runs"));
+			Map<String, List<Run>> results = new LinkedHashMap<>();
+			for (String build : List.of("baseline", "candidate")) {
+				results.put(build, new ArrayList<>());
+			}
+			// Alternate the builds so drift in the machine's load affects both alike.
+			for (int i = 1; i <= runs; i++) {
+				for (String build : results.keySet()) {
+					Run run = measure(build, options.get(build), workDirectory, logDirectory.resolve(build + "-" + i + ".log"), resume);
+					results.get(build).add(run);
+					System.out.printf("%-10s run %2d: ready in %8.1f ms, first upload %8.1f ms (HTTP %d)%n",
+							build, i, run.readyMillis(), run.firstRequestMillis(), run.firstRequestStatus());
+				}
+			}
+			writeReport(results);
+		} finally {
+			FileSystemUtils.deleteRecursively(workDirectory);
+		}
+	}
+
+	private Run measure(String build, String spec, Path workDirectory, Path log, byte[] resume) throws Exception {
+		int port = freePort();
+		Path storage = Files.createTempDirectory(workDirectory, build + "-portfolios-");
+		String containerName = "startup-benchmark-" + UUID.randomUUID();
+		ProcessBuilder builder = new ProcessBuilder(command(spec, port, storage, containerName))
+				.redirectErrorStream(true)
+				.redirectOutput(log.toFile());
+		if (spec.startsWith("dist:")) {
+			// The class path in classpath.args is relative, and must stay exactly as it was when the archive was recorded.
+			builder.directory(Paths.get(spec.substring("dist:".length())).toAbsolutePath().toFile());
+		}
+		Map<String, String> environment = builder.environment();
+		environment.putAll(applicationEnvironment(port, storage.toString()));
+
+		long started = System.nanoTime();
+		Process process = builder.start();
+		try {
+			double readyMillis = awaitReady(process, port, started, log);
+			long requestStarted = System.nanoTime();
+			int status = upload(port, resume);
+			double firstRequestMillis = (System.nanoTime() - requestStarted) / 1e6;
+			return new Run(readyMillis, firstRequestMillis, status);
+		} finally {
+			if (spec.startsWith("image:")) {
+				new ProcessBuilder("docker", "rm", "-f", containerName).redirectErrorStream(true)
+						.redirectOutput(ProcessBuilder.Redirect.DISCARD).start().waitFor();
+			}
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private List<String> command(String spec, int port, Path storage, String containerName) {
+		int colon = spec.indexOf(':');
+		String kind = colon < 0 ? "" : spec.substring(0, colon);
+		String target = spec.substring(colon + 1);
+		List<String> command = new ArrayList<>();
+		switch (kind) {
+			case "image" -> {
+				command.addAll(List.of("docker", "run", "--rm", "--name", containerName, "-p", port + ":8080",
+						"-v", storage.toAbsolutePath() + ":/data/portfolios"));
+				applicationEnvironment(8080, "/data/portfolios").forEach((name, value) -> command.addAll(List.of("-e", name + "=" + value)));
+				command.add(target);
+			}
+			case "jar" -> command.addAll(List.of(options.get("java"), "-jar", Paths.get(target).toAbsolutePath().toString()));
+			case "dist" -> {
+				Path dist = Paths.get(target).toAbsolutePath();
+				if (!Files.exists(dist.resolve("classpath.args"))) {
+					throw new IllegalArgumentException("No classpath.args in " + dist);
+				}
+				command.add(options.get("java"));
+				if (Files.exists(dist.resolve("application.jsa"))) {
+					command.add("-XX:SharedArchiveFile=application.jsa");
+				}
+				command.addAll(List.of("-Dspring.aot.enabled=true", "@classpath.args", MAIN_CLASS));
+			}
+			default -> throw new IllegalArgumentException("Expected image:<name>, jar:<path> or dist:<directory> but got " + spec);
+		}
+		if (!"image".equals(kind)) {
+			command.add("--server.port=" + port);
+		}
+		return command;
+	}
+
+	/**
+	 * Settings that let the application start without Vertex AI, as environment variables
+	 * so they reach a container as well as a local process.
+	 */
+	private static Map<String, String> applicationEnvironment(int port, String storagePath) {
+		Map<String, String> environment = new LinkedHashMap<>();
+		environment.put("PORTFOLIO_STORAGE_PATH", storagePath);
+		environment.put("PORTFOLIO_BASE_URL", "http://localhost:" + port);
+		environment.put("GCP_PROJECT_ID", "startup-benchmark");
+		environment.put("GCP_PROJECT_LOCATION", "startup-benchmark");
+		environment.put("GEMINI_MODEL_NAME", "stub");
+		environment.put("PORTFOLIO_ID_SECRET", "startup-benchmark-secret");
+		environment.put("APP_LLM_PROVIDER", "stub");
+		environment.put("APP_SECURITY_API_KEY", API_KEY);
+		return environment;
+	}
+
+	private double awaitReady(Process process, int port, long started, Path log) throws IOException, InterruptedException {
+		HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+				.timeout(Duration.ofSeconds(2))
+				.header("X-API-Key", API_KEY)
+				.GET()
+				.build();
+		long deadline = started + Duration.parse(options.get("ready-timeout")).toNanos();
+		while (System.nanoTime() - deadline < 0) {
+			if (!process.isAlive()) {
+				throw new IllegalStateException("The application exited with " + process.exitValue() + " before it was ready; see " + log);
+			}
+			try {
+				if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+					return (System.nanoTime() - started) / 1e6;
+				}
+			} catch (IOException e) {
+				// Not listening yet.
+			}
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		throw new IllegalStateException("The application was not ready within " + options.get("ready-timeout") + "; see " + log);
+	}
+
+	private int upload(int port, byte[] resume) throws IOException, InterruptedException {
+		String resumeType = options.get("resume");
+		String boundary = "startup-benchmark-" + UUID.randomUUID();
+		ByteArrayOutputStream body = new ByteArrayOutputStream(resume.length + 256);
+		body.writeBytes(("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"resumeFile\"; filename=\"resume." + resumeType + "\"\r\n"
+				+ "Content-Type: " + CONTENT_TYPES.get(resumeType) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		body.writeBytes(resume);
+		body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/resume/upload"))
+				.timeout(Duration.ofMinutes(2))
+				.header("X-API-Key", API_KEY)
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+				.build();
+		return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private void writeReport(Map<String, List<Run>> results) throws IOException {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("startedAt", Instant.now().toString());
+		report.put("options", options);
+		Map<String, Object> builds = new LinkedHashMap<>();
+		System.out.printf("%n%-10s %-45s %12s %12s %12s %12s%n", "build", "source", "ready p50", "ready min", "first p50", "first min");
+		results.forEach((build, runs) -> {
+			double[] ready = runs.stream().mapToDouble(Run::readyMillis).sorted().toArray();
+			double[] first = runs.stream().mapToDouble(Run::firstRequestMillis).sorted().toArray();
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("build", options.get(build));
+			result.put("readyMillis", summary(ready));
+			result.put("firstRequestMillis", summary(first));
+			result.put("firstRequestFailures", runs.stream().filter(run -> run.firstRequestStatus() != 200).count());
+			result.put("runs", runs);
+			builds.put(build, result);
+			System.out.printf("%-10s %-45s %12.1f %12.1f %12.1f %12.1f%n", build, options.get(build),
+					median(ready), ready[0], median(first), first[0]);
+		});
+		report.put("builds", builds);
+
+		Path reportFile = Paths.get(options.get("report"));
+		if (reportFile.getParent() != null) {
+			Files.createDirectories(reportFile.getParent());
+		}
+		objectMapper.writeValue(reportFile.toFile(), report);
+		System.out.printf("%nReport written to %s%n", reportFile.toAbsolutePath());
+	}
+
+	private static Map<String, Double> summary(double[] sorted) {
+		Map<String, Double> summary = new LinkedHashMap<>();
+		summary.put("p50", median(sorted));
+		summary.put("min", sorted[0]);
+		summary.put("max", sorted[sorted.length - 1]);
+		return summary;
+	}
+
+	private static double median(double[] sorted) {
+		int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	public record Run(double readyMillis, double firstRequestMillis, int firstRequestStatus) {
+	}
+}
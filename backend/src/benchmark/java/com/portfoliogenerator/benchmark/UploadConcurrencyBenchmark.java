@@ -0,0 +1,156 @@
+package com.portfoliogenerator.benchmark;
+
+import com.portfoliogenerator.service.ResumeTextExtractor;
+import com.portfoliogenerator.service.WorkerThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A burst of {@code uploads} simultaneous uploads, each doing what a request thread does
+ * for a synchronous upload: parse a DOCX resume, block for {@code llmLatencyMillis} on
+ * the model, then write the page to disk. {@code platform} runs them on a pool of
+ * {@code platformThreads} threads, Tomcat's default maximum; {@code virtual} gives each its
+ * own virtual thread, as {@code spring.threads.virtual.enabled} does.
+ * <p>
+ * The score is the time to drain the burst. After each iteration the run prints how many
+ * uploads were waiting on the model at once (the concurrent-upload capacity), and heap use
+ * and committed thread-stack memory sampled mid-burst, the latter from native memory
+ * tracking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:NativeMemoryTracking=summary")
+public class UploadConcurrencyBenchmark {
+	private static final Pattern THREAD_MEMORY = Pattern.compile("- +Thread \\(reserved=(\\d+)KB, committed=(\\d+)KB\\)");
+
+	@Param({"platform", "virtual"})
+	private String threads;
+
+	@Param({"200", "2000"})
+	private int uploads;
+
+	@Param({"500"})
+	private long llmLatencyMillis;
+
+	@Param({"200"})
+	private int platformThreads;
+
+	private Path corpusDirectory;
+	private Path docx;
+	private ResumeTextExtractor extractor;
+	private ExecutorService executor;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicInteger peakWaiting = new AtomicInteger();
+	private long heapUsedBytes;
+	private long threadStackKilobytes;
+
+	@Setup
+	public void setUp() throws IOException {
+		corpusDirectory = Files.createTempDirectory("upload-concurrency-");
+		docx = ResumeCorpus.writeDocx(corpusDirectory, ResumeCorpus.Size.SMALL.pages);
+		extractor = new ResumeTextExtractor(DataSize.ofMegabytes(4), 4, 8, 0);
+		executor = "virtual".equals(threads)
+				? WorkerThreads.unbounded("upload-", true)
+				: Executors.newFixedThreadPool(platformThreads, WorkerThreads.factory("upload-", false));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		executor.shutdownNow();
+		extractor.shutdown();
+		FileSystemUtils.deleteRecursively(corpusDirectory);
+	}
+
+	@Benchmark
+	public int burst() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(uploads);
+		AtomicInteger failures = new AtomicInteger();
+		for (int i = 0; i < uploads; i++) {
+			int upload = i;
+			executor.execute(() -> {
+				try {
+					upload(upload);
+				} catch (IOException e) {
+					failures.incrementAndGet();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		// Halfway through the first wave every thread that can is blocked on the model.
+		TimeUnit.MILLISECONDS.sleep(llmLatencyMillis / 2);
+		sampleMemory();
+		done.await();
+		return failures.get();
+	}
+
+	private void upload(int upload) throws IOException, InterruptedException {
+		String text = extractor.extractDocx(docx);
+		peakWaiting.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+		try {
+			TimeUnit.MILLISECONDS.sleep(llmLatencyMillis);
+		} finally {
+			waiting.decrementAndGet();
+		}
+		Path page = corpusDirectory.resolve("page-" + upload + ".html");
+		Files.writeString(page, "<html><body><pre>" + text + "</pre></body></html>", StandardCharsets.UTF_8);
+		Files.delete(page);
+	}
+
+	private void sampleMemory() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		heapUsedBytes = memory.getHeapMemoryUsage().getUsed();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			String summary = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+					"vmNativeMemory", new Object[]{new String[]{"summary"}}, new String[]{String[].class.getName()});
+			Matcher matcher = THREAD_MEMORY.matcher(summary);
+			threadStackKilobytes = matcher.find() ? Long.parseLong(matcher.group(2)) : -1;
+		} catch (Exception e) {
+			threadStackKilobytes = -1;
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		System.out.printf("%n%s uploads=%d: peak concurrent uploads=%d, live threads=%d, heap used=%d MB, thread stacks committed=%d MB%n",
+				threads, uploads, peakWaiting.get(), ManagementFactory.getThreadMXBean().getThreadCount(),
+				heapUsedBytes >> 20, threadStackKilobytes >> 10);
+		peakWaiting.set(0);
+	}
+}
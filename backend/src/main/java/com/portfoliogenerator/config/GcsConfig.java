@@ -0,0 +1,24 @@
+package com.portfoliogenerator.config;
+
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "app.portfolio.store", havingValue = "gcs")
+public class GcsConfig {
+
+	/**
+	 * The GCS client for the portfolio store. Define another {@link Storage} bean to point
+	 * the store at a fake or emulator instead.
+	 */
+	@Bean
+	@ConditionalOnMissingBean(Storage.class)
+	public Storage storage(@Value("${gcs.project-id:${gemini.project-id}}") String projectId) {
+		return StorageOptions.newBuilder().setProjectId(projectId).build().getService();
+	}
+}
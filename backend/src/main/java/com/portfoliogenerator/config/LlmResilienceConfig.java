@@ -0,0 +1,9 @@
+package com.portfoliogenerator.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LlmResilienceProperties.class)
+public class LlmResilienceConfig {
+}
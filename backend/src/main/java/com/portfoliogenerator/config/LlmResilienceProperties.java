@@ -0,0 +1,55 @@
+package com.portfoliogenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Timeouts, retries, hedging, circuit breaking and the adaptive concurrency limit around
+ * LLM calls, under {@code app.llm.resilience}. The limit starts at
+ * {@code app.generation.llm-concurrency}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.llm.resilience")
+public class LlmResilienceProperties {
+	private Duration attemptTimeout = Duration.ofSeconds(90);
+	private Duration deadline = Duration.ofMinutes(3);
+	private Duration streamTimeout = Duration.ofMinutes(5);
+	private Limit limit = new Limit();
+	private Retry retry = new Retry();
+	private Hedge hedge = new Hedge();
+	private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+	@Data
+	public static class Limit {
+		private int min = 1;
+		private int max = 32;
+		private double backoffRatio = 0.75;
+		private double latencyTolerance = 2.0;
+	}
+
+	@Data
+	public static class Retry {
+		private int maxAttempts = 3;
+		private Duration initialBackoff = Duration.ofMillis(500);
+		private Duration maxBackoff = Duration.ofSeconds(8);
+	}
+
+	@Data
+	public static class Hedge {
+		private boolean enabled;
+		private double percentile = 0.95;
+		private Duration minDelay = Duration.ofSeconds(5);
+		private double budget = 0.1;
+	}
+
+	@Data
+	public static class CircuitBreaker {
+		private int window = 20;
+		private int minimumCalls = 10;
+		private double failureRateThreshold = 0.5;
+		private Duration openDuration = Duration.ofSeconds(30);
+		private int halfOpenCalls = 2;
+	}
+}
@@ -0,0 +1,84 @@
+package com.portfoliogenerator.config;
+
+import com.portfoliogenerator.filter.LocalBucketStore;
+import com.portfoliogenerator.service.GenerationCache;
+import com.portfoliogenerator.service.GenerationJobService;
+import com.portfoliogenerator.service.PortfolioRetentionService;
+import com.portfoliogenerator.service.PortfolioViewCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes the counters behind {@code /api/v1/stats} as meters so they are scraped
+ * together with the pipeline timers.
+ */
+@Configuration
+public class MetricsConfig {
+
+	@Bean
+	public MeterBinder generationQueueMetrics(GenerationJobService jobService) {
+		return registry -> {
+			Gauge.builder("portfolio.queue.depth", jobService, s -> s.getStats().getQueueDepth()).register(registry);
+			Gauge.builder("portfolio.queue.active.workers", jobService, s -> s.getStats().getActiveWorkers()).register(registry);
+			FunctionCounter.builder("portfolio.queue.submitted", jobService, s -> s.getStats().getSubmittedJobs()).register(registry);
+			FunctionCounter.builder("portfolio.queue.rejected", jobService, s -> s.getStats().getRejectedJobs()).register(registry);
+		};
+	}
+
+	@Bean
+	public MeterBinder generationCacheMetrics(GenerationCache generationCache) {
+		return registry -> {
+			Gauge.builder("portfolio.generation.cache.entries", generationCache, c -> c.getStats().getEntries()).register(registry);
+			Gauge.builder("portfolio.generation.cache.in.flight", generationCache, c -> c.getStats().getInFlightGenerations()).register(registry);
+			FunctionCounter.builder("portfolio.generation.cache.requests", generationCache, c -> c.getStats().getHits())
+					.tag("result", "hit").register(registry);
+			FunctionCounter.builder("portfolio.generation.cache.requests", generationCache, c -> c.getStats().getMisses())
+					.tag("result", "miss").register(registry);
+			FunctionCounter.builder("portfolio.generation.cache.requests", generationCache, c -> c.getStats().getJoins())
+					.tag("result", "join").register(registry);
+		};
+	}
+
+	@Bean
+	public MeterBinder rateLimitBucketMetrics(ObjectProvider<LocalBucketStore> localBucketStore) {
+		return registry -> localBucketStore.ifAvailable(bucketStore -> {
+			Gauge.builder("portfolio.rate.limit.buckets", bucketStore, LocalBucketStore::size).register(registry);
+			FunctionCounter.builder("portfolio.rate.limit.bucket.evictions", bucketStore, LocalBucketStore::getCapacityEvictions)
+					.tag("reason", "capacity").register(registry);
+			FunctionCounter.builder("portfolio.rate.limit.bucket.evictions", bucketStore, LocalBucketStore::getIdleEvictions)
+					.tag("reason", "idle").register(registry);
+		});
+	}
+
+	@Bean
+	public MeterBinder viewCacheMetrics(PortfolioViewCache viewCache) {
+		return registry -> {
+			Gauge.builder("portfolio.view.cache.used", viewCache, c -> c.getStats().getUsedBytes())
+					.baseUnit("bytes").register(registry);
+			FunctionCounter.builder("portfolio.view.cache.requests", viewCache, c -> c.getStats().getHits())
+					.tag("result", "hit").register(registry);
+			FunctionCounter.builder("portfolio.view.cache.requests", viewCache, c -> c.getStats().getMisses())
+					.tag("result", "miss").register(registry);
+			FunctionCounter.builder("portfolio.view.cache.evictions", viewCache, c -> c.getStats().getEvictions()).register(registry);
+		};
+	}
+
+	@Bean
+	public MeterBinder retentionMetrics(PortfolioRetentionService retentionService) {
+		return registry -> {
+			Gauge.builder("portfolio.retention.portfolios", retentionService, r -> r.getStats().getPortfolios()).register(registry);
+			Gauge.builder("portfolio.retention.stored", retentionService, r -> r.getStats().getStoredBytes())
+					.baseUnit("bytes").register(registry);
+			FunctionCounter.builder("portfolio.retention.evictions", retentionService, r -> r.getStats().getExpiredEvictions())
+					.tag("reason", "ttl").register(registry);
+			FunctionCounter.builder("portfolio.retention.evictions", retentionService, r -> r.getStats().getQuotaEvictions())
+					.tag("reason", "quota").register(registry);
+			FunctionCounter.builder("portfolio.retention.evicted", retentionService, r -> r.getStats().getEvictedBytes())
+					.baseUnit("bytes").register(registry);
+		};
+	}
+}
@@ -0,0 +1,32 @@
+package com.portfoliogenerator.config;
+
+import com.portfoliogenerator.filter.InMemoryBucketProxyManager;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class RateLimitConfig {
+	private static final Logger logger = LoggerFactory.getLogger(RateLimitConfig.class);
+
+	/**
+	 * Stand-in backend for {@code app.rate-limit.store=distributed} when no shared
+	 * {@code ProxyManager} bean is defined.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "distributed")
+	@ConditionalOnMissingBean(ProxyManager.class)
+	public ProxyManager<String> inMemoryBucketProxyManager(
+			@Value("${app.rate-limit.distributed.keep-after-refill:PT1M}") Duration keepAfterRefill) {
+		logger.warn("No shared ProxyManager configured; rate limits are kept in process and not shared across instances.");
+		return new InMemoryBucketProxyManager(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(keepAfterRefill));
+	}
+}
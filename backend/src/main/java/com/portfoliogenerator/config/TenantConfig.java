@@ -0,0 +1,17 @@
+package com.portfoliogenerator.config;
+
+import com.portfoliogenerator.service.TenantContext;
+import io.micrometer.context.ContextRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(TenantProperties.class)
+public class TenantConfig {
+
+	public TenantConfig() {
+		// Lets ContextSnapshotFactory carry the tenant to generation workers.
+		ContextRegistry.getInstance().registerThreadLocalAccessor(TenantContext.CONTEXT_KEY,
+				TenantContext::get, TenantContext::set, TenantContext::clear);
+	}
+}
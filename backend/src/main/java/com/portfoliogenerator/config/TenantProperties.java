@@ -0,0 +1,27 @@
+package com.portfoliogenerator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tenants under {@code app.security.tenants[n]}. Keys are configured only as the hex
+ * SHA-256 of the key, several per tenant so keys can be rotated without downtime.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.security")
+public class TenantProperties {
+	private List<TenantDefinition> tenants = new ArrayList<>();
+
+	@Data
+	public static class TenantDefinition {
+		private String name;
+		private List<String> keySha256 = new ArrayList<>();
+		private int weight = 1;
+		private int uploadsPerMinute = 3;
+		private int requestsPerMinute = 10;
+		private boolean quotaPerClient;
+	}
+}
@@ -1,11 +1,22 @@
 package com.portfoliogenerator.config;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+	/**
+	 * Upload endpoint that reads its multipart body itself, see {@code ResumeIngestService}.
+	 */
+	public static final String STREAMING_UPLOAD_PATH = "/api/v1/resume/ingest";
+
 	@Override
 	public void addCorsMappings(CorsRegistry registry) {
 		registry.addMapping("/**")
@@ -17,4 +28,23 @@ public class WebConfig implements WebMvcConfigurer {
 				.allowedHeaders("*")
 				.allowCredentials(true);
 	}
+
+	/**
+	 * Replaces Spring Boot's resolver so that the streaming upload path is left alone:
+	 * otherwise the whole body would be parsed and spooled to disk before the controller
+	 * runs. Everything else is resolved as before.
+	 */
+	@Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+	public MultipartResolver multipartResolver(MultipartProperties multipartProperties) {
+		StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+			@Override
+			public boolean isMultipart(HttpServletRequest request) {
+				String path = request.getRequestURI().substring(request.getContextPath().length());
+				return !STREAMING_UPLOAD_PATH.equals(path) && super.isMultipart(request);
+			}
+		};
+		resolver.setResolveLazily(multipartProperties.isResolveLazily());
+		resolver.setStrictServletCompliance(multipartProperties.isStrictServletCompliance());
+		return resolver;
+	}
 }
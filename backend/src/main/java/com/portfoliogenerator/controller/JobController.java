@@ -0,0 +1,59 @@
+package com.portfoliogenerator.controller;
+
+import com.portfoliogenerator.dto.GenerationQueueStats;
+import com.portfoliogenerator.dto.JobStatusResponse;
+import com.portfoliogenerator.dto.PortfolioResponse;
+import com.portfoliogenerator.service.GenerationJob;
+import com.portfoliogenerator.service.GenerationJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+public class JobController {
+	private final GenerationJobService generationJobService;
+
+	public JobController(GenerationJobService generationJobService) {
+		this.generationJobService = generationJobService;
+	}
+
+	@GetMapping("/api/v1/jobs/stats")
+	public ResponseEntity<GenerationQueueStats> getQueueStats() {
+		return ResponseEntity.ok(generationJobService.getStats());
+	}
+
+	@GetMapping("/api/v1/jobs/{jobId}")
+	public ResponseEntity<JobStatusResponse> getJobStatus(@PathVariable String jobId) {
+		return ResponseEntity.ok(toStatusResponse(findJob(jobId)));
+	}
+
+	@GetMapping("/api/v1/jobs/{jobId}/result")
+	public ResponseEntity<PortfolioResponse> getJobResult(@PathVariable String jobId) {
+		GenerationJob job = findJob(jobId);
+
+		return switch (job.getStatus()) {
+			case SUCCEEDED -> ResponseEntity.ok(job.getResult());
+			case FAILED -> ResponseEntity.unprocessableEntity().body(new PortfolioResponse(null, null, null, job.getErrorMessage()));
+			default -> ResponseEntity.status(HttpStatus.ACCEPTED).body(new PortfolioResponse(null, null, null, "Portfolio generation is still in progress."));
+		};
+	}
+
+	private GenerationJob findJob(String jobId) {
+		return generationJobService.findJob(jobId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Generation job not found"));
+	}
+
+	static JobStatusResponse toStatusResponse(GenerationJob job) {
+		String statusUrl = "/api/v1/jobs/" + job.getJobId();
+		String message = switch (job.getStatus()) {
+			case QUEUED -> "Waiting for a free generation worker.";
+			case RUNNING -> "Portfolio generation is in progress.";
+			case SUCCEEDED -> "Portfolio generated successfully.";
+			case FAILED -> job.getErrorMessage();
+		};
+		return new JobStatusResponse(job.getJobId(), job.getStatus().name(), statusUrl, statusUrl + "/result", message, job.getResult());
+	}
+}
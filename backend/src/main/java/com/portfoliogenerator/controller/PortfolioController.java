@@ -1,10 +1,35 @@
 package com.portfoliogenerator.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfoliogenerator.config.WebConfig;
+import com.portfoliogenerator.dto.BatchItemResult;
+import com.portfoliogenerator.dto.JobStatusResponse;
 import com.portfoliogenerator.dto.PortfolioResponse;
+import com.portfoliogenerator.filter.RateLimitingFilter;
 import com.portfoliogenerator.exception.FileStorageException;
+import com.portfoliogenerator.exception.JobQueueFullException;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import com.portfoliogenerator.exception.RateLimitExceededException;
+import com.portfoliogenerator.exception.RegenerationInProgressException;
+import com.portfoliogenerator.exception.RejectedUploadException;
 import com.portfoliogenerator.exception.ResourceNotFoundException;
+import com.portfoliogenerator.exception.StructuredDataMissingException;
+import com.portfoliogenerator.service.BatchGenerationService;
+import com.portfoliogenerator.service.BatchRun;
+import com.portfoliogenerator.service.ContentEncoding;
+import com.portfoliogenerator.service.GenerationJob;
+import com.portfoliogenerator.service.GenerationJobService;
+import com.portfoliogenerator.service.GenerationStreamListener;
+import com.portfoliogenerator.service.PortfolioContent;
 import com.portfoliogenerator.service.PortfolioService;
-import org.springframework.core.io.Resource;
+import com.portfoliogenerator.service.PortfolioVariant;
+import com.portfoliogenerator.service.ResumeIngestService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -12,16 +37,46 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 public class PortfolioController {
+	private static final Logger logger = LoggerFactory.getLogger(PortfolioController.class);
+
 	private final PortfolioService portfolioService;
+	private final GenerationJobService generationJobService;
+	private final Duration streamTimeout;
+	private final CacheControl viewCacheControl;
+	private final PortfolioFileSender portfolioFileSender;
+	private final BatchGenerationService batchGenerationService;
+	private final ResumeIngestService resumeIngestService;
+	private final ObjectMapper objectMapper;
+
+	private static final MediaType HTML_UTF8 = new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+	private static final String NDJSON_VALUE = "application/x-ndjson";
 
-	public PortfolioController (PortfolioService portfolioService){
+	public PortfolioController (PortfolioService portfolioService, GenerationJobService generationJobService, PortfolioFileSender portfolioFileSender,
+								BatchGenerationService batchGenerationService, ResumeIngestService resumeIngestService, ObjectMapper objectMapper,
+								@Value("${app.generation.stream-timeout:PT5M}") Duration streamTimeout,
+								@Value("${app.portfolio.view-max-age:PT5M}") Duration viewMaxAge){
 		this.portfolioService = portfolioService;
+		this.generationJobService = generationJobService;
+		this.portfolioFileSender = portfolioFileSender;
+		this.batchGenerationService = batchGenerationService;
+		this.resumeIngestService = resumeIngestService;
+		this.objectMapper = objectMapper;
+		this.streamTimeout = streamTimeout;
+		this.viewCacheControl = CacheControl.maxAge(viewMaxAge).cachePublic().mustRevalidate();
 	}
 
 	@PostMapping("/api/v1/resume/upload")
@@ -30,38 +85,261 @@ public class PortfolioController {
 			PortfolioResponse response = portfolioService.processResumeUpload(file);
 			return ResponseEntity.ok(response);
 		} catch (IllegalArgumentException | FileStorageException e){
-			System.out.println("Exception occurred: " + e.getMessage());
+			logger.info("Rejected upload: {}", e.getMessage());
 			return ResponseEntity.badRequest().body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}catch (LlmUnavailableException e){
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+					.body(new PortfolioResponse(null, null, null, e.getMessage()));
 		}catch (Exception e){
-			System.out.println("Unexpected error during upload: " + e.getMessage());
-			e.printStackTrace();
+			logger.error("Unexpected error during upload", e);
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PortfolioResponse(null, null, null, "An unexpected error occurred. Please retry."));
 		}
 	}
 
+	/**
+	 * Same as the synchronous upload, but the multipart body is read as it arrives and
+	 * refused with 415 (or 413) as soon as the file turns out not to be a PDF or DOCX, see
+	 * {@link ResumeIngestService}. The connection is closed on rejection so the client stops
+	 * sending the rest.
+	 */
+	@PostMapping(WebConfig.STREAMING_UPLOAD_PATH)
+	public ResponseEntity<PortfolioResponse> ingestResume(HttpServletRequest request){
+		try{
+			return ResponseEntity.ok(resumeIngestService.ingest(request));
+		} catch (RejectedUploadException e){
+			return ResponseEntity.status(e.getReason().getStatus())
+					.header(HttpHeaders.CONNECTION, "close")
+					.body(new PortfolioResponse(null, null, null, e.getMessage()));
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected upload: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}catch (LlmUnavailableException e){
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+					.body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}catch (Exception e){
+			logger.error("Unexpected error during streamed upload", e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PortfolioResponse(null, null, null, "An unexpected error occurred. Please retry."));
+		}
+	}
+
+	@PostMapping(value = "/api/v1/resume/upload", params = "mode=async")
+	public ResponseEntity<JobStatusResponse> submitResumeGenerationJob(@RequestParam("resumeFile") MultipartFile file){
+		try{
+			GenerationJob job = generationJobService.submit(file);
+			JobStatusResponse response = JobController.toStatusResponse(job);
+			return ResponseEntity.accepted().location(URI.create(response.getStatusUrl())).body(response);
+		} catch (JobQueueFullException e){
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.header(HttpHeaders.RETRY_AFTER, "30")
+					.body(new JobStatusResponse(null, null, null, null, e.getMessage(), null));
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected upload: {}", e.getMessage());
+			return ResponseEntity.badRequest().body(new JobStatusResponse(null, null, null, null, e.getMessage(), null));
+		}
+	}
+
+	/**
+	 * Streams the generated HTML as Server-Sent Events: {@code started} with the portfolio
+	 * ID, a {@code chunk} event per piece of HTML, then {@code completed} with the usual
+	 * {@link PortfolioResponse} or {@code failed} with an error message.
+	 */
+	@PostMapping(value = "/api/v1/resume/upload", params = "mode=stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamResumeGeneration(@RequestParam("resumeFile") MultipartFile file){
+		SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+		try{
+			generationJobService.submitStreaming(file, new SseGenerationListener(emitter));
+			return ResponseEntity.ok(emitter);
+		} catch (JobQueueFullException e){
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30").build();
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected upload: {}", e.getMessage());
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Generates portfolios for a zip archive ({@code archive}) or a set of files
+	 * ({@code resumeFiles}) and streams one NDJSON {@link BatchItemResult} per resume as
+	 * each finishes. Failed items are reported in their own line.
+	 */
+	@PostMapping(value = "/api/v1/resume/batch", produces = NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> uploadResumeBatch(
+			@RequestParam(value = "archive", required = false) MultipartFile archive,
+			@RequestParam(value = "resumeFiles", required = false) List<MultipartFile> files,
+			HttpServletRequest request){
+		BatchRun run;
+		try{
+			if (archive != null && !archive.isEmpty()) {
+				run = batchGenerationService.submitArchive(archive, items -> RateLimitingFilter.chargeUploads(request, items));
+			} else if (files != null) {
+				run = batchGenerationService.submitFiles(files, items -> RateLimitingFilter.chargeUploads(request, items));
+			} else {
+				throw new IllegalArgumentException("Upload a zip as 'archive' or the resumes as 'resumeFiles'.");
+			}
+		} catch (RateLimitExceededException e){
+			logger.info("Rejected batch upload: {}", e.getMessage());
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+					.build();
+		} catch (JobQueueFullException e){
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30").build();
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected batch upload: {}", e.getMessage());
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+
+		// If the client goes away the remaining items still finish and are cached for a retry.
+		StreamingResponseBody body = out -> {
+			try {
+				BatchItemResult result;
+				while ((result = run.next()) != null) {
+					out.write(objectMapper.writeValueAsBytes(result));
+					out.write('\n');
+					out.flush();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(NDJSON_VALUE))
+				.header("X-Batch-Size", String.valueOf(run.size()))
+				.body(body);
+	}
+
+	/**
+	 * Regenerates an existing portfolio from an updated resume, keeping its ID and URL.
+	 */
+	@PutMapping("/api/v1/portfolios/{portfolioId}/resume")
+	public ResponseEntity<PortfolioResponse> reuploadResume(@PathVariable String portfolioId, @RequestParam("resumeFile") MultipartFile file){
+		try{
+			PortfolioResponse response = portfolioService.processResumeReupload(portfolioId, file);
+			return ResponseEntity.ok(response);
+		} catch (ResourceNotFoundException e){
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new PortfolioResponse(null, null, null, e.getMessage()));
+		} catch (RegenerationInProgressException e){
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new PortfolioResponse(portfolioId, null, null, e.getMessage()));
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected re-upload for {}: {}", portfolioId, e.getMessage());
+			return ResponseEntity.badRequest().body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}catch (LlmUnavailableException e){
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+					.body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}catch (Exception e){
+			logger.error("Unexpected error during re-upload of {}", portfolioId, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PortfolioResponse(null, null, null, "An unexpected error occurred. Please retry."));
+		}
+	}
+
+	/**
+	 * Renders a portfolio generated in structured mode with another theme. Nothing is sent
+	 * to Gemini, so this is a quick local re-render.
+	 */
+	@PutMapping("/api/v1/portfolios/{portfolioId}/theme")
+	public ResponseEntity<PortfolioResponse> rethemePortfolio(@PathVariable String portfolioId, @RequestParam("theme") String theme){
+		try{
+			return ResponseEntity.ok(portfolioService.rethemePortfolio(portfolioId, theme));
+		} catch (ResourceNotFoundException e){
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new PortfolioResponse(null, null, null, e.getMessage()));
+		} catch (RegenerationInProgressException | StructuredDataMissingException e){
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new PortfolioResponse(portfolioId, null, null, e.getMessage()));
+		} catch (IllegalArgumentException | FileStorageException e){
+			logger.info("Rejected re-theme of {}: {}", portfolioId, e.getMessage());
+			return ResponseEntity.badRequest().body(new PortfolioResponse(null, null, null, e.getMessage()));
+		}
+	}
+
+	@GetMapping("/api/v1/themes")
+	public Set<String> listThemes(){
+		return portfolioService.availableThemes();
+	}
+
 	@GetMapping("/{portfolioId}")
-	public ResponseEntity<String> viewPortfolio(@PathVariable String portfolioId){
+	public ResponseEntity<byte[]> viewPortfolio(@PathVariable String portfolioId, HttpServletRequest request, HttpServletResponse response){
 		try{
-			Resource resource = portfolioService.loadPortfolioFile(portfolioId, portfolioId + ".html");
-			String content = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-			return ResponseEntity.ok().contentType(MediaType.TEXT_HTML).body(content);
+			// Pages are stored precompressed; pick the stored variant the client accepts.
+			List<ContentEncoding> accepted = ContentEncoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+			Optional<PortfolioContent> content = portfolioService.loadPortfolioContent(portfolioId, accepted);
+			if (content.isEmpty()) {
+				// Too large to buffer; stream it from disk instead.
+				PortfolioVariant variant = portfolioService.loadPortfolioVariant(portfolioId, accepted);
+				portfolioFileSender.send(variant.file(), variant.encoding(), HTML_UTF8, null, request, response);
+				return null;
+			}
+			// Spring answers If-None-Match / If-Modified-Since with 304 based on these validators.
+			ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+					.contentType(HTML_UTF8)
+					.eTag(content.get().etag())
+					.lastModified(content.get().lastModifiedMillis())
+					.cacheControl(viewCacheControl)
+					.varyBy(HttpHeaders.ACCEPT_ENCODING);
+			if (content.get().encoding() != ContentEncoding.IDENTITY) {
+				builder.header(HttpHeaders.CONTENT_ENCODING, content.get().encoding().token());
+			}
+			return builder.body(content.get().body());
 		}catch (ResourceNotFoundException e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Portfolio not found", e);
-		} catch (IOException e) {
+		} catch (FileStorageException | IOException e) {
 			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read portfolio file", e);
 		}
 	}
 
 	@GetMapping("/api/v1/portfolios/{portfolioId}/download")
-	public ResponseEntity<Resource> downloadPortfolioHtml(@PathVariable String portfolioId) {
+	public void downloadPortfolioHtml(@PathVariable String portfolioId, HttpServletRequest request, HttpServletResponse response) throws IOException {
 		try {
-			Resource resource = portfolioService.loadPortfolioFile(portfolioId, portfolioId + ".html");
-			return ResponseEntity.ok()
-					.contentType(MediaType.TEXT_HTML) // Or MediaType.APPLICATION_OCTET_STREAM for generic download
-					.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + portfolioId + ".html\"")
-					.body(resource);
+			PortfolioVariant variant = portfolioService.loadPortfolioVariant(portfolioId,
+					ContentEncoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)));
+			portfolioFileSender.send(variant.file(), variant.encoding(), HTML_UTF8, "attachment; filename=\"" + portfolioId + ".html\"", request, response);
 		} catch (ResourceNotFoundException e) {
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Portfolio HTML not found for download.", e);
 		}
 	}
+
+	private static class SseGenerationListener implements GenerationStreamListener {
+		private final SseEmitter emitter;
+		private volatile boolean clientGone;
+
+		SseGenerationListener(SseEmitter emitter) {
+			this.emitter = emitter;
+			emitter.onTimeout(() -> clientGone = true);
+			emitter.onError(e -> clientGone = true);
+		}
+
+		@Override
+		public void onStarted(String portfolioId) {
+			send("started", Map.of("portfolioId", portfolioId));
+		}
+
+		@Override
+		public void onChunk(String html) {
+			send("chunk", html);
+		}
+
+		@Override
+		public void onCompleted(PortfolioResponse response) {
+			send("completed", response);
+			emitter.complete();
+		}
+
+		@Override
+		public void onFailed(String message) {
+			send("failed", new PortfolioResponse(null, null, null, message));
+			emitter.complete();
+		}
+
+		private void send(String eventName, Object data) {
+			if (clientGone) {
+				// Keep generating so the portfolio is still stored and cached for a retry.
+				return;
+			}
+			try {
+				emitter.send(SseEmitter.event().name(eventName).data(data));
+			} catch (IOException | IllegalStateException e) {
+				clientGone = true;
+			}
+		}
+	}
 }
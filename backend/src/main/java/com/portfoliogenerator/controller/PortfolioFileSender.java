@@ -0,0 +1,130 @@
+package com.portfoliogenerator.controller;
+
+import com.portfoliogenerator.service.ContentEncoding;
+import com.portfoliogenerator.service.StoredFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes a stored portfolio file straight to the response without buffering it on the
+ * heap. On Tomcat the bytes are handed to the connector's sendfile support so they go
+ * from the page cache to the socket; otherwise {@link FileChannel#transferTo} is used.
+ * Single {@code Range} requests (optionally guarded by {@code If-Range}) get a 206.
+ * Precompressed variants are sent with their {@code Content-Encoding}; ranges and
+ * validators then refer to the encoded bytes.
+ */
+@Component
+public class PortfolioFileSender {
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	public void send(StoredFile storedFile, ContentEncoding encoding, MediaType contentType, String contentDisposition,
+					 HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Path file = storedFile.path();
+		long length = storedFile.length();
+		long lastModified = storedFile.lastModifiedMillis();
+		String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length)
+				+ (encoding == ContentEncoding.IDENTITY ? "" : "-" + encoding.token()) + "\"";
+
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+		if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+			return;
+		}
+
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+		response.setContentType(contentType.toString());
+		if (encoding != ContentEncoding.IDENTITY) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.token());
+		}
+		if (contentDisposition != null) {
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+		}
+
+		long start = 0;
+		long end = length - 1;
+
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader != null && isIfRangeSatisfied(request, etag, lastModified)) {
+			List<HttpRange> ranges;
+			try {
+				ranges = HttpRange.parseRanges(rangeHeader);
+			} catch (IllegalArgumentException e) {
+				ranges = List.of();
+			}
+			// Multi-range requests are answered with the full body, which RFC 9110 allows.
+			if (ranges.size() == 1) {
+				HttpRange range = ranges.get(0);
+				start = range.getRangeStart(length);
+				end = range.getRangeEnd(length);
+				if (start >= length || start > end) {
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+
+		long count = end - start + 1;
+		response.setContentLengthLong(count);
+		if ("HEAD".equals(request.getMethod()) || count <= 0) {
+			return;
+		}
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			// Tomcat performs the transfer itself once the handler returns.
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, storedFile.offset() + start);
+			request.setAttribute(SENDFILE_END, storedFile.offset() + end + 1);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = storedFile.offset() + start;
+			long remaining = count;
+			while (remaining > 0) {
+				long transferred = channel.transferTo(position, remaining, out);
+				if (transferred <= 0) {
+					break;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+		}
+	}
+
+	private boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			// If-Range requires a strong comparison.
+			return ifRange.equals(etag);
+		}
+		try {
+			long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+			return ifRangeDate != -1 && lastModified / 1000 == ifRangeDate / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.portfoliogenerator.controller;
+
+import com.portfoliogenerator.service.GenerationCache;
+import com.portfoliogenerator.service.GenerationJobService;
+import com.portfoliogenerator.service.PortfolioRetentionService;
+import com.portfoliogenerator.service.PortfolioViewCache;
+import com.portfoliogenerator.service.ResilientLlmClient;
+import com.portfoliogenerator.service.ResumeIngestService;
+import com.portfoliogenerator.service.WeightedFairScheduler;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+public class StatsController {
+	private final GenerationJobService generationJobService;
+	private final GenerationCache generationCache;
+	private final PortfolioViewCache viewCache;
+	private final WeightedFairScheduler llmScheduler;
+	private final ResilientLlmClient llmClient;
+	private final ResumeIngestService resumeIngestService;
+	private final PortfolioRetentionService retentionService;
+
+	public StatsController(GenerationJobService generationJobService, GenerationCache generationCache, PortfolioViewCache viewCache,
+						   WeightedFairScheduler llmScheduler, ResilientLlmClient llmClient, ResumeIngestService resumeIngestService,
+						   PortfolioRetentionService retentionService) {
+		this.generationJobService = generationJobService;
+		this.generationCache = generationCache;
+		this.viewCache = viewCache;
+		this.llmScheduler = llmScheduler;
+		this.llmClient = llmClient;
+		this.resumeIngestService = resumeIngestService;
+		this.retentionService = retentionService;
+	}
+
+	@GetMapping("/api/v1/stats")
+	public ResponseEntity<Map<String, Object>> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("generationQueue", generationJobService.getStats());
+		stats.put("generationCache", generationCache.getStats());
+		stats.put("viewCache", viewCache.getStats());
+		stats.put("tenants", llmScheduler.getStats());
+		stats.put("llm", llmClient.getStats());
+		stats.put("ingest", resumeIngestService.getStats());
+		stats.put("retention", retentionService.getStats());
+		return ResponseEntity.ok(stats);
+	}
+}
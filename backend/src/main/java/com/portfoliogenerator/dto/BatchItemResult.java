@@ -0,0 +1,25 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a batch upload's NDJSON response. {@code index} is the item's position in
+ * the upload, since results arrive in completion order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+	public static final String SUCCEEDED = "SUCCEEDED";
+	public static final String FAILED = "FAILED";
+
+	private int index;
+	private String filename;
+	private String status;
+	private String portfolioId;
+	private String portfolioUrl;
+	private String downloadUrl;
+	private String message;
+}
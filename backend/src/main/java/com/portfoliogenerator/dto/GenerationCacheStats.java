@@ -0,0 +1,18 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationCacheStats {
+	private int entries;
+	private int maxEntries;
+	private int inFlightGenerations;
+	private long hits;
+	private long misses;
+	private long joins;
+	private long evictions;
+}
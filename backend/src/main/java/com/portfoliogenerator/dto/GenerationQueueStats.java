@@ -0,0 +1,21 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationQueueStats {
+	private int queueDepth;
+	private int queueCapacity;
+	private int activeWorkers;
+	private int maxWorkers;
+	private long submittedJobs;
+	private long rejectedJobs;
+	private long completedJobs;
+	private long failedJobs;
+	private long totalQueueWaitMillis;
+	private long maxQueueWaitMillis;
+}
@@ -0,0 +1,16 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestStats {
+	private long accepted;
+	private long rejected;
+	private long bytesReceived;
+	// Declared request bytes that were never read because the upload was rejected early.
+	private long bytesSaved;
+}
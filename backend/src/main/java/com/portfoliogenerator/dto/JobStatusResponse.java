@@ -0,0 +1,17 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobStatusResponse {
+	private String jobId;
+	private String status;
+	private String statusUrl;
+	private String resultUrl;
+	private String message;
+	private PortfolioResponse result;
+}
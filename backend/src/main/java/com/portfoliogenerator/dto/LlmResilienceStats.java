@@ -0,0 +1,19 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LlmResilienceStats {
+	private int concurrencyLimit;
+	private int inFlight;
+	private String circuitState;
+	private long attempts;
+	private long retries;
+	private long hedges;
+	private long hedgeWins;
+	private long rejected;
+}
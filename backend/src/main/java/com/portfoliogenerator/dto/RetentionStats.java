@@ -0,0 +1,21 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionStats {
+	private boolean enabled;
+	private boolean scanComplete;
+	private int portfolios;
+	private long storedBytes;
+	private long maxStoredBytes;
+	private int pendingAccesses;
+	private long expiredEvictions;
+	private long quotaEvictions;
+	private long evictedBytes;
+	private long failedEvictions;
+}
@@ -0,0 +1,17 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantQueueStats {
+	private String tenant;
+	private int weight;
+	private int queued;
+	private int active;
+	private long dispatched;
+	private long totalQueueWaitMillis;
+}
@@ -0,0 +1,17 @@
+package com.portfoliogenerator.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewCacheStats {
+	private int entries;
+	private long usedBytes;
+	private long maxBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+}
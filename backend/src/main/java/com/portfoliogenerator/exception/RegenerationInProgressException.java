@@ -0,0 +1,7 @@
+package com.portfoliogenerator.exception;
+
+public class RegenerationInProgressException extends RuntimeException {
+	public RegenerationInProgressException(String message) {
+		super(message);
+	}
+}
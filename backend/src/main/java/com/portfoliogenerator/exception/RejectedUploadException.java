@@ -0,0 +1,36 @@
+package com.portfoliogenerator.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * An upload turned away while its body was still being received, before it was stored
+ * or parsed.
+ */
+public class RejectedUploadException extends RuntimeException {
+	public enum Reason {
+		MALFORMED(HttpStatus.BAD_REQUEST),
+		UNSUPPORTED_TYPE(HttpStatus.UNSUPPORTED_MEDIA_TYPE),
+		TOO_LARGE(HttpStatus.PAYLOAD_TOO_LARGE);
+
+		private final HttpStatus status;
+
+		Reason(HttpStatus status) {
+			this.status = status;
+		}
+
+		public HttpStatus getStatus() {
+			return status;
+		}
+	}
+
+	private final Reason reason;
+
+	public RejectedUploadException(Reason reason, String message) {
+		super(message);
+		this.reason = reason;
+	}
+
+	public Reason getReason() {
+		return reason;
+	}
+}
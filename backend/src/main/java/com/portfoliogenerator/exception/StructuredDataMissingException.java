@@ -0,0 +1,7 @@
+package com.portfoliogenerator.exception;
+
+public class StructuredDataMissingException extends RuntimeException {
+	public StructuredDataMissingException(String message) {
+		super(message);
+	}
+}
@@ -1,11 +1,14 @@
 package com.portfoliogenerator.filter;
 
+import com.portfoliogenerator.service.PortfolioIdCodec;
+import com.portfoliogenerator.service.Tenant;
+import com.portfoliogenerator.service.TenantContext;
+import com.portfoliogenerator.service.TenantRegistry;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
@@ -13,6 +16,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 
 @Component
@@ -20,16 +24,22 @@ import java.util.Set;
 public class ApiKeyAuthFilter implements Filter {
 	private static final Logger logger = LoggerFactory.getLogger(ApiKeyAuthFilter.class);
 
-	@Value("${app.security.api-key}")
-	private String appSecurityApiKey;
 	private static final String API_KEY_HEADER_NAME = "X-API-Key";
 
 	private static final Set<String> UNPROTECTED_PATHS = new HashSet<>(Arrays.asList("/", "/api/v1/portfolios/"));
 
+	private final PortfolioIdCodec portfolioIdCodec;
+	private final TenantRegistry tenantRegistry;
+
+	public ApiKeyAuthFilter(PortfolioIdCodec portfolioIdCodec, TenantRegistry tenantRegistry) {
+		this.portfolioIdCodec = portfolioIdCodec;
+		this.tenantRegistry = tenantRegistry;
+	}
+
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
-		if (appSecurityApiKey == null || appSecurityApiKey.isEmpty()){
-			logger.warn("App security api key is not configured properly.");
+		if (tenantRegistry.getTenants().isEmpty()){
+			logger.warn("No API keys are configured; set app.security.api-key or app.security.tenants.");
 		}
 	}
 
@@ -54,18 +64,25 @@ public class ApiKeyAuthFilter implements Filter {
 		}
 
 		// for the portfolio view paths
-		if(path.matches("/[a-zA-Z0-9]{5}$")){
+		if(isPortfolioViewPath(path)){
 			chain.doFilter(request, response);
 			return;
 		}
 
 		String providedApiKey = httpRequest.getHeader(API_KEY_HEADER_NAME);
 
-		if (appSecurityApiKey != null && appSecurityApiKey.equals(providedApiKey)){
-			chain.doFilter(request, response);
+		Optional<Tenant> tenant = tenantRegistry.authenticate(providedApiKey);
+
+		if (tenant.isPresent()){
+			TenantContext.set(tenant.get());
+			try {
+				chain.doFilter(request, response);
+			} finally {
+				TenantContext.clear();
+			}
 		}else {
-			logger.error("Forbidden: Missing or invalid API Key. URI: {}, Method: {}, Received Key: '{}'",
-					path, method, providedApiKey != null ? providedApiKey : "null");
+			logger.error("Forbidden: Missing or invalid API Key. URI: {}, Method: {}, Key present: {}",
+					path, method, providedApiKey != null);
 
 			httpResponse.setStatus(HttpServletResponse.SC_FORBIDDEN);
 			httpResponse.setContentType("application/json");
@@ -73,6 +90,14 @@ public class ApiKeyAuthFilter implements Filter {
 		}
 	}
 
+	private boolean isPortfolioViewPath(String path) {
+		if (path.length() < 2 || path.charAt(0) != '/' || path.indexOf('/', 1) >= 0) {
+			return false;
+		}
+		String portfolioId = path.substring(1);
+		return PortfolioIdCodec.isLegacyId(portfolioId) || portfolioIdCodec.isWellFormed(portfolioId);
+	}
+
 	@Override
 	public void destroy() {
 		logger.info("ApiKeyAuthFilter destroyed.");
@@ -0,0 +1,18 @@
+package com.portfoliogenerator.filter;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+
+import java.util.function.Supplier;
+
+/**
+ * Where {@link RateLimitingFilter} keeps its per-client buckets.
+ */
+public interface BucketStore {
+
+	/**
+	 * Returns the bucket for {@code key}, creating it from {@code configuration} if it does
+	 * not exist yet.
+	 */
+	Bucket resolve(String key, Supplier<BucketConfiguration> configuration);
+}
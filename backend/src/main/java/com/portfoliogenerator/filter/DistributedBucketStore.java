@@ -0,0 +1,32 @@
+package com.portfoliogenerator.filter;
+
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Buckets whose state lives in a store shared by all instances, through a bucket4j
+ * {@link ProxyManager}, so a client gets the same quota no matter which node serves it.
+ * Each token grab is an atomic update of the shared state.
+ * <p>
+ * Any {@code ProxyManager<String>} bean can be plugged in (Redis, JDBC, Hazelcast, ...);
+ * without one the in-process {@link InMemoryBucketProxyManager} is used.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "distributed")
+public class DistributedBucketStore implements BucketStore {
+	private final ProxyManager<String> proxyManager;
+
+	public DistributedBucketStore(ProxyManager<String> proxyManager) {
+		this.proxyManager = proxyManager;
+	}
+
+	@Override
+	public Bucket resolve(String key, Supplier<BucketConfiguration> configuration) {
+		return proxyManager.builder().build(key, configuration);
+	}
+}
@@ -0,0 +1,107 @@
+package com.portfoliogenerator.filter;
+
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compare-and-swap {@code ProxyManager} over an in-process map. It goes through the same
+ * serialized-state, optimistic-update protocol bucket4j uses with a remote key-value
+ * store, and expires state with the same time-to-live rule, but it only shares limits
+ * between callers in this JVM. Meant for single-instance deployments and local runs of
+ * the distributed setup; clusters should provide a real shared {@code ProxyManager}.
+ */
+public class InMemoryBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+	private final ConcurrentHashMap<String, StoredState> states = new ConcurrentHashMap<>();
+	private final ExpirationAfterWriteStrategy expiration;
+
+	public InMemoryBucketProxyManager(ExpirationAfterWriteStrategy expiration) {
+		super(ClientSideConfig.getDefault());
+		this.expiration = expiration;
+	}
+
+	@Override
+	protected CompareAndSwapOperation beginCompareAndSwapOperation(String key) {
+		return new CompareAndSwapOperation() {
+			@Override
+			public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+				return Optional.ofNullable(liveData(states.get(key), System.currentTimeMillis()));
+			}
+
+			@Override
+			public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState, Optional<Long> timeoutNanos) {
+				long now = System.currentTimeMillis();
+				long timeToLive = expiration.calculateTimeToLiveMillis(newState, now);
+				StoredState replacement = new StoredState(newData, timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE);
+
+				boolean[] swapped = new boolean[1];
+				states.compute(key, (k, current) -> {
+					if (!Arrays.equals(liveData(current, now), originalData)) {
+						return current;
+					}
+					swapped[0] = true;
+					return replacement;
+				});
+				return swapped[0];
+			}
+		};
+	}
+
+	@Override
+	protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key) {
+		CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+		return new AsyncCompareAndSwapOperation() {
+			@Override
+			public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+				return CompletableFuture.completedFuture(operation.getStateData(timeoutNanos));
+			}
+
+			@Override
+			public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState, Optional<Long> timeoutNanos) {
+				return CompletableFuture.completedFuture(operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+			}
+		};
+	}
+
+	@Override
+	public void removeProxy(String key) {
+		states.remove(key);
+	}
+
+	@Override
+	protected CompletableFuture<Void> removeAsync(String key) {
+		removeProxy(key);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public boolean isAsyncModeSupported() {
+		return true;
+	}
+
+	public int size() {
+		return states.size();
+	}
+
+	@Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval:PT1M}")
+	public void purgeExpired() {
+		long now = System.currentTimeMillis();
+		states.values().removeIf(state -> state.expiresAtMillis() <= now);
+	}
+
+	private static byte[] liveData(StoredState state, long now) {
+		return state == null || state.expiresAtMillis() <= now ? null : state.data();
+	}
+
+	private record StoredState(byte[] data, long expiresAtMillis) {
+	}
+}
@@ -0,0 +1,148 @@
+package com.portfoliogenerator.filter;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process buckets, split into independently locked shards so concurrent requests for
+ * different clients rarely contend. Each shard is an LRU map with a fixed capacity, and
+ * buckets that have not been used for the idle timeout are dropped. With an idle timeout
+ * longer than the refill period a dropped bucket would have been full again anyway, so
+ * idle eviction never hands a client extra tokens; only capacity eviction can.
+ * <p>
+ * Limits are per instance. Use {@link DistributedBucketStore} to share them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "local", matchIfMissing = true)
+public class LocalBucketStore implements BucketStore {
+	private final Shard[] shards;
+	private final long idleTimeoutNanos;
+
+	private final AtomicLong capacityEvictions = new AtomicLong();
+	private final AtomicLong idleEvictions = new AtomicLong();
+
+	public LocalBucketStore(
+			@Value("${app.rate-limit.local.max-entries:100000}") int maxEntries,
+			@Value("${app.rate-limit.local.idle-timeout:PT10M}") Duration idleTimeout,
+			@Value("${app.rate-limit.local.shards:16}") int shardCount) {
+		int shardsPowerOfTwo = Integer.highestOneBit(Math.max(1, shardCount - 1) << 1);
+		int maxEntriesPerShard = Math.max(1, maxEntries / shardsPowerOfTwo);
+		this.shards = new Shard[shardsPowerOfTwo];
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new Shard(maxEntriesPerShard);
+		}
+		this.idleTimeoutNanos = idleTimeout.toNanos();
+	}
+
+	@Override
+	public Bucket resolve(String key, Supplier<BucketConfiguration> configuration) {
+		Shard shard = shardFor(key);
+		long now = System.nanoTime();
+		synchronized (shard) {
+			evictIdle(shard, now);
+			Entry entry = shard.get(key);
+			if (entry == null) {
+				entry = new Entry(newBucket(configuration.get()));
+				shard.put(key, entry);
+			}
+			entry.lastAccessNanos = now;
+			return entry.bucket;
+		}
+	}
+
+	public long size() {
+		long size = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				size += shard.size();
+			}
+		}
+		return size;
+	}
+
+	public long getCapacityEvictions() {
+		return capacityEvictions.get();
+	}
+
+	public long getIdleEvictions() {
+		return idleEvictions.get();
+	}
+
+	/**
+	 * Access only cleans the shard it touches, so quiet shards are swept here.
+	 */
+	@Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval:PT1M}")
+	public void evictIdle() {
+		long now = System.nanoTime();
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				evictIdle(shard, now);
+			}
+		}
+	}
+
+	private void evictIdle(Shard shard, long now) {
+		// Access order puts the least recently used entries first, so stop at the first live one.
+		Iterator<Entry> eldest = shard.values().iterator();
+		while (eldest.hasNext()) {
+			if (now - eldest.next().lastAccessNanos < idleTimeoutNanos) {
+				return;
+			}
+			eldest.remove();
+			idleEvictions.incrementAndGet();
+		}
+	}
+
+	private Shard shardFor(String key) {
+		int hash = key.hashCode();
+		return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+	}
+
+	private static Bucket newBucket(BucketConfiguration configuration) {
+		LocalBucketBuilder builder = Bucket.builder();
+		for (Bandwidth bandwidth : configuration.getBandwidths()) {
+			builder.addLimit(bandwidth);
+		}
+		return builder.build();
+	}
+
+	private static final class Entry {
+		private final Bucket bucket;
+		private long lastAccessNanos;
+
+		private Entry(Bucket bucket) {
+			this.bucket = bucket;
+		}
+	}
+
+	private final class Shard extends LinkedHashMap<String, Entry> {
+		private final int maxEntries;
+
+		private Shard(int maxEntries) {
+			super(64, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() > maxEntries) {
+				capacityEvictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -1,7 +1,12 @@
 package com.portfoliogenerator.filter;
 
+import com.portfoliogenerator.config.WebConfig;
+import com.portfoliogenerator.exception.RateLimitExceededException;
+import com.portfoliogenerator.service.Tenant;
+import com.portfoliogenerator.service.TenantContext;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Refill;
 import jakarta.servlet.*;
@@ -15,21 +20,30 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE + 1)
 public class RateLimitingFilter implements Filter {
 	private static final Logger logger = LoggerFactory.getLogger(RateLimitingFilter.class);
+	// Upload bucket of a batch request, charged per item once the batch size is known.
+	private static final String UPLOAD_BUCKET_ATTRIBUTE = RateLimitingFilter.class.getName() + ".uploadBucket";
 
-	private final Bandwidth uploadLimit = Bandwidth.classic(3, Refill.greedy(3, Duration.ofMinutes(1)));
-	private final Bandwidth generalApiLimit = Bandwidth.classic(10, Refill.greedy(10, Duration.ofMinutes(1)));
+	private final BucketConfiguration uploadLimit = perMinute(3);
+	private final BucketConfiguration generalApiLimit = perMinute(10);
+	private final BucketConfiguration batchLimit = perMinute(2);
 
-	private final Map<String, Bucket> uploadCache = new ConcurrentHashMap<>();
-	private final Map<String, Bucket> generalApiCache = new ConcurrentHashMap<>();
+	private final BucketStore bucketStore;
+
+	public RateLimitingFilter(BucketStore bucketStore) {
+		this.bucketStore = bucketStore;
+	}
 
 
+	private static boolean isResumeReupload(String path) {
+		return path.startsWith("/api/v1/portfolios/") && path.endsWith("/resume");
+	}
+
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
 		logger.info("RateLimitingFilter initialized.");
@@ -43,15 +57,31 @@ public class RateLimitingFilter implements Filter {
 		String clientIp = getClientIp(httpRequest);
 		String path = httpRequest.getRequestURI();
 
+		// Authenticated callers are limited by their tenant's quota, anonymous ones by address.
+		Tenant tenant = TenantContext.get();
+		String subject;
+		if (tenant == null) {
+			subject = clientIp;
+		} else {
+			subject = tenant.quotaPerClient() ? "tenant:" + tenant.name() + ":" + clientIp : "tenant:" + tenant.name();
+		}
+
 		Bucket bucket;
 		String limitType;
 
-		if(path.equals("/api/v1/resume/upload")){
-			bucket = uploadCache.computeIfAbsent(clientIp, k -> Bucket.builder().addLimit(uploadLimit).build());
+		// Streamed uploads and re-uploads generate too, so they share the upload quota.
+		if(path.equals("/api/v1/resume/upload") || path.equals(WebConfig.STREAMING_UPLOAD_PATH) || isResumeReupload(path)){
 			limitType = "UPLOAD";
+			bucket = uploadBucket(subject, tenant);
+		}else if(path.equals("/api/v1/resume/batch")){
+			// Limits batch requests; every item is charged to the upload quota by chargeUploads.
+			limitType = "BATCH";
+			bucket = bucketStore.resolve(limitType + ":" + subject, () -> batchLimit);
+			request.setAttribute(UPLOAD_BUCKET_ATTRIBUTE, uploadBucket(subject, tenant));
 		}else if(path.startsWith("/api/")){
-			bucket = generalApiCache.computeIfAbsent(clientIp, k -> Bucket.builder().addLimit(generalApiLimit).build());
 			limitType = "GENERAL_API";
+			bucket = bucketStore.resolve(limitType + ":" + subject,
+					() -> tenant != null ? perMinute(tenant.requestsPerMinute()) : generalApiLimit);
 		}else{
 			chain.doFilter(request, response);
 			return;
@@ -76,6 +106,39 @@ public class RateLimitingFilter implements Filter {
 		}
 	}
 
+	/**
+	 * Charges {@code items} generations of a batch request to the caller's upload quota, so
+	 * a batch starts no more generations than the same number of single uploads could.
+	 */
+	public static void chargeUploads(HttpServletRequest request, int items) {
+		Bucket bucket = (Bucket) request.getAttribute(UPLOAD_BUCKET_ATTRIBUTE);
+		if (bucket == null) {
+			return;
+		}
+		ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(items);
+		if (probe.isConsumed()) {
+			return;
+		}
+		if (probe.getNanosToWaitForRefill() == Long.MAX_VALUE) {
+			// More than the bucket holds when full.
+			throw new IllegalArgumentException("A batch of " + items + " resumes exceeds your upload rate limit. Split it into smaller batches.");
+		}
+		throw new RateLimitExceededException("A batch of " + items + " resumes exceeds your remaining upload rate limit of "
+				+ probe.getRemainingTokens() + ". Please try again later.",
+				Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill() + 999_999_999L)));
+	}
+
+	private Bucket uploadBucket(String subject, Tenant tenant) {
+		return bucketStore.resolve("UPLOAD:" + subject,
+				() -> tenant != null ? perMinute(tenant.uploadsPerMinute()) : uploadLimit);
+	}
+
+	private static BucketConfiguration perMinute(int tokens) {
+		return BucketConfiguration.builder()
+				.addLimit(Bandwidth.classic(tokens, Refill.greedy(tokens, Duration.ofMinutes(1))))
+				.build();
+	}
+
 	private String getClientIp(HttpServletRequest httpRequest) {
 		String remoteAddress = "";
 
@@ -0,0 +1,103 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.config.LlmResilienceProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * How many LLM calls may run at once, adjusted additive-increase / multiplicative-decrease
+ * from what the calls observe. {@link WeightedFairScheduler} hands out this many slots.
+ * <p>
+ * While calls succeed and the limit is actually in use, it grows by {@code 1 / limit} per
+ * call, i.e. by about one per round of calls. It is multiplied by {@code backoff-ratio}
+ * when a call times out or is throttled, or when recent latency (a fast moving average)
+ * exceeds {@code latency-tolerance} times the long-run average, which is how a slowing
+ * backend shows up before it starts failing. Only calls that started after the last
+ * decrease can trigger another one, so one slow round does not collapse the limit.
+ */
+@Component
+public class AdaptiveConcurrencyLimit {
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimit.class);
+
+	private static final double RECENT_WEIGHT = 0.2;
+	private static final double BASELINE_WEIGHT = 0.02;
+	// Latency is not compared until the averages have settled.
+	private static final int WARMUP_SAMPLES = 10;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final double latencyTolerance;
+
+	// Guarded by this; currentLimit is the published copy.
+	private double limit;
+	private double recentLatencyNanos;
+	private double baselineLatencyNanos;
+	private long samples;
+	private long lastDecreaseNanos;
+	private volatile int currentLimit;
+
+	public AdaptiveConcurrencyLimit(
+			LlmResilienceProperties properties,
+			@Value("${app.generation.llm-concurrency:4}") int initialLimit,
+			MeterRegistry meterRegistry) {
+		LlmResilienceProperties.Limit settings = properties.getLimit();
+		this.minLimit = Math.max(1, settings.getMin());
+		this.maxLimit = Math.max(minLimit, settings.getMax());
+		this.backoffRatio = settings.getBackoffRatio();
+		this.latencyTolerance = settings.getLatencyTolerance();
+		this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+		this.currentLimit = (int) limit;
+		this.lastDecreaseNanos = System.nanoTime();
+		Gauge.builder("portfolio.llm.concurrency.limit", this, AdaptiveConcurrencyLimit::getLimit).register(meterRegistry);
+	}
+
+	public int getLimit() {
+		return currentLimit;
+	}
+
+	/**
+	 * Records a call that succeeded after {@code latencyNanos}. {@code inFlight} is the
+	 * number of calls running when it started; the limit only grows when it is being used.
+	 */
+	public synchronized void onSuccess(long startNanos, long latencyNanos, int inFlight) {
+		if (samples++ == 0) {
+			recentLatencyNanos = latencyNanos;
+			baselineLatencyNanos = latencyNanos;
+		} else {
+			recentLatencyNanos += RECENT_WEIGHT * (latencyNanos - recentLatencyNanos);
+			baselineLatencyNanos += BASELINE_WEIGHT * (latencyNanos - baselineLatencyNanos);
+		}
+
+		if (samples > WARMUP_SAMPLES && recentLatencyNanos > latencyTolerance * baselineLatencyNanos) {
+			decrease(startNanos, "latency");
+		} else if (inFlight * 2 >= limit) {
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+			currentLimit = (int) limit;
+		}
+	}
+
+	/**
+	 * Records a call that timed out or was rejected because the backend is overloaded.
+	 */
+	public synchronized void onDropped(long startNanos) {
+		decrease(startNanos, "overload");
+	}
+
+	private void decrease(long startNanos, String reason) {
+		if (startNanos - lastDecreaseNanos < 0) {
+			return;
+		}
+		int previous = currentLimit;
+		limit = Math.max(minLimit, limit * backoffRatio);
+		currentLimit = (int) limit;
+		lastDecreaseNanos = System.nanoTime();
+		if (currentLimit != previous) {
+			logger.info("Lowered LLM concurrency limit from {} to {} ({}).", previous, currentLimit, reason);
+		}
+	}
+}
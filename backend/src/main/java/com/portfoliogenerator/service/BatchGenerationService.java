@@ -0,0 +1,279 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.BatchItemResult;
+import com.portfoliogenerator.dto.PortfolioResponse;
+import com.portfoliogenerator.exception.FileStorageException;
+import com.portfoliogenerator.exception.JobQueueFullException;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Generates portfolios for many resumes from one request, either a set of uploaded files
+ * or a zip archive of them. Items are parsed and generated on a shared worker pool with at
+ * most {@code parallelism} items of any one batch in flight; Gemini calls are further
+ * shared between tenants by {@link WeightedFairScheduler}. A failing item is reported in
+ * its own result and does not affect the rest of the batch.
+ * <p>
+ * At most {@code max-active} batches run at once. Further batches are rejected with
+ * {@link JobQueueFullException} before anything is staged, so neither queued work nor
+ * staged files can pile up without bound.
+ * <p>
+ * Callers pass the rate limit the batch is charged against; it is charged with the
+ * number of items once that is known and before anything is staged or generated.
+ */
+@Service
+public class BatchGenerationService {
+	private static final Logger logger = LoggerFactory.getLogger(BatchGenerationService.class);
+
+	private final PortfolioService portfolioService;
+	private final MeterRegistry meterRegistry;
+	private final ThreadPoolExecutor executor;
+	private final int parallelism;
+	private final int maxItems;
+	private final long maxEntryBytes;
+	private final int maxActiveBatches;
+	// One permit per batch from submission until its last item has finished.
+	private final Semaphore activeBatches;
+
+	private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+	public BatchGenerationService(
+			@Value("${app.generation.batch.worker-threads:8}") int workerThreads,
+			@Value("${app.generation.batch.parallelism:4}") int parallelism,
+			@Value("${app.generation.batch.max-items:100}") int maxItems,
+			@Value("${app.generation.batch.max-entry-size:10MB}") DataSize maxEntrySize,
+			@Value("${app.generation.batch.max-active:16}") int maxActiveBatches,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+			PortfolioService portfolioService,
+			MeterRegistry meterRegistry) {
+		this.portfolioService = portfolioService;
+		this.meterRegistry = meterRegistry;
+		this.parallelism = Math.max(1, parallelism);
+		this.maxItems = maxItems;
+		this.maxEntryBytes = maxEntrySize.toBytes();
+		this.maxActiveBatches = Math.max(1, maxActiveBatches);
+		this.activeBatches = new Semaphore(this.maxActiveBatches);
+		// Unbounded, but holds at most max-active batches of parallelism items each.
+		this.executor = new ThreadPoolExecutor(
+				workerThreads, workerThreads,
+				0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(),
+				WorkerThreads.factory("batch-worker-", virtualThreads));
+	}
+
+	public BatchRun submitFiles(List<MultipartFile> files, IntConsumer chargeItems) {
+		checkSize(files.size());
+		acquireBatch();
+		List<Path> staged = new ArrayList<>(files.size());
+		try {
+			chargeItems.accept(files.size());
+			for (MultipartFile file : files) {
+				staged.add(portfolioService.stageUpload(file));
+			}
+		} catch (RuntimeException e) {
+			staged.forEach(portfolioService::deleteStagedUpload);
+			activeBatches.release();
+			throw e;
+		}
+
+		// Items delete their own staged file; this catches the ones rejected before that.
+		BatchRun run = newRun(files.size(), () -> staged.forEach(portfolioService::deleteStagedUpload));
+		for (int i = 0; i < files.size(); i++) {
+			Path stagedResume = staged.get(i);
+			addItem(run, i, files.get(i).getOriginalFilename(), () -> stagedResume);
+		}
+		run.start();
+		return run;
+	}
+
+	/**
+	 * Generates a portfolio for every PDF and DOCX in a zip archive. Entries are extracted
+	 * by the workers, so extraction overlaps with parsing and generation of other entries.
+	 */
+	public BatchRun submitArchive(MultipartFile archive, IntConsumer chargeItems) {
+		acquireBatch();
+		Path stagedArchive;
+		try {
+			stagedArchive = portfolioService.stageUpload(archive);
+		} catch (RuntimeException e) {
+			activeBatches.release();
+			throw e;
+		}
+		ZipFile zipFile;
+		List<ZipEntry> entries = new ArrayList<>();
+		try {
+			zipFile = new ZipFile(stagedArchive.toFile());
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry entry = zipEntries.nextElement();
+				if (!entry.isDirectory() && !isArchiveMetadata(entry.getName())) {
+					entries.add(entry);
+				}
+			}
+		} catch (IOException e) {
+			portfolioService.deleteStagedUpload(stagedArchive);
+			activeBatches.release();
+			throw new FileStorageException("Could not read the uploaded zip archive.", e);
+		}
+
+		try {
+			checkSize(entries.size());
+			chargeItems.accept(entries.size());
+		} catch (RuntimeException e) {
+			closeArchive(zipFile, stagedArchive);
+			activeBatches.release();
+			throw e;
+		}
+
+		BatchRun run = newRun(entries.size(), () -> closeArchive(zipFile, stagedArchive));
+		for (int i = 0; i < entries.size(); i++) {
+			ZipEntry entry = entries.get(i);
+			addItem(run, i, baseName(entry.getName()), () -> extract(zipFile, entry));
+		}
+		run.start();
+		return run;
+	}
+
+	private void acquireBatch() {
+		if (!activeBatches.tryAcquire()) {
+			meterRegistry.counter("portfolio.batch.rejected").increment();
+			logger.warn("{} batches are already running. Rejecting batch upload.", maxActiveBatches);
+			throw new JobQueueFullException("The server is busy with other batches. Please try again shortly.");
+		}
+	}
+
+	/**
+	 * Creates the run of a batch that holds a permit from {@link #acquireBatch}; the permit
+	 * is released after {@code cleanup}, once the last item has finished.
+	 */
+	private BatchRun newRun(int size, Runnable cleanup) {
+		// Captured on the request thread so trace and tenant follow every item.
+		ContextSnapshot context = contextSnapshotFactory.captureAll();
+		return new BatchRun(size, parallelism, item -> executor.execute(context.wrap(item)), () -> {
+			try {
+				cleanup.run();
+			} finally {
+				activeBatches.release();
+			}
+		});
+	}
+
+	private void addItem(BatchRun run, int index, String filename, Callable<Path> stage) {
+		run.add(() -> run.complete(process(index, filename, stage)));
+	}
+
+	private BatchItemResult process(int index, String filename, Callable<Path> stage) {
+		if (filename == null || filename.isBlank()) {
+			meterRegistry.counter("portfolio.batch.items", "result", "failed").increment();
+			return failed(index, filename, "Missing file name.");
+		}
+		Path stagedResume = null;
+		try {
+			String originalFilename = portfolioService.validateResumeFilename(filename);
+			stagedResume = stage.call();
+			PortfolioResponse response = portfolioService.processResume(originalFilename, stagedResume, "batch");
+			meterRegistry.counter("portfolio.batch.items", "result", "succeeded").increment();
+			return new BatchItemResult(index, filename, BatchItemResult.SUCCEEDED, response.getPortfolioId(),
+					response.getPortfolioUrl(), response.getDownloadUrl(), response.getMessage());
+		} catch (FileStorageException | IllegalArgumentException | LlmUnavailableException e) {
+			meterRegistry.counter("portfolio.batch.items", "result", "failed").increment();
+			return failed(index, filename, e.getMessage());
+		} catch (Exception e) {
+			logger.error("Unexpected error while generating batch item {} ({})", index, filename, e);
+			meterRegistry.counter("portfolio.batch.items", "result", "failed").increment();
+			return failed(index, filename, "An unexpected error occurred. Please retry.");
+		} finally {
+			portfolioService.deleteStagedUpload(stagedResume);
+		}
+	}
+
+	private static BatchItemResult failed(int index, String filename, String message) {
+		return new BatchItemResult(index, filename, BatchItemResult.FAILED, null, null, null, message);
+	}
+
+	/**
+	 * Copies one entry to a temp file, refusing entries that inflate past the size limit
+	 * regardless of what their headers claim.
+	 */
+	private Path extract(ZipFile zipFile, ZipEntry entry) throws IOException {
+		Path target = Files.createTempFile("resume-batch-", ".tmp");
+		try (InputStream in = zipFile.getInputStream(entry); OutputStream out = Files.newOutputStream(target)) {
+			byte[] buffer = new byte[8192];
+			long total = 0;
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				total += read;
+				if (total > maxEntryBytes) {
+					throw new FileStorageException("Archive entry " + entry.getName() + " is larger than " + maxEntryBytes + " bytes.");
+				}
+				out.write(buffer, 0, read);
+			}
+			return target;
+		} catch (ZipException e) {
+			portfolioService.deleteStagedUpload(target);
+			throw new FileStorageException("Archive entry " + entry.getName() + " is corrupt.", e);
+		} catch (IOException | RuntimeException e) {
+			portfolioService.deleteStagedUpload(target);
+			throw e;
+		}
+	}
+
+	private void checkSize(int items) {
+		if (items == 0) {
+			throw new IllegalArgumentException("The batch contains no resumes.");
+		}
+		if (items > maxItems) {
+			throw new IllegalArgumentException("A batch can contain at most " + maxItems + " resumes. Received: " + items);
+		}
+	}
+
+	private void closeArchive(ZipFile zipFile, Path stagedArchive) {
+		try {
+			zipFile.close();
+		} catch (IOException e) {
+			logger.warn("Failed to close batch archive {}: {}", stagedArchive, e.getMessage());
+		}
+		portfolioService.deleteStagedUpload(stagedArchive);
+	}
+
+	private static boolean isArchiveMetadata(String name) {
+		String baseName = baseName(name);
+		return name.startsWith("__MACOSX/") || baseName.startsWith(".");
+	}
+
+	private static String baseName(String name) {
+		return name.substring(name.lastIndexOf('/') + 1);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
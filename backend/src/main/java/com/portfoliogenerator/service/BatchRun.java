@@ -0,0 +1,83 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.BatchItemResult;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A batch in progress. At most {@code parallelism} items run at once; each finished item
+ * starts the next one, and its result is queued for {@link #next} straight away, so the
+ * caller can stream results in completion order.
+ */
+public class BatchRun {
+	private final int size;
+	private final int parallelism;
+	private final Consumer<Runnable> launcher;
+	private final Runnable cleanup;
+
+	private final Deque<Runnable> pending = new ArrayDeque<>();
+	private final BlockingQueue<BatchItemResult> results = new LinkedBlockingQueue<>();
+	private int delivered;
+	private int finished;
+
+	BatchRun(int size, int parallelism, Consumer<Runnable> launcher, Runnable cleanup) {
+		this.size = size;
+		this.parallelism = parallelism;
+		this.launcher = launcher;
+		this.cleanup = cleanup;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	void add(Runnable item) {
+		pending.add(item);
+	}
+
+	void start() {
+		for (int i = 0; i < parallelism; i++) {
+			launchNext();
+		}
+	}
+
+	void complete(BatchItemResult result) {
+		results.add(result);
+		boolean last;
+		synchronized (this) {
+			last = ++finished == size;
+		}
+		if (last) {
+			cleanup.run();
+		} else {
+			launchNext();
+		}
+	}
+
+	/**
+	 * Blocks until the next item finishes. Returns {@code null} once every result has been
+	 * handed out.
+	 */
+	public BatchItemResult next() throws InterruptedException {
+		if (delivered == size) {
+			return null;
+		}
+		BatchItemResult result = results.take();
+		delivered++;
+		return result;
+	}
+
+	private void launchNext() {
+		Runnable item;
+		synchronized (this) {
+			item = pending.poll();
+		}
+		if (item != null) {
+			launcher.accept(item);
+		}
+	}
+}
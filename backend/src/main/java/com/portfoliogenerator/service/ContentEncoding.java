@@ -0,0 +1,106 @@
+package com.portfoliogenerator.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Encodings a portfolio page is stored in. Precompressed variants sit next to
+ * {@code <id>.html} under the same name plus the encoding's suffix. Constants are declared
+ * in order of preference when a client accepts several equally.
+ */
+public enum ContentEncoding {
+	BROTLI("br", ".br"),
+	GZIP("gzip", ".gz"),
+	IDENTITY("identity", "");
+
+	private final String token;
+	private final String suffix;
+
+	ContentEncoding(String token, String suffix) {
+		this.token = token;
+		this.suffix = suffix;
+	}
+
+	/**
+	 * The {@code Content-Encoding} value.
+	 */
+	public String token() {
+		return token;
+	}
+
+	public String filename(String portfolioId) {
+		return portfolioId + ".html" + suffix;
+	}
+
+	public static ContentEncoding fromToken(String token) {
+		for (ContentEncoding encoding : values()) {
+			if (encoding.token.equalsIgnoreCase(token.trim())) {
+				return encoding;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported content encoding: " + token);
+	}
+
+	/**
+	 * Returns the encodings an {@code Accept-Encoding} header allows, best first: highest
+	 * q-value, then our preference. {@link #IDENTITY} always comes last as the fallback,
+	 * even if the client ruled it out, since every portfolio has it.
+	 */
+	public static List<ContentEncoding> negotiate(String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isBlank()) {
+			return List.of(IDENTITY);
+		}
+
+		double[] quality = new double[values().length];
+		boolean[] listed = new boolean[values().length];
+		double wildcard = -1;
+		for (String entry : acceptEncoding.split(",")) {
+			String[] parts = entry.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+			double q = parseQuality(parts);
+			if (coding.equals("*")) {
+				wildcard = q;
+				continue;
+			}
+			for (ContentEncoding encoding : values()) {
+				if (encoding.token.equals(coding)) {
+					quality[encoding.ordinal()] = Math.max(quality[encoding.ordinal()], q);
+					listed[encoding.ordinal()] = true;
+				}
+			}
+		}
+
+		List<ContentEncoding> accepted = new ArrayList<>();
+		for (ContentEncoding encoding : values()) {
+			if (encoding == IDENTITY) {
+				continue;
+			}
+			if (!listed[encoding.ordinal()] && wildcard > 0) {
+				quality[encoding.ordinal()] = wildcard;
+			}
+			if (quality[encoding.ordinal()] > 0) {
+				accepted.add(encoding);
+			}
+		}
+		// Stable, so equal q-values keep the declaration order.
+		accepted.sort(Comparator.comparingDouble(encoding -> -quality[encoding.ordinal()]));
+		accepted.add(IDENTITY);
+		return accepted;
+	}
+
+	private static double parseQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,217 @@
+package com.portfoliogenerator.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Conservative CSS minifier for the stylesheets Gemini embeds in generated pages. It drops
+ * comments, collapses whitespace, removes it around {@code { } ; , >} and after
+ * {@code :}, and leaves strings and everything else untouched. Whitespace before
+ * {@code +} and {@code ~} is kept since it matters in selectors and {@code calc()}, and
+ * before {@code :} it is only removed inside declarations.
+ * <p>
+ * Duplicates are then removed without changing the cascade: of identical rules only the
+ * last one is kept, and within a rule only the last of identical declarations. Rules
+ * inside {@code @media}, {@code @supports} and {@code @layer} blocks are deduplicated
+ * within their block; other at-rules such as {@code @keyframes} are kept whole.
+ */
+final class CssMinifier {
+	private static final Set<String> NESTING_AT_RULES = Set.of("@media", "@supports", "@layer", "@container", "@document");
+
+	private CssMinifier() {
+	}
+
+	/**
+	 * Minifies the contents of a {@code <style>} element.
+	 */
+	static String minifyStylesheet(String css) {
+		return dedupeRules(compress(css));
+	}
+
+	/**
+	 * Minifies the declarations of a {@code style} attribute.
+	 */
+	static String minifyDeclarations(String declarations) {
+		return dedupeDeclarations(compress(declarations));
+	}
+
+	private static String compress(String css) {
+		StringBuilder out = new StringBuilder(css.length());
+		boolean pendingSpace = false;
+		int i = 0;
+		while (i < css.length()) {
+			char c = css.charAt(i);
+			if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+				int end = css.indexOf("*/", i + 2);
+				i = end < 0 ? css.length() : end + 2;
+				pendingSpace = true;
+				continue;
+			}
+			if (Character.isWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+				continue;
+			}
+			if (pendingSpace && !out.isEmpty() && !isTrimmedAfter(out.charAt(out.length() - 1)) && !isTrimmedBefore(c)) {
+				out.append(' ');
+			}
+			pendingSpace = false;
+			if (c == '"' || c == '\'') {
+				int end = endOfString(css, i);
+				out.append(css, i, end);
+				i = end;
+				continue;
+			}
+			if (c == '}' && !out.isEmpty() && out.charAt(out.length() - 1) == ';') {
+				out.setLength(out.length() - 1);
+			}
+			out.append(c);
+			i++;
+		}
+		if (!out.isEmpty() && out.charAt(out.length() - 1) == ';') {
+			out.setLength(out.length() - 1);
+		}
+		return out.toString();
+	}
+
+	private static boolean isTrimmedBefore(char c) {
+		return c == '{' || c == '}' || c == ';' || c == ',' || c == '>' || c == ')';
+	}
+
+	private static boolean isTrimmedAfter(char c) {
+		return c == '{' || c == '}' || c == ';' || c == ',' || c == '>' || c == ':' || c == '(';
+	}
+
+	private static int endOfString(String css, int start) {
+		char quote = css.charAt(start);
+		int i = start + 1;
+		while (i < css.length()) {
+			char c = css.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			i++;
+			if (c == quote || c == '\n') {
+				break;
+			}
+		}
+		return Math.min(i, css.length());
+	}
+
+	/**
+	 * Splits compressed CSS into top-level statements, dedupes each rule's contents and
+	 * drops earlier copies of identical rules.
+	 */
+	private static String dedupeRules(String css) {
+		List<String> statements = new ArrayList<>();
+		int start = 0;
+		int depth = 0;
+		for (int i = 0; i < css.length(); i++) {
+			char c = css.charAt(i);
+			if (c == '"' || c == '\'') {
+				i = endOfString(css, i) - 1;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+				if (depth == 0) {
+					statements.add(dedupeRule(css.substring(start, i + 1)));
+					start = i + 1;
+				} else if (depth < 0) {
+					// Unbalanced; leave the stylesheet as it is rather than guess.
+					return css;
+				}
+			} else if (c == ';' && depth == 0) {
+				statements.add(css.substring(start, i + 1));
+				start = i + 1;
+			}
+		}
+		if (depth != 0) {
+			return css;
+		}
+		if (start < css.length()) {
+			statements.add(css.substring(start));
+		}
+
+		Set<String> seen = new HashSet<>();
+		List<String> kept = new ArrayList<>(statements.size());
+		for (int i = statements.size() - 1; i >= 0; i--) {
+			String statement = statements.get(i);
+			// Statements without a block (@import, @charset) must stay where they are.
+			if (!statement.endsWith("}") || seen.add(statement)) {
+				kept.add(statement);
+			}
+		}
+		StringBuilder out = new StringBuilder(css.length());
+		for (int i = kept.size() - 1; i >= 0; i--) {
+			out.append(kept.get(i));
+		}
+		return out.toString();
+	}
+
+	private static String dedupeRule(String rule) {
+		int open = rule.indexOf('{');
+		String prelude = rule.substring(0, open);
+		String body = rule.substring(open + 1, rule.length() - 1);
+		if (prelude.startsWith("@")) {
+			String name = prelude.split("[ ({]", 2)[0].toLowerCase(Locale.ROOT);
+			return NESTING_AT_RULES.contains(name) ? prelude + "{" + dedupeRules(body) + "}" : rule;
+		}
+		return prelude + "{" + dedupeDeclarations(body) + "}";
+	}
+
+	/**
+	 * Drops the space {@link #compress} keeps before the colon, which in a declaration can
+	 * only follow the property name.
+	 */
+	private static String trimProperty(String declaration) {
+		int colon = declaration.indexOf(':');
+		return colon > 0 && declaration.charAt(colon - 1) == ' '
+				? declaration.substring(0, colon - 1) + declaration.substring(colon)
+				: declaration;
+	}
+
+	private static String dedupeDeclarations(String body) {
+		List<String> declarations = new ArrayList<>();
+		int start = 0;
+		int parens = 0;
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c == '"' || c == '\'') {
+				i = endOfString(body, i) - 1;
+			} else if (c == '(') {
+				parens++;
+			} else if (c == ')') {
+				parens--;
+			} else if (c == '{' || c == '}') {
+				// Nested rules; not a plain declaration list.
+				return body;
+			} else if (c == ';' && parens == 0) {
+				declarations.add(trimProperty(body.substring(start, i)));
+				start = i + 1;
+			}
+		}
+		declarations.add(trimProperty(body.substring(start)));
+
+		Set<String> seen = new HashSet<>();
+		List<String> kept = new ArrayList<>(declarations.size());
+		for (int i = declarations.size() - 1; i >= 0; i--) {
+			String declaration = declarations.get(i);
+			if (!declaration.isEmpty() && seen.add(declaration)) {
+				kept.add(declaration);
+			}
+		}
+		StringBuilder out = new StringBuilder(body.length());
+		for (int i = kept.size() - 1; i >= 0; i--) {
+			if (!out.isEmpty()) {
+				out.append(';');
+			}
+			out.append(kept.get(i));
+		}
+		return out.toString();
+	}
+}
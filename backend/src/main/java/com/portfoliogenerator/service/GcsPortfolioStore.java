@@ -0,0 +1,569 @@
+package com.portfoliogenerator.service;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps portfolios in a Google Cloud Storage bucket so any instance can serve any
+ * portfolio, with the local storage path as a size-bounded read-through cache.
+ * <p>
+ * Commits land in the local cache and are uploaded in the background, so generation does
+ * not wait on GCS. Until its upload succeeds a file is pinned in the cache and marked with
+ * a {@code .pending} file next to it; pending files are re-queued at startup and failed
+ * uploads are retried periodically. Each commit gets a new version, and a key is uploaded
+ * by one thread at a time until its latest version is in the bucket, so a rewrite that
+ * lands during an upload is sent after it rather than lost. Cache misses download the object once, however many
+ * requests ask for it at the same time, and the least recently used uploaded files are
+ * deleted when the cache grows past its budget. Local modification times are set to the
+ * object's update time so every instance derives the same validators.
+ * <p>
+ * Other instances may rewrite or delete a portfolio, so a cached copy is only served
+ * without asking GCS for {@code revalidate-after} after it was last checked. After that
+ * the next read compares it with the object's generation and downloads it again if it
+ * changed, or drops it if the object is gone.
+ * <p>
+ * Portfolio IDs are reserved in the bucket with a {@code .reserved} object that is only
+ * created if it does not exist yet, so an instance whose ID allocator lost its state, or
+ * shares a node ID with another, cannot take over a portfolio that already exists. The
+ * node ID still has to be set explicitly for every instance.
+ */
+@Component
+@ConditionalOnProperty(name = "app.portfolio.store", havingValue = "gcs")
+public class GcsPortfolioStore implements PortfolioStore {
+	private static final Logger logger = LoggerFactory.getLogger(GcsPortfolioStore.class);
+	private static final String PENDING_SUFFIX = ".pending";
+	private static final String RESERVATION = ".reserved";
+
+	private final Storage storage;
+	private final String bucket;
+	private final String objectPrefix;
+	private final Path cacheRoot;
+	private final long cacheMaxBytes;
+	private final Duration revalidateAfter;
+	private final ThreadPoolExecutor uploadExecutor;
+
+	// Access-ordered index of cached files (key "<id>/<filename>") with their sizes, guarded
+	// by cacheLock; eviction deletes files while holding it.
+	private final ReentrantLock cacheLock = new ReentrantLock();
+	private final LinkedHashMap<String, Long> cached = new LinkedHashMap<>(256, 0.75f, true);
+	private long cachedBytes;
+	// Keys not uploaded yet, with the version of their latest commit. Commits and the end of
+	// an upload change an entry and its pending marker under pendingLock.
+	private final ConcurrentHashMap<String, Long> pendingUploads = new ConcurrentHashMap<>();
+	private final ReentrantLock pendingLock = new ReentrantLock();
+	private final AtomicLong versions = new AtomicLong();
+	// Keys an upload thread is working on.
+	private final Set<String> uploading = ConcurrentHashMap.newKeySet();
+	private final Map<String, CompletableFuture<Optional<StoredFile>>> downloads = new ConcurrentHashMap<>();
+	// Object generation of each cached copy and when it was last confirmed against GCS.
+	private final Map<String, Validation> validations = new ConcurrentHashMap<>();
+
+	public GcsPortfolioStore(
+			Storage storage,
+			@Value("${gcs.bucket.name}") String bucket,
+			@Value("${app.portfolio.store.gcs.prefix:portfolios/}") String objectPrefix,
+			@Value("${app.portfolio.storage-path}") String cachePath,
+			@Value("${app.portfolio.store.gcs.cache-max-size:1GB}") DataSize cacheMaxSize,
+			@Value("${app.portfolio.store.gcs.revalidate-after:PT10S}") Duration revalidateAfter,
+			@Value("${app.portfolio.store.gcs.upload-threads:4}") int uploadThreads,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+			@Value("${app.portfolio.id.node-id:#{null}}") Integer nodeId) throws IOException {
+		if (nodeId == null) {
+			throw new IllegalArgumentException("app.portfolio.id.node-id must be set to a value unique to this instance "
+					+ "when app.portfolio.store=gcs");
+		}
+		this.storage = storage;
+		this.bucket = bucket;
+		this.objectPrefix = objectPrefix;
+		this.cacheRoot = Paths.get(cachePath).toAbsolutePath().normalize();
+		this.cacheMaxBytes = cacheMaxSize.toBytes();
+		this.revalidateAfter = revalidateAfter;
+		this.uploadExecutor = new ThreadPoolExecutor(
+				uploadThreads, uploadThreads,
+				0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(),
+				WorkerThreads.factory("gcs-upload-", virtualThreads));
+
+		Files.createDirectories(cacheRoot);
+		loadCacheIndex();
+	}
+
+	@Override
+	public boolean reserve(String portfolioId) throws IOException {
+		// The local allocator state may be lost or shared by mistake, so the bucket decides.
+		try {
+			storage.create(BlobInfo.newBuilder(blobId(key(portfolioId, RESERVATION))).build(), new byte[0],
+					Storage.BlobTargetOption.doesNotExist());
+		} catch (StorageException e) {
+			if (e.getCode() == HttpURLConnection.HTTP_PRECON_FAILED) {
+				return false;
+			}
+			throw new IOException("Could not reserve portfolio " + portfolioId + " in GCS", e);
+		}
+		Files.createDirectories(cacheRoot.resolve(portfolioId));
+		return true;
+	}
+
+	@Override
+	public Path stagingFile(String portfolioId, String filename) throws IOException {
+		Path directory = cacheRoot.resolve(portfolioId);
+		Files.createDirectories(directory);
+		return Files.createTempFile(directory, filename + ".", ".part");
+	}
+
+	@Override
+	public void commit(String portfolioId, String filename, Path stagingFile) throws IOException {
+		String key = key(portfolioId, filename);
+		Path file = cacheRoot.resolve(key);
+
+		pendingLock.lock();
+		try {
+			Files.write(pendingMarker(file), new byte[0]);
+			pendingUploads.put(key, versions.incrementAndGet());
+			Files.move(stagingFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			pendingLock.unlock();
+		}
+		index(key, Files.size(file));
+		uploadExecutor.execute(() -> upload(key));
+	}
+
+	@Override
+	public Optional<StoredFile> locate(String portfolioId, String filename) throws IOException {
+		String key = key(portfolioId, filename);
+		Optional<StoredFile> local = cachedFile(key);
+		if (local.isPresent() && isFresh(key)) {
+			return local;
+		}
+
+		CompletableFuture<Optional<StoredFile>> ownDownload = new CompletableFuture<>();
+		CompletableFuture<Optional<StoredFile>> existing = downloads.putIfAbsent(key, ownDownload);
+		if (existing != null) {
+			return joinDownload(existing);
+		}
+		try {
+			Optional<StoredFile> fetched = fetch(key);
+			ownDownload.complete(fetched);
+			return fetched;
+		} catch (IOException | RuntimeException e) {
+			ownDownload.completeExceptionally(e);
+			throw e;
+		} finally {
+			downloads.remove(key, ownDownload);
+		}
+	}
+
+	@Override
+	public boolean exists(String portfolioId, String filename) {
+		String key = key(portfolioId, filename);
+		if (Files.isReadable(cacheRoot.resolve(key)) && isFresh(key)) {
+			return true;
+		}
+		try {
+			return storage.get(blobId(key), Storage.BlobGetOption.fields(Storage.BlobField.NAME)) != null
+					|| pendingUploads.containsKey(key);
+		} catch (StorageException e) {
+			logger.warn("Could not check {} in GCS: {}", key, e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	public void delete(String portfolioId) throws IOException {
+		String keyPrefix = portfolioId + "/";
+		pendingUploads.keySet().removeIf(key -> key.startsWith(keyPrefix));
+		validations.keySet().removeIf(key -> key.startsWith(keyPrefix));
+		cacheLock.lock();
+		try {
+			Iterator<Map.Entry<String, Long>> entries = cached.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<String, Long> entry = entries.next();
+				if (entry.getKey().startsWith(keyPrefix)) {
+					cachedBytes -= entry.getValue();
+					entries.remove();
+				}
+			}
+		} finally {
+			cacheLock.unlock();
+		}
+		FileSystemUtils.deleteRecursively(cacheRoot.resolve(portfolioId));
+
+		try {
+			for (Blob blob : storage.list(bucket, Storage.BlobListOption.prefix(objectPrefix + keyPrefix)).iterateAll()) {
+				blob.delete();
+			}
+		} catch (StorageException e) {
+			throw new IOException("Could not delete portfolio " + portfolioId + " from GCS", e);
+		}
+	}
+
+	@Override
+	public Optional<Duration> revalidateAfter() {
+		return Optional.of(revalidateAfter);
+	}
+
+	@Override
+	public Optional<PortfolioUsage> usage(String portfolioId) throws IOException {
+		String keyPrefix = portfolioId + "/";
+		long bytes = 0;
+		long lastModified = 0;
+		Set<String> counted = new HashSet<>();
+		try {
+			for (Blob blob : storage.list(bucket, Storage.BlobListOption.prefix(objectPrefix + keyPrefix)).iterateAll()) {
+				bytes += blob.getSize();
+				lastModified = Math.max(lastModified, blob.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli());
+				counted.add(blob.getName().substring(objectPrefix.length()));
+			}
+		} catch (StorageException e) {
+			throw new IOException("Could not list portfolio " + portfolioId + " in GCS", e);
+		}
+		// Files not uploaded yet only exist in the local cache.
+		for (String key : pendingUploads.keySet()) {
+			if (!key.startsWith(keyPrefix) || counted.contains(key)) {
+				continue;
+			}
+			try {
+				// Read directly rather than through cachedFile, which would refresh the file in the LRU order.
+				BasicFileAttributes attributes = Files.readAttributes(cacheRoot.resolve(key), BasicFileAttributes.class);
+				bytes += attributes.size();
+				lastModified = Math.max(lastModified, attributes.lastModifiedTime().toMillis());
+				counted.add(key);
+			} catch (NoSuchFileException e) {
+				// Deleted since.
+			}
+		}
+		return counted.isEmpty() ? Optional.empty() : Optional.of(new PortfolioUsage(bytes, lastModified));
+	}
+
+	@Override
+	public void forEachPortfolio(Consumer<String> visitor) throws IOException {
+		try {
+			for (Blob blob : storage.list(bucket, Storage.BlobListOption.prefix(objectPrefix), Storage.BlobListOption.currentDirectory()).iterateAll()) {
+				// With currentDirectory, each portfolio comes back as one "<prefix><id>/" entry.
+				if (blob.isDirectory()) {
+					visitor.accept(blob.getName().substring(objectPrefix.length(), blob.getName().length() - 1));
+				}
+			}
+		} catch (StorageException e) {
+			throw new IOException("Could not list portfolios in GCS", e);
+		}
+		for (String key : pendingUploads.keySet()) {
+			visitor.accept(key.substring(0, key.indexOf('/')));
+		}
+	}
+
+	/**
+	 * Uploads {@code key} until its latest commit is in the bucket. Returns at once if
+	 * another thread is uploading it; that thread checks for newer commits when it is done.
+	 */
+	private void upload(String key) {
+		while (pendingUploads.containsKey(key) && uploading.add(key)) {
+			boolean uploaded;
+			try {
+				uploaded = uploadLatest(key);
+			} finally {
+				uploading.remove(key);
+			}
+			if (!uploaded) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Uploads the current version of {@code key}. Returns {@code false} if the upload
+	 * failed and is left to the retry.
+	 */
+	private boolean uploadLatest(String key) {
+		Long version = pendingUploads.get(key);
+		if (version == null) {
+			return true;
+		}
+		Path file = cacheRoot.resolve(key);
+		try {
+			Blob blob = storage.createFrom(BlobInfo.newBuilder(blobId(key)).setContentType(contentType(key)).build(), file);
+			boolean deleted = false;
+			pendingLock.lock();
+			try {
+				if (pendingUploads.remove(key, version)) {
+					Files.setLastModifiedTime(file, FileTime.from(blob.getUpdateTimeOffsetDateTime().toInstant()));
+					validations.put(key, new Validation(blob.getGeneration(), System.nanoTime()));
+					Files.deleteIfExists(pendingMarker(file));
+				} else {
+					// Rewritten or deleted while uploading; a rewrite is uploaded next by the caller.
+					deleted = !pendingUploads.containsKey(key);
+				}
+			} finally {
+				pendingLock.unlock();
+			}
+			if (deleted) {
+				storage.delete(blobId(key));
+			}
+			evictOverBudget();
+			return true;
+		} catch (NoSuchFileException e) {
+			pendingUploads.remove(key, version);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			logger.error("Upload of {} to GCS failed, will retry: {}", key, e.getMessage());
+			return false;
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${app.portfolio.store.gcs.upload-retry-interval:PT1M}")
+	public void retryPendingUploads() {
+		if (uploadExecutor.getQueue().isEmpty() && uploadExecutor.getActiveCount() == 0) {
+			for (String key : pendingUploads.keySet()) {
+				uploadExecutor.execute(() -> upload(key));
+			}
+		}
+	}
+
+	/**
+	 * Whether the cached copy of {@code key} can be served without asking GCS. Files that
+	 * are not uploaded yet are always the latest version.
+	 */
+	private boolean isFresh(String key) {
+		if (pendingUploads.containsKey(key)) {
+			return true;
+		}
+		Validation validation = validations.get(key);
+		return validation != null && System.nanoTime() - validation.checkedAtNanos() < revalidateAfter.toNanos();
+	}
+
+	/**
+	 * Revalidates the cached copy of {@code key} against GCS, downloading the object if
+	 * there is no copy or it is out of date.
+	 */
+	private Optional<StoredFile> fetch(String key) throws IOException {
+		Blob blob;
+		try {
+			blob = storage.get(blobId(key));
+		} catch (StorageException e) {
+			throw new IOException("Could not read " + key + " from GCS", e);
+		}
+		if (blob == null) {
+			if (pendingUploads.containsKey(key)) {
+				return cachedFile(key);
+			}
+			// Deleted by another instance, or never existed.
+			uncache(key);
+			return Optional.empty();
+		}
+
+		long updated = blob.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli();
+		Optional<StoredFile> local = cachedFile(key);
+		if (local.isPresent()) {
+			Validation known = validations.get(key);
+			// Copies cached before a restart have no known generation, but their modification time is the object's.
+			boolean current = known != null
+					? known.generation() == blob.getGeneration()
+					: local.get().lastModifiedMillis() == updated;
+			if (current) {
+				validations.put(key, new Validation(blob.getGeneration(), System.nanoTime()));
+				return local;
+			}
+		}
+		return download(key, blob);
+	}
+
+	private Optional<StoredFile> download(String key, Blob blob) throws IOException {
+		Path file = cacheRoot.resolve(key);
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".part");
+		try {
+			blob.downloadTo(temp);
+			Files.setLastModifiedTime(temp, FileTime.from(blob.getUpdateTimeOffsetDateTime().toInstant()));
+			if (pendingUploads.containsKey(key)) {
+				// Rewritten on this instance meanwhile; the local file is newer than the object.
+				Files.delete(temp);
+				return cachedFile(key);
+			}
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e instanceof IOException io ? io : new IOException("Could not download " + key + " from GCS", e);
+		}
+		validations.put(key, new Validation(blob.getGeneration(), System.nanoTime()));
+		index(key, Files.size(file));
+		evictOverBudget();
+		return cachedFile(key);
+	}
+
+	private Optional<StoredFile> joinDownload(CompletableFuture<Optional<StoredFile>> download) throws IOException {
+		try {
+			return download.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException io) {
+				throw io;
+			}
+			throw e;
+		}
+	}
+
+	private Optional<StoredFile> cachedFile(String key) throws IOException {
+		Path file = cacheRoot.resolve(key);
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			cacheLock.lock();
+			try {
+				cached.get(key);
+			} finally {
+				cacheLock.unlock();
+			}
+			return Optional.of(new StoredFile(file, 0, attributes.size(), attributes.lastModifiedTime().toMillis()));
+		} catch (NoSuchFileException e) {
+			return Optional.empty();
+		}
+	}
+
+	private void index(String key, long size) {
+		cacheLock.lock();
+		try {
+			Long previous = cached.put(key, size);
+			cachedBytes += size - (previous != null ? previous : 0);
+		} finally {
+			cacheLock.unlock();
+		}
+	}
+
+	private void uncache(String key) throws IOException {
+		cacheLock.lock();
+		try {
+			Long size = cached.remove(key);
+			if (size != null) {
+				cachedBytes -= size;
+			}
+			validations.remove(key);
+			Files.deleteIfExists(cacheRoot.resolve(key));
+		} finally {
+			cacheLock.unlock();
+		}
+	}
+
+	private void evictOverBudget() {
+		cacheLock.lock();
+		try {
+			Iterator<Map.Entry<String, Long>> eldest = cached.entrySet().iterator();
+			while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+				Map.Entry<String, Long> entry = eldest.next();
+				if (pendingUploads.containsKey(entry.getKey())) {
+					continue;
+				}
+				try {
+					Files.deleteIfExists(cacheRoot.resolve(entry.getKey()));
+				} catch (IOException e) {
+					logger.warn("Could not evict {} from the local cache: {}", entry.getKey(), e.getMessage());
+					continue;
+				}
+				cachedBytes -= entry.getValue();
+				validations.remove(entry.getKey());
+				eldest.remove();
+			}
+		} finally {
+			cacheLock.unlock();
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the cache directory and re-queues uploads that did not
+	 * finish before the last shutdown.
+	 */
+	private void loadCacheIndex() throws IOException {
+		try (DirectoryStream<Path> portfolios = Files.newDirectoryStream(cacheRoot, path -> Files.isDirectory(path))) {
+			for (Path portfolio : portfolios) {
+				if (portfolio.getFileName().toString().startsWith(".")) {
+					continue;
+				}
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(portfolio)) {
+					for (Path file : files) {
+						String name = file.getFileName().toString();
+						if (name.endsWith(".part") || name.endsWith(PENDING_SUFFIX) || !Files.isRegularFile(file)) {
+							continue;
+						}
+						String key = key(portfolio.getFileName().toString(), name);
+						index(key, Files.size(file));
+						if (Files.exists(pendingMarker(file))) {
+							pendingUploads.put(key, versions.incrementAndGet());
+						}
+					}
+				}
+			}
+		}
+		if (!pendingUploads.isEmpty()) {
+			logger.info("Re-queuing {} portfolio files that were not uploaded to GCS.", pendingUploads.size());
+			pendingUploads.keySet().forEach(key -> uploadExecutor.execute(() -> upload(key)));
+		}
+	}
+
+	private BlobId blobId(String key) {
+		return BlobId.of(bucket, objectPrefix + key);
+	}
+
+	private static String key(String portfolioId, String filename) {
+		return portfolioId + "/" + filename;
+	}
+
+	private static Path pendingMarker(Path file) {
+		return file.resolveSibling(file.getFileName() + PENDING_SUFFIX);
+	}
+
+	private static String contentType(String key) {
+		if (key.endsWith(".html")) {
+			return "text/html; charset=utf-8";
+		}
+		if (key.endsWith(".json")) {
+			return "application/json";
+		}
+		return "application/octet-stream";
+	}
+
+	private record Validation(long generation, long checkedAtNanos) {
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		uploadExecutor.shutdown();
+		// Whatever does not finish here is re-queued from its pending marker on the next start.
+		uploadExecutor.awaitTermination(30, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,277 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.GenerationCacheStats;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Maps a hash of the extracted resume text, together with the tenant that uploaded it and
+ * the mode it was generated in, to the portfolio generated from it, so an identical
+ * re-upload reuses the finished portfolio instead of calling Gemini again. Concurrent
+ * uploads of the same text share a single in-flight generation.
+ * <p>
+ * Entries are kept in LRU order, expire after a TTL and are snapshotted to the storage
+ * directory so the cache survives restarts.
+ */
+@Service
+public class GenerationCache {
+	private static final Logger logger = LoggerFactory.getLogger(GenerationCache.class);
+
+	private static final String SNAPSHOT_FILE = "generation-cache.tsv";
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final Path snapshotPath;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong joins = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public GenerationCache(
+			@Value("${app.portfolio.storage-path}") String storagePath,
+			@Value("${app.generation.cache.max-entries:10000}") int maxEntries,
+			@Value("${app.generation.cache.ttl:P30D}") Duration ttl) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttl.toMillis();
+		this.snapshotPath = Paths.get(storagePath).toAbsolutePath().normalize().resolve(SNAPSHOT_FILE);
+		loadSnapshot();
+	}
+
+	/**
+	 * Content address for a resume: SHA-256 over the text with Unicode and whitespace
+	 * differences normalized away, so re-exports of the same document hash the same. The
+	 * tenant and generation mode are part of the key, so tenants never share a portfolio
+	 * and a page is only reused for uploads that would have produced the same kind of page.
+	 */
+	public String keyFor(String tenant, String mode, String resumeText) {
+		String normalized = Normalizer.normalize(resumeText, Normalizer.Form.NFKC);
+		normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			// NUL cannot occur in tenant names or modes, so the fields cannot run into each other.
+			digest.update((Objects.toString(tenant, "") + '\0' + mode + '\0').getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Returns the portfolio cached for {@code key} if it is still valid, otherwise runs
+	 * {@code generator}. If another request is already generating the same key, this call
+	 * waits for that result instead of starting a second generation.
+	 */
+	public String getOrGenerate(String key, Predicate<String> stillValid, Supplier<String> generator) {
+		String cached = lookup(key, stillValid);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached;
+		}
+
+		CompletableFuture<String> ownFuture = new CompletableFuture<>();
+		CompletableFuture<String> existing = inFlight.putIfAbsent(key, ownFuture);
+		if (existing != null) {
+			joins.incrementAndGet();
+			return join(existing);
+		}
+
+		misses.incrementAndGet();
+		try {
+			String portfolioId = generator.get();
+			put(key, portfolioId);
+			ownFuture.complete(portfolioId);
+			return portfolioId;
+		} catch (RuntimeException e) {
+			ownFuture.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, ownFuture);
+		}
+	}
+
+	/**
+	 * Points {@code key} at {@code portfolioId} after the portfolio was regenerated from new
+	 * resume text, dropping the entries that map its old text to it.
+	 */
+	public void rebind(String key, String portfolioId) {
+		synchronized (entries) {
+			entries.values().removeIf(entry -> entry.portfolioId().equals(portfolioId));
+			put(key, portfolioId);
+		}
+	}
+
+	/**
+	 * Drops the entries that point at {@code portfolioId}, after it was changed in a way
+	 * that no longer matches the key it was cached under.
+	 */
+	public void forget(String portfolioId) {
+		synchronized (entries) {
+			if (entries.values().removeIf(entry -> entry.portfolioId().equals(portfolioId))) {
+				dirty = true;
+			}
+		}
+	}
+
+	private String lookup(String key, Predicate<String> stillValid) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (isExpired(entry, System.currentTimeMillis())) {
+				entries.remove(key);
+				dirty = true;
+				return null;
+			}
+		}
+		if (!stillValid.test(entry.portfolioId())) {
+			synchronized (entries) {
+				entries.remove(key, entry);
+				dirty = true;
+			}
+			return null;
+		}
+		return entry.portfolioId();
+	}
+
+	private void put(String key, String portfolioId) {
+		synchronized (entries) {
+			entries.put(key, new Entry(portfolioId, System.currentTimeMillis()));
+			evictOverflow();
+			dirty = true;
+		}
+	}
+
+	private void evictOverflow() {
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (entries.size() > maxEntries && eldest.hasNext()) {
+			eldest.next();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		return now - entry.createdAtMillis() > ttlMillis;
+	}
+
+	private String join(CompletableFuture<String> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	public GenerationCacheStats getStats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new GenerationCacheStats(size, maxEntries, inFlight.size(), hits.get(), misses.get(), joins.get(), evictions.get());
+	}
+
+	@Scheduled(fixedDelayString = "${app.generation.cache.snapshot-interval:PT1M}")
+	public void snapshotIfDirty() {
+		if (dirty) {
+			writeSnapshot();
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		snapshotIfDirty();
+	}
+
+	private void writeSnapshot() {
+		List<Map.Entry<String, Entry>> snapshot;
+		synchronized (entries) {
+			long now = System.currentTimeMillis();
+			entries.values().removeIf(entry -> isExpired(entry, now));
+			snapshot = new ArrayList<>(entries.entrySet());
+			dirty = false;
+		}
+
+		try {
+			Path tempFile = Files.createTempFile(snapshotPath.getParent(), SNAPSHOT_FILE, ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				// Least recently used first, so reloading in file order restores the LRU order.
+				for (Map.Entry<String, Entry> entry : snapshot) {
+					writer.write(entry.getKey() + "\t" + entry.getValue().portfolioId() + "\t" + entry.getValue().createdAtMillis());
+					writer.newLine();
+				}
+			}
+			Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			dirty = true;
+			logger.warn("Could not write generation cache snapshot to {}: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	private void loadSnapshot() {
+		if (!Files.isReadable(snapshotPath)) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		try {
+			for (String line : Files.readAllLines(snapshotPath, StandardCharsets.UTF_8)) {
+				String[] fields = line.split("\t");
+				if (fields.length != 3) {
+					continue;
+				}
+				Entry entry = new Entry(fields[1], Long.parseLong(fields[2]));
+				if (!isExpired(entry, now)) {
+					entries.put(fields[0], entry);
+				}
+			}
+			evictOverflow();
+			logger.info("Loaded {} generation cache entries from {}.", entries.size(), snapshotPath);
+		} catch (IOException | NumberFormatException e) {
+			entries.clear();
+			logger.warn("Ignoring unreadable generation cache snapshot {}: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	private record Entry(String portfolioId, long createdAtMillis) {
+	}
+}
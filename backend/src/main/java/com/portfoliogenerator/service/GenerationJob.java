@@ -0,0 +1,71 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.PortfolioResponse;
+
+import java.time.Instant;
+
+public class GenerationJob {
+	public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+	private final String jobId;
+	private final Instant submittedAt;
+	private volatile Status status = Status.QUEUED;
+	private volatile Instant startedAt;
+	private volatile Instant finishedAt;
+	private volatile PortfolioResponse result;
+	private volatile String errorMessage;
+
+	GenerationJob(String jobId, Instant submittedAt) {
+		this.jobId = jobId;
+		this.submittedAt = submittedAt;
+	}
+
+	void markRunning(Instant now) {
+		this.startedAt = now;
+		this.status = Status.RUNNING;
+	}
+
+	void markSucceeded(PortfolioResponse result, Instant now) {
+		this.result = result;
+		this.finishedAt = now;
+		this.status = Status.SUCCEEDED;
+	}
+
+	void markFailed(String errorMessage, Instant now) {
+		this.errorMessage = errorMessage;
+		this.finishedAt = now;
+		this.status = Status.FAILED;
+	}
+
+	public boolean isFinished() {
+		return status == Status.SUCCEEDED || status == Status.FAILED;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Instant getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public Instant getStartedAt() {
+		return startedAt;
+	}
+
+	public Instant getFinishedAt() {
+		return finishedAt;
+	}
+
+	public PortfolioResponse getResult() {
+		return result;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+}
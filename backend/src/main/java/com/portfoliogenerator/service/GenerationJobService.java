@@ -0,0 +1,189 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.GenerationQueueStats;
+import com.portfoliogenerator.dto.PortfolioResponse;
+import com.portfoliogenerator.exception.FileStorageException;
+import com.portfoliogenerator.exception.JobQueueFullException;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs portfolio generation off the request thread on a fixed-size worker pool with a
+ * bounded queue. When the queue is full new jobs are rejected instead of piling up, so
+ * callers get immediate backpressure rather than an unbounded wait.
+ */
+@Service
+public class GenerationJobService {
+	private static final Logger logger = LoggerFactory.getLogger(GenerationJobService.class);
+
+	private final PortfolioService portfolioService;
+	private final PipelineMetrics pipelineMetrics;
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final Duration jobRetention;
+
+	// Carries the request's trace context over to the worker thread.
+	private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+	private final Map<String, GenerationJob> jobs = new ConcurrentHashMap<>();
+
+	private final AtomicLong submittedJobs = new AtomicLong();
+	private final AtomicLong rejectedJobs = new AtomicLong();
+	private final AtomicLong completedJobs = new AtomicLong();
+	private final AtomicLong failedJobs = new AtomicLong();
+	private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+	public GenerationJobService(
+			@Value("${app.generation.worker-threads:4}") int workerThreads,
+			@Value("${app.generation.queue-capacity:32}") int queueCapacity,
+			@Value("${app.generation.job-retention:PT1H}") Duration jobRetention,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+			PortfolioService portfolioService,
+			PipelineMetrics pipelineMetrics) {
+		this.portfolioService = portfolioService;
+		this.pipelineMetrics = pipelineMetrics;
+		this.queueCapacity = queueCapacity;
+		this.jobRetention = jobRetention;
+		this.executor = new ThreadPoolExecutor(
+				workerThreads, workerThreads,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				WorkerThreads.factory("generation-worker-", virtualThreads),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public GenerationJob submit(MultipartFile file) {
+		String originalFilename = portfolioService.validateResumeFilename(file.getOriginalFilename());
+		Path stagedResume = portfolioService.stageUpload(file);
+
+		GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), Instant.now());
+		long enqueuedAt = System.nanoTime();
+
+		jobs.put(job.getJobId(), job);
+		try {
+			enqueue(originalFilename, stagedResume, () -> runJob(job, originalFilename, stagedResume, enqueuedAt));
+		} catch (JobQueueFullException e) {
+			jobs.remove(job.getJobId());
+			throw e;
+		}
+		return job;
+	}
+
+	/**
+	 * Queues a streamed generation. The listener is notified from the worker thread.
+	 */
+	public void submitStreaming(MultipartFile file, GenerationStreamListener listener) {
+		String originalFilename = portfolioService.validateResumeFilename(file.getOriginalFilename());
+		Path stagedResume = portfolioService.stageUpload(file);
+		long enqueuedAt = System.nanoTime();
+
+		enqueue(originalFilename, stagedResume, () -> runStreaming(listener, originalFilename, stagedResume, enqueuedAt));
+	}
+
+	private void enqueue(String originalFilename, Path stagedResume, Runnable task) {
+		try {
+			executor.execute(contextSnapshotFactory.captureAll().wrap(task));
+		} catch (RejectedExecutionException e) {
+			portfolioService.deleteStagedUpload(stagedResume);
+			rejectedJobs.incrementAndGet();
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_QUEUE_FULL);
+			logger.warn("Generation queue is full ({} queued). Rejecting upload {}.", executor.getQueue().size(), originalFilename);
+			throw new JobQueueFullException("The server is busy generating other portfolios. Please try again shortly.");
+		}
+		submittedJobs.incrementAndGet();
+	}
+
+	private void runStreaming(GenerationStreamListener listener, String originalFilename, Path stagedResume, long enqueuedAt) {
+		recordQueueWait(System.nanoTime() - enqueuedAt);
+
+		try {
+			PortfolioResponse response = portfolioService.processResumeStreaming(originalFilename, stagedResume, listener);
+			completedJobs.incrementAndGet();
+			listener.onCompleted(response);
+		} catch (FileStorageException | LlmUnavailableException e) {
+			failedJobs.incrementAndGet();
+			listener.onFailed(e.getMessage());
+		} catch (Exception e) {
+			logger.error("Unexpected error while streaming generation for {}", originalFilename, e);
+			failedJobs.incrementAndGet();
+			listener.onFailed("An unexpected error occurred. Please retry.");
+		} finally {
+			portfolioService.deleteStagedUpload(stagedResume);
+		}
+	}
+
+	private void runJob(GenerationJob job, String originalFilename, Path stagedResume, long enqueuedAt) {
+		recordQueueWait(System.nanoTime() - enqueuedAt);
+		job.markRunning(Instant.now());
+
+		try {
+			PortfolioResponse response = portfolioService.processResume(originalFilename, stagedResume);
+			job.markSucceeded(response, Instant.now());
+			completedJobs.incrementAndGet();
+		} catch (FileStorageException | LlmUnavailableException e) {
+			job.markFailed(e.getMessage(), Instant.now());
+			failedJobs.incrementAndGet();
+		} catch (Exception e) {
+			logger.error("Unexpected error while running generation job {}", job.getJobId(), e);
+			job.markFailed("An unexpected error occurred. Please retry.", Instant.now());
+			failedJobs.incrementAndGet();
+		} finally {
+			portfolioService.deleteStagedUpload(stagedResume);
+		}
+	}
+
+	private void recordQueueWait(long waitNanos) {
+		totalQueueWaitNanos.addAndGet(waitNanos);
+		maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+	}
+
+	public Optional<GenerationJob> findJob(String jobId) {
+		return Optional.ofNullable(jobs.get(jobId));
+	}
+
+	public GenerationQueueStats getStats() {
+		return new GenerationQueueStats(
+				executor.getQueue().size(),
+				queueCapacity,
+				executor.getActiveCount(),
+				executor.getMaximumPoolSize(),
+				submittedJobs.get(),
+				rejectedJobs.get(),
+				completedJobs.get(),
+				failedJobs.get(),
+				TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos.get()),
+				TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()));
+	}
+
+	@Scheduled(fixedDelayString = "${app.generation.job-purge-interval:PT5M}")
+	public void purgeFinishedJobs() {
+		Instant cutoff = Instant.now().minus(jobRetention);
+		jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,19 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.PortfolioResponse;
+
+/**
+ * Receives progress of a streamed portfolio generation. {@link #onStarted} and
+ * {@link #onChunk} are only called when a new page is generated; uploads served from the
+ * generation cache go straight to {@link #onCompleted}.
+ */
+public interface GenerationStreamListener {
+
+	void onStarted(String portfolioId);
+
+	void onChunk(String html);
+
+	void onCompleted(PortfolioResponse response);
+
+	void onFailed(String message);
+}
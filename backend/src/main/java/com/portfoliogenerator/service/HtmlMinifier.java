@@ -0,0 +1,189 @@
+package com.portfoliogenerator.service;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Single-pass HTML minifier for generated pages. Comments are dropped (conditional comments
+ * are kept), whitespace inside tags and in text is collapsed to one space, and whitespace
+ * next to the document's {@code html}, {@code head} and {@code body} tags and next to tags
+ * in the head, where browsers never render it, is removed. Between other elements one space
+ * is kept, since whether it renders depends on their CSS {@code display}, not on the tag:
+ * list items or divs styled {@code inline-block} are spaced by it. Embedded
+ * stylesheets and {@code style} attributes go through {@link CssMinifier}; the contents
+ * of {@code <script>}, {@code <pre>} and {@code <textarea>} are copied as they are.
+ * <p>
+ * Structure the minifier cannot follow, such as an unterminated tag, comment or raw-text
+ * element, is reported as an {@link IOException} rather than guessed at.
+ */
+final class HtmlMinifier {
+	private static final Set<String> RAW_TEXT = Set.of("script", "style", "pre", "textarea");
+	private static final Set<String> DOCUMENT = Set.of("!doctype", "html", "head", "body");
+	// Tags that can appear before the body; once any other tag is seen, the body has started.
+	private static final Set<String> HEAD = Set.of("title", "meta", "link", "base", "style", "script", "noscript", "template");
+
+	private HtmlMinifier() {
+	}
+
+	static String minify(String html) throws IOException {
+		StringBuilder out = new StringBuilder(html.length());
+		boolean pendingSpace = false;
+		// Whether whitespace from here on can be dropped: right after a DOCUMENT or head tag, and at the start of the page.
+		boolean afterSpaceless = true;
+		boolean inHead = true;
+		int i = 0;
+		while (i < html.length()) {
+			char c = html.charAt(i);
+			if (c == '<' && html.startsWith("<!--", i)) {
+				int end = html.indexOf("-->", i + 4);
+				if (end < 0) {
+					throw new IOException("Unterminated comment in generated HTML");
+				}
+				if (html.startsWith("<!--[if", i)) {
+					out.append(html, i, end + 3);
+				}
+				i = end + 3;
+				continue;
+			}
+			if (c == '<' && i + 1 < html.length() && isTagStart(html.charAt(i + 1))) {
+				int end = endOfTag(html, i);
+				if (end < 0) {
+					throw new IOException("Unterminated tag in generated HTML");
+				}
+				String name = tagName(html, i);
+				boolean opening = html.charAt(i + 1) != '/' && html.charAt(end - 1) != '/';
+				if (inHead && (name.equals("body") || !DOCUMENT.contains(name) && !HEAD.contains(name))) {
+					inHead = false;
+				}
+				boolean spaceless = DOCUMENT.contains(name) || inHead && HEAD.contains(name);
+				if (pendingSpace && !spaceless && !afterSpaceless) {
+					out.append(' ');
+				}
+				pendingSpace = false;
+				afterSpaceless = spaceless;
+				minifyTag(html, i, end, out);
+				i = end + 1;
+
+				if (opening && RAW_TEXT.contains(name)) {
+					int close = indexOfIgnoreCase(html, "</" + name, i);
+					if (close < 0) {
+						throw new IOException("Unterminated <" + name + "> in generated HTML");
+					}
+					String content = html.substring(i, close);
+					out.append(name.equals("style") ? CssMinifier.minifyStylesheet(content) : content);
+					i = close;
+				}
+				continue;
+			}
+			if (isHtmlWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+				continue;
+			}
+			if (pendingSpace && !afterSpaceless) {
+				out.append(' ');
+			}
+			pendingSpace = false;
+			afterSpaceless = false;
+			out.append(c);
+			i++;
+		}
+		return out.toString();
+	}
+
+	private static boolean isTagStart(char c) {
+		return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+	}
+
+	private static boolean isHtmlWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	/**
+	 * Index of the {@code >} closing the tag that starts at {@code start}, skipping quoted
+	 * attribute values, or -1.
+	 */
+	private static int endOfTag(String html, int start) {
+		char quote = 0;
+		for (int i = start + 1; i < html.length(); i++) {
+			char c = html.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String tagName(String html, int start) {
+		int i = start + 1;
+		if (html.charAt(i) == '/') {
+			i++;
+		}
+		int nameStart = i;
+		while (i < html.length() && !isHtmlWhitespace(html.charAt(i)) && html.charAt(i) != '>' && html.charAt(i) != '/') {
+			i++;
+		}
+		return html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Copies the tag spanning {@code start..end} with whitespace outside attribute values
+	 * collapsed and {@code style} values minified.
+	 */
+	private static void minifyTag(String html, int start, int end, StringBuilder out) {
+		boolean pendingSpace = false;
+		String attribute = "";
+		for (int i = start; i <= end; i++) {
+			char c = html.charAt(i);
+			if (isHtmlWhitespace(c)) {
+				pendingSpace = true;
+				continue;
+			}
+			boolean selfClosingSlash = c == '/' && i < end && html.charAt(i + 1) == '>';
+			if (pendingSpace && c != '>' && c != '=' && !selfClosingSlash && out.charAt(out.length() - 1) != '=') {
+				out.append(' ');
+			}
+			pendingSpace = false;
+			if (c == '=') {
+				attribute = attributeNameBefore(html, i);
+			} else if (c == '"' || c == '\'') {
+				// endOfTag has already checked that every quoted value is closed.
+				int close = html.indexOf(c, i + 1);
+				String value = html.substring(i + 1, close);
+				out.append(c).append(attribute.equals("style") ? CssMinifier.minifyDeclarations(value) : value).append(c);
+				attribute = "";
+				i = close;
+				continue;
+			}
+			out.append(c);
+		}
+	}
+
+	private static String attributeNameBefore(String html, int equals) {
+		int end = equals;
+		while (end > 0 && isHtmlWhitespace(html.charAt(end - 1))) {
+			end--;
+		}
+		int begin = end;
+		while (begin > 0 && !isHtmlWhitespace(html.charAt(begin - 1)) && "\"'<".indexOf(html.charAt(begin - 1)) < 0) {
+			begin--;
+		}
+		return html.substring(begin, end).toLowerCase(Locale.ROOT);
+	}
+
+	private static int indexOfIgnoreCase(String text, String needle, int from) {
+		for (int i = from; i <= text.length() - needle.length(); i++) {
+			if (text.regionMatches(true, i, needle, 0, needle.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,115 @@
+package com.portfoliogenerator.service;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Post-generation stage between the cleaned Gemini response and storage. Pages are checked
+ * to be complete documents, minified ({@link HtmlMinifier}, {@link CssMinifier}) and
+ * compressed once at the highest levels, so the view and download endpoints can serve the
+ * stored variants without compressing anything per request.
+ * <p>
+ * Brotli needs the bundled native library; where it cannot be loaded only gzip variants are
+ * written.
+ */
+@Service
+public class HtmlPostProcessor {
+	private static final Logger logger = LoggerFactory.getLogger(HtmlPostProcessor.class);
+
+	private final boolean minify;
+	private final Set<ContentEncoding> encodings;
+	private final int gzipLevel;
+	private final Encoder.Parameters brotliParameters;
+
+	public HtmlPostProcessor(
+			@Value("${app.portfolio.postprocess.minify:true}") boolean minify,
+			@Value("${app.portfolio.postprocess.encodings:br,gzip}") String[] encodings,
+			@Value("${app.portfolio.postprocess.gzip-level:9}") int gzipLevel,
+			@Value("${app.portfolio.postprocess.brotli-quality:11}") int brotliQuality) {
+		this.minify = minify;
+		this.gzipLevel = gzipLevel;
+		this.brotliParameters = new Encoder.Parameters().setMode(Encoder.Mode.TEXT).setQuality(brotliQuality);
+
+		Set<ContentEncoding> configured = EnumSet.noneOf(ContentEncoding.class);
+		for (String token : encodings) {
+			if (!token.isBlank()) {
+				configured.add(ContentEncoding.fromToken(token));
+			}
+		}
+		configured.remove(ContentEncoding.IDENTITY);
+		if (configured.contains(ContentEncoding.BROTLI) && !Brotli4jLoader.isAvailable()) {
+			logger.warn("Brotli native library is not available; storing gzip variants only: {}",
+					Brotli4jLoader.getUnavailabilityCause().getMessage());
+			configured.remove(ContentEncoding.BROTLI);
+		}
+		this.encodings = configured;
+	}
+
+	/**
+	 * Validates and minifies a cleaned page.
+	 *
+	 * @throws IOException if the page is not a complete HTML document
+	 */
+	public String process(String html) throws IOException {
+		// The cleaner has checked the doctype; a missing </html> means Gemini stopped early.
+		if (!html.toLowerCase(Locale.ROOT).contains("</html>")) {
+			throw new IOException("Generated HTML is incomplete: no closing </html> tag.");
+		}
+		return minify ? HtmlMinifier.minify(html) : html;
+	}
+
+	/**
+	 * Returns the compressed variants of an encoded page, leaving out any that would not be
+	 * smaller than the page itself.
+	 */
+	public Map<ContentEncoding, byte[]> compress(byte[] page) throws IOException {
+		return compress(page, Set.of());
+	}
+
+	/**
+	 * Like {@link #compress(byte[])}, but also returns the {@code required} variants whatever
+	 * their size, so that a page replacing an earlier one replaces all of its variants.
+	 */
+	public Map<ContentEncoding, byte[]> compress(byte[] page, Set<ContentEncoding> required) throws IOException {
+		Map<ContentEncoding, byte[]> variants = new EnumMap<>(ContentEncoding.class);
+		Set<ContentEncoding> wanted = EnumSet.noneOf(ContentEncoding.class);
+		wanted.addAll(encodings);
+		wanted.addAll(required);
+		wanted.remove(ContentEncoding.IDENTITY);
+		if (!Brotli4jLoader.isAvailable()) {
+			wanted.remove(ContentEncoding.BROTLI);
+		}
+		for (ContentEncoding encoding : wanted) {
+			byte[] compressed = encoding == ContentEncoding.BROTLI ? Encoder.compress(page, brotliParameters) : gzip(page);
+			if (compressed.length < page.length || required.contains(encoding)) {
+				variants.put(encoding, compressed);
+			}
+		}
+		return variants;
+	}
+
+	private byte[] gzip(byte[] page) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(page.length / 3 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+			{
+				def.setLevel(gzipLevel);
+			}
+		}) {
+			gzip.write(page);
+		}
+		return out.toByteArray();
+	}
+}
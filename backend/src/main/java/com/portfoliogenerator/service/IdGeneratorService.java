@@ -1,20 +1,109 @@
 package com.portfoliogenerator.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Hands out portfolio IDs that are unique by construction, so callers never have to
+ * probe storage for a free one.
+ * <p>
+ * The sequence space is split evenly between {@code 2^node-bits} nodes and each instance
+ * counts up within its own slice, so instances with different node IDs can never collide.
+ * Sequence numbers are reserved in blocks: the end of the current block is persisted
+ * before any number from it is used, so a restart resumes after the last reserved block
+ * and never reissues a number (the unused rest of that block is skipped). The number is
+ * then encoded by {@link PortfolioIdCodec}.
+ * <p>
+ * The node bits and ID secret are fixed for the lifetime of the store; the ID length may
+ * be changed since IDs of different lengths cannot collide. Only a single instance may
+ * leave the node ID at its default; {@link GcsPortfolioStore} requires it to be set.
+ */
 @Service
 public class IdGeneratorService {
-	private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyz";
-	private static final int ID_LENGTH = 5;
-	private static final SecureRandom random = new SecureRandom();
+	private static final Logger logger = LoggerFactory.getLogger(IdGeneratorService.class);
+
+	private final PortfolioIdCodec codec;
+	private final Path highWaterMarkFile;
+	private final int blockSize;
+	private final long nodeBase;
+	private final long nodeCapacity;
+
+	// Held while a new block is persisted, so a lock rather than a monitor that would pin a
+	// virtual thread for the duration of the fsync.
+	private final ReentrantLock lock = new ReentrantLock();
+	private long nextSequence;
+	private long blockEnd;
+
+	public IdGeneratorService(
+			PortfolioIdCodec codec,
+			@Value("${app.portfolio.id.state-path:${app.portfolio.storage-path}}") String statePath,
+			@Value("${app.portfolio.id.node-id:0}") int nodeId,
+			@Value("${app.portfolio.id.node-bits:6}") int nodeBits,
+			@Value("${app.portfolio.id.block-size:1000}") int blockSize) {
+		if (nodeId < 0 || nodeId >= 1 << nodeBits) {
+			throw new IllegalArgumentException("app.portfolio.id.node-id must be between 0 and " + ((1 << nodeBits) - 1) + ": " + nodeId);
+		}
+		this.codec = codec;
+		this.blockSize = Math.max(1, blockSize);
+		this.nodeCapacity = codec.getCapacity() >> nodeBits;
+		this.nodeBase = nodeId * nodeCapacity;
+
+		Path stateDirectory = Paths.get(statePath).toAbsolutePath().normalize().resolve(".id-allocator");
+		this.highWaterMarkFile = stateDirectory.resolve("node-" + nodeId + "-length-" + codec.getLength());
+		try {
+			Files.createDirectories(stateDirectory);
+			this.nextSequence = Files.exists(highWaterMarkFile)
+					? Long.parseLong(Files.readString(highWaterMarkFile, StandardCharsets.UTF_8).trim())
+					: 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read the ID allocator state from " + highWaterMarkFile, e);
+		}
+		this.blockEnd = nextSequence;
+		logger.info("Allocating {}-character portfolio IDs for node {} starting at sequence {} of {}.",
+				codec.getLength(), nodeId, nextSequence, nodeCapacity);
+	}
 
 	public String generateUniqueId(){
-		return IntStream.range(0, ID_LENGTH)
-				.mapToObj(i -> String.valueOf(CHARACTERS.charAt(random.nextInt(CHARACTERS.length()))))
-				.collect(Collectors.joining());
+		lock.lock();
+		try {
+			if (nextSequence == blockEnd) {
+				reserveBlock();
+			}
+			return codec.encode(nodeBase + nextSequence++);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void reserveBlock() {
+		long newBlockEnd = Math.min(blockEnd + blockSize, nodeCapacity);
+		if (newBlockEnd <= nextSequence) {
+			throw new IllegalStateException("Portfolio ID space of this node is exhausted; increase app.portfolio.id.length.");
+		}
+
+		Path temp = highWaterMarkFile.resolveSibling(highWaterMarkFile.getFileName() + ".tmp");
+		try {
+			Files.writeString(temp, Long.toString(newBlockEnd), StandardCharsets.UTF_8);
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+			Files.move(temp, highWaterMarkFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not persist the ID allocator state to " + highWaterMarkFile, e);
+		}
+		blockEnd = newBlockEnd;
 	}
 }
@@ -0,0 +1,133 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.config.LlmResilienceProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count-based circuit breaker for LLM calls. It opens when at least
+ * {@code failure-rate-threshold} of the last {@code window} calls failed, rejects calls
+ * for {@code open-duration}, then lets {@code half-open-calls} trial calls through: if they
+ * all succeed it closes again, if any fails it reopens.
+ * <p>
+ * Only failures that say something about the backend (timeouts, unavailable, throttled)
+ * count. Calls that end for other reasons are {@linkplain #onIgnored ignored}.
+ */
+class LlmCircuitBreaker {
+	enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private final boolean[] outcomes;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openNanos;
+	private final int halfOpenCalls;
+
+	// All guarded by this.
+	private State state = State.CLOSED;
+	private int next;
+	private int recorded;
+	private int failures;
+	private long openedAtNanos;
+	private int halfOpenPermits;
+	private int halfOpenSuccesses;
+
+	LlmCircuitBreaker(LlmResilienceProperties.CircuitBreaker settings) {
+		this.outcomes = new boolean[Math.max(1, settings.getWindow())];
+		this.minimumCalls = Math.min(outcomes.length, Math.max(1, settings.getMinimumCalls()));
+		this.failureRateThreshold = settings.getFailureRateThreshold();
+		this.openNanos = settings.getOpenDuration().toNanos();
+		this.halfOpenCalls = Math.max(1, settings.getHalfOpenCalls());
+	}
+
+	/**
+	 * Whether a call may go ahead. Every permitted call must end in exactly one of
+	 * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+	 */
+	synchronized boolean tryAcquire() {
+		if (state == State.OPEN) {
+			if (System.nanoTime() - openedAtNanos < openNanos) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			halfOpenPermits = halfOpenCalls;
+			halfOpenSuccesses = 0;
+		}
+		if (state == State.HALF_OPEN) {
+			if (halfOpenPermits == 0) {
+				return false;
+			}
+			halfOpenPermits--;
+		}
+		return true;
+	}
+
+	synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			if (++halfOpenSuccesses == halfOpenCalls) {
+				state = State.CLOSED;
+				resetWindow();
+			}
+		} else if (state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			open();
+		} else if (state == State.CLOSED) {
+			record(true);
+			if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+				open();
+			}
+		}
+	}
+
+	synchronized void onIgnored() {
+		if (state == State.HALF_OPEN) {
+			halfOpenPermits++;
+		}
+	}
+
+	synchronized State state() {
+		if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	/**
+	 * Seconds until an open breaker lets a trial call through, at least one.
+	 */
+	synchronized long retryAfterSeconds() {
+		long remaining = state == State.OPEN ? openNanos - (System.nanoTime() - openedAtNanos) : 0;
+		return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining));
+	}
+
+	private void record(boolean failure) {
+		if (recorded == outcomes.length) {
+			if (outcomes[next]) {
+				failures--;
+			}
+		} else {
+			recorded++;
+		}
+		outcomes[next] = failure;
+		if (failure) {
+			failures++;
+		}
+		next = (next + 1) % outcomes.length;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		openedAtNanos = System.nanoTime();
+		resetWindow();
+	}
+
+	private void resetWindow() {
+		next = 0;
+		recorded = 0;
+		failures = 0;
+	}
+}
@@ -0,0 +1,36 @@
+package com.portfoliogenerator.service;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Text-generation backend used by {@link GeminiService}. Implementations are long-lived
+ * singletons that own their connections, so callers must not close them per request.
+ */
+public interface LlmClient {
+
+	/**
+	 * Sends the prompt to the model and returns the raw generated text.
+	 */
+	String generateContent(String prompt) throws IOException;
+
+	/**
+	 * Like {@link #generateContent}, but asks for a JSON response conforming to
+	 * {@code responseSchema}, an OpenAPI schema object in JSON. Clients without a JSON
+	 * response mode make a plain call and rely on the prompt; callers validate either way.
+	 */
+	default String generateJson(String prompt, String responseSchema) throws IOException {
+		return generateContent(prompt);
+	}
+
+	/**
+	 * Sends the prompt to the model and passes each piece of generated text to
+	 * {@code chunkConsumer} as soon as it arrives. Returns once the response is complete.
+	 */
+	void streamContent(String prompt, Consumer<String> chunkConsumer) throws IOException;
+
+	/**
+	 * Whether the client currently believes it can serve requests.
+	 */
+	boolean isHealthy();
+}
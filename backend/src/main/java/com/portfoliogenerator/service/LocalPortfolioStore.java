@@ -0,0 +1,369 @@
+package com.portfoliogenerator.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps portfolios on the local filesystem without putting millions of entries in one
+ * directory.
+ * <p>
+ * Files up to {@code pack-max-size} are appended to {@link PackedSegments}; larger ones
+ * go to {@code .shards/<aa>/<bb>/<id>/<filename>}, where {@code aa/bb} are the first two
+ * bytes of the SHA-256 of the ID, which spreads portfolios evenly over 65,536 leaf
+ * directories. Setting {@code pack-max-size} to 0 shards every file.
+ * <p>
+ * Portfolios still in the old flat {@code <storage-path>/<id>/} layout stay readable and
+ * are moved over in small batches in the background.
+ */
+@Component
+@ConditionalOnProperty(name = "app.portfolio.store", havingValue = "local", matchIfMissing = true)
+public class LocalPortfolioStore implements PortfolioStore {
+	private static final Logger logger = LoggerFactory.getLogger(LocalPortfolioStore.class);
+
+	// Dot-prefixed so they can never collide with a portfolio ID in the flat layout.
+	private static final String SHARDS_DIRECTORY = ".shards";
+	private static final String SEGMENTS_DIRECTORY = ".segments";
+	private static final String STAGING_DIRECTORY = ".staging";
+
+	private final Path root;
+	private final Path shardRoot;
+	private final Path stagingRoot;
+	private final long packMaxBytes;
+	private final PackedSegments segments;
+	private final int migrationBatchSize;
+
+	// IDs handed out by reserve() that have nothing committed yet.
+	private final Set<String> reservations = ConcurrentHashMap.newKeySet();
+	private final Set<String> failedMigrations = ConcurrentHashMap.newKeySet();
+	private final ReentrantLock migrationLock = new ReentrantLock();
+	private volatile boolean legacyLayoutPresent = true;
+
+	public LocalPortfolioStore(
+			@Value("${app.portfolio.storage-path}") String storagePath,
+			@Value("${app.portfolio.store.local.pack-max-size:64KB}") DataSize packMaxSize,
+			@Value("${app.portfolio.store.local.segment-size:64MB}") DataSize segmentSize,
+			@Value("${app.portfolio.store.local.compact-below-live-ratio:0.5}") double compactBelowLiveRatio,
+			@Value("${app.portfolio.store.local.migration-batch-size:500}") int migrationBatchSize) throws IOException {
+		this.root = Paths.get(storagePath).toAbsolutePath().normalize();
+		this.shardRoot = root.resolve(SHARDS_DIRECTORY);
+		this.stagingRoot = root.resolve(STAGING_DIRECTORY);
+		this.packMaxBytes = packMaxSize.toBytes();
+		this.migrationBatchSize = migrationBatchSize;
+
+		Files.createDirectories(shardRoot);
+		// Anything left in staging belongs to a generation that died with the last process.
+		FileSystemUtils.deleteRecursively(stagingRoot);
+		Files.createDirectories(stagingRoot);
+		this.segments = packMaxBytes > 0
+				? new PackedSegments(root.resolve(SEGMENTS_DIRECTORY), segmentSize.toBytes(), compactBelowLiveRatio)
+				: null;
+	}
+
+	@Override
+	public boolean reserve(String portfolioId) {
+		if (!reservations.add(portfolioId)) {
+			return false;
+		}
+		if (isStored(portfolioId)) {
+			reservations.remove(portfolioId);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public Path stagingFile(String portfolioId, String filename) throws IOException {
+		return Files.createTempFile(stagingRoot, portfolioId + "." + filename + ".", ".part");
+	}
+
+	@Override
+	public void commit(String portfolioId, String filename, Path stagingFile) throws IOException {
+		try {
+			if (segments != null && Files.size(stagingFile) <= packMaxBytes) {
+				segments.append(portfolioId, filename, stagingFile, System.currentTimeMillis());
+				Files.delete(stagingFile);
+				Files.deleteIfExists(shardDirectory(portfolioId).resolve(filename));
+			} else {
+				Path directory = shardDirectory(portfolioId);
+				Files.createDirectories(directory);
+				Files.move(stagingFile, directory.resolve(filename), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				if (segments != null) {
+					segments.remove(portfolioId, filename);
+				}
+			}
+		} finally {
+			reservations.remove(portfolioId);
+		}
+	}
+
+	@Override
+	public Optional<StoredFile> locate(String portfolioId, String filename) throws IOException {
+		Optional<StoredFile> file = locateMigrated(portfolioId, filename);
+		if (file.isEmpty() && !isReservedName(portfolioId)) {
+			file = readRegion(root.resolve(portfolioId).resolve(filename));
+		}
+		if (file.isEmpty()) {
+			// The background migration may have moved it between the two lookups.
+			file = locateMigrated(portfolioId, filename);
+		}
+		return file;
+	}
+
+	@Override
+	public boolean exists(String portfolioId, String filename) {
+		return (segments != null && segments.contains(portfolioId, filename))
+				|| Files.isReadable(shardDirectory(portfolioId).resolve(filename))
+				|| !isReservedName(portfolioId) && Files.isReadable(root.resolve(portfolioId).resolve(filename));
+	}
+
+	@Override
+	public void delete(String portfolioId) throws IOException {
+		migrationLock.lock();
+		try {
+			reservations.remove(portfolioId);
+			if (segments != null) {
+				segments.removeAll(portfolioId);
+			}
+			FileSystemUtils.deleteRecursively(shardDirectory(portfolioId));
+			FileSystemUtils.deleteRecursively(root.resolve(portfolioId));
+		} finally {
+			migrationLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<PortfolioUsage> usage(String portfolioId) throws IOException {
+		long bytes = 0;
+		long lastModified = 0;
+		boolean found = false;
+		// Under the migration lock, so a portfolio being moved is not counted twice or not at all.
+		migrationLock.lock();
+		try {
+			if (segments != null) {
+				for (PackedSegments.Entry entry : segments.entries(portfolioId)) {
+					bytes += entry.length();
+					lastModified = Math.max(lastModified, entry.lastModifiedMillis());
+					found = true;
+				}
+			}
+			List<Path> directories = isReservedName(portfolioId)
+					? List.of(shardDirectory(portfolioId))
+					: List.of(shardDirectory(portfolioId), root.resolve(portfolioId));
+			for (Path directory : directories) {
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+					for (Path file : files) {
+						Optional<StoredFile> stored = file.getFileName().toString().endsWith(".part") ? Optional.empty() : readRegion(file);
+						if (stored.isPresent()) {
+							bytes += stored.get().length();
+							lastModified = Math.max(lastModified, stored.get().lastModifiedMillis());
+							found = true;
+						}
+					}
+				} catch (NoSuchFileException e) {
+					// Nothing stored in this layout.
+				}
+			}
+		} finally {
+			migrationLock.unlock();
+		}
+		return found ? Optional.of(new PortfolioUsage(bytes, lastModified)) : Optional.empty();
+	}
+
+	@Override
+	public void forEachPortfolio(Consumer<String> visitor) throws IOException {
+		if (segments != null) {
+			segments.portfolioIds().forEach(visitor);
+		}
+		try (DirectoryStream<Path> firstLevel = Files.newDirectoryStream(shardRoot, path -> Files.isDirectory(path))) {
+			for (Path first : firstLevel) {
+				try (DirectoryStream<Path> secondLevel = Files.newDirectoryStream(first, path -> Files.isDirectory(path))) {
+					for (Path second : secondLevel) {
+						try (DirectoryStream<Path> portfolios = Files.newDirectoryStream(second, path -> Files.isDirectory(path))) {
+							for (Path portfolio : portfolios) {
+								visitor.accept(portfolio.getFileName().toString());
+							}
+						}
+					}
+				}
+			}
+		}
+		try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, this::isLegacyDirectory)) {
+			for (Path directory : directories) {
+				visitor.accept(directory.getFileName().toString());
+			}
+		}
+	}
+
+	/**
+	 * Moves the next batch of flat-layout portfolios into the new layout, so the move is
+	 * spread out instead of stalling startup.
+	 */
+	@Scheduled(fixedDelayString = "${app.portfolio.store.local.migration-interval:PT10S}")
+	public void migrateLegacyLayout() {
+		if (!legacyLayoutPresent) {
+			return;
+		}
+		int migrated = 0;
+		boolean more = false;
+		try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, this::isLegacyDirectory)) {
+			for (Path directory : directories) {
+				String portfolioId = directory.getFileName().toString();
+				if (failedMigrations.contains(portfolioId)) {
+					continue;
+				}
+				if (migrated == migrationBatchSize) {
+					more = true;
+					break;
+				}
+				try {
+					migrate(portfolioId, directory);
+					migrated++;
+				} catch (IOException e) {
+					failedMigrations.add(portfolioId);
+					logger.warn("Could not migrate portfolio {} to the sharded layout, leaving it in place: {}", portfolioId, e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not scan {} for flat-layout portfolios: {}", root, e.getMessage());
+			return;
+		}
+
+		if (migrated > 0) {
+			logger.info("Migrated {} portfolios to the sharded layout.", migrated);
+		}
+		if (!more) {
+			legacyLayoutPresent = false;
+			if (!failedMigrations.isEmpty()) {
+				logger.warn("{} portfolios remain in the flat layout after migration failures.", failedMigrations.size());
+			}
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${app.portfolio.store.local.compaction-interval:PT10M}")
+	public void compactSegments() {
+		if (segments == null) {
+			return;
+		}
+		try {
+			segments.compact();
+		} catch (IOException e) {
+			logger.error("Portfolio segment compaction failed: {}", e.getMessage(), e);
+		}
+	}
+
+	private void migrate(String portfolioId, Path legacyDirectory) throws IOException {
+		migrationLock.lock();
+		try {
+			Path shardDirectory = shardDirectory(portfolioId);
+			if (segments == null && !Files.exists(shardDirectory)) {
+				// Nothing to merge with, so the whole directory can be renamed in one step.
+				Files.createDirectories(shardDirectory.getParent());
+				Files.move(legacyDirectory, shardDirectory, StandardCopyOption.ATOMIC_MOVE);
+				return;
+			}
+
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(legacyDirectory)) {
+				for (Path file : files) {
+					String filename = file.getFileName().toString();
+					BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					if (!attributes.isRegularFile() || filename.endsWith(".part")) {
+						continue;
+					}
+					if (segments != null && segments.contains(portfolioId, filename) || Files.exists(shardDirectory.resolve(filename))) {
+						// Rewritten since the flat copy was made; the new layout wins.
+						continue;
+					}
+					if (segments != null && attributes.size() <= packMaxBytes) {
+						segments.append(portfolioId, filename, file, attributes.lastModifiedTime().toMillis());
+					} else {
+						Files.createDirectories(shardDirectory);
+						Files.move(file, shardDirectory.resolve(filename), StandardCopyOption.ATOMIC_MOVE);
+					}
+				}
+			}
+			FileSystemUtils.deleteRecursively(legacyDirectory);
+		} finally {
+			migrationLock.unlock();
+		}
+	}
+
+	private boolean isLegacyDirectory(Path path) {
+		return !isReservedName(path.getFileName().toString()) && Files.isDirectory(path);
+	}
+
+	private static boolean isReservedName(String name) {
+		return name.startsWith(".");
+	}
+
+	private boolean isStored(String portfolioId) {
+		return (segments != null && segments.contains(portfolioId))
+				|| Files.exists(shardDirectory(portfolioId))
+				|| Files.exists(root.resolve(portfolioId));
+	}
+
+	private Optional<StoredFile> locateMigrated(String portfolioId, String filename) throws IOException {
+		if (segments != null) {
+			Optional<StoredFile> packed = segments.locate(portfolioId, filename);
+			if (packed.isPresent()) {
+				return packed;
+			}
+		}
+		return readRegion(shardDirectory(portfolioId).resolve(filename));
+	}
+
+	private Optional<StoredFile> readRegion(Path file) throws IOException {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			if (!attributes.isRegularFile()) {
+				return Optional.empty();
+			}
+			return Optional.of(new StoredFile(file, 0, attributes.size(), attributes.lastModifiedTime().toMillis()));
+		} catch (NoSuchFileException e) {
+			return Optional.empty();
+		}
+	}
+
+	private Path shardDirectory(String portfolioId) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-256").digest(portfolioId.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+		HexFormat hex = HexFormat.of();
+		return shardRoot.resolve(hex.toHexDigits(hash[0])).resolve(hex.toHexDigits(hash[1])).resolve(portfolioId);
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		if (segments != null) {
+			segments.close();
+		}
+	}
+}
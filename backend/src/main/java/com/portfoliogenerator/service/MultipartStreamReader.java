@@ -0,0 +1,248 @@
+package com.portfoliogenerator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a {@code multipart/form-data} body part by part straight from the request stream.
+ * Each part's content is an {@link InputStream} that ends at the next boundary, so a
+ * caller can look at the first bytes of a file and stop reading there, and nothing is
+ * buffered beyond a fixed window.
+ * <p>
+ * Parts must be consumed in order; {@link #nextPart()} skips whatever is left of the
+ * current one. Not thread-safe.
+ */
+final class MultipartStreamReader {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_HEADER_BYTES = 8 * 1024;
+	private static final Pattern BOUNDARY = Pattern.compile("(?i);\\s*boundary=(\"([^\"]{1,70})\"|([^;\\s]{1,70}))");
+	private static final Pattern NAME = Pattern.compile("(?i);\\s*name=\"([^\"]*)\"");
+	private static final Pattern FILENAME = Pattern.compile("(?i);\\s*filename=\"([^\"]*)\"");
+
+	/**
+	 * A part of the body. {@code filename} is {@code null} for plain form fields.
+	 */
+	record Part(String name, String filename, String contentType, InputStream content) {
+	}
+
+	private final InputStream in;
+	// CRLF "--" boundary: every boundary but the first is preceded by a line break.
+	private final byte[] delimiter;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private long bytesRead;
+	private boolean finished;
+	private PartInputStream current;
+	// Result of the last delimiter search, valid until the buffer is refilled.
+	private int delimiterAt = -1;
+	private boolean delimiterSearched;
+
+	MultipartStreamReader(InputStream in, String boundary) {
+		this.in = in;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+		// The first boundary may open the body, so pretend a line break precedes it.
+		buffer[0] = '\r';
+		buffer[1] = '\n';
+		limit = 2;
+		// Everything before the first boundary is preamble, read like a part and dropped.
+		current = new PartInputStream();
+	}
+
+	/**
+	 * The boundary parameter of a {@code multipart/form-data} content type, or
+	 * {@code null} if the content type is not one.
+	 */
+	static String boundary(String contentType) {
+		if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+			return null;
+		}
+		Matcher matcher = BOUNDARY.matcher(contentType);
+		if (!matcher.find()) {
+			return null;
+		}
+		return matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+	}
+
+	/**
+	 * The next part, or {@code null} after the closing boundary.
+	 */
+	Part nextPart() throws IOException {
+		if (finished) {
+			return null;
+		}
+		current.skipRemaining();
+		// A boundary is followed by "--" on the last one, or by a line break and the part headers.
+		if (!fill(2)) {
+			throw new IOException("Multipart body ended after a boundary");
+		}
+		if (buffer[position] == '-' && buffer[position + 1] == '-') {
+			position += 2;
+			finished = true;
+			return null;
+		}
+		// The rest of the boundary line is transport padding.
+		readLine();
+
+		String name = null;
+		String filename = null;
+		String contentType = null;
+		int headerBytes = 0;
+		for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+			headerBytes += line.length() + 2;
+			if (headerBytes > MAX_HEADER_BYTES) {
+				throw new IOException("Multipart part headers are too long");
+			}
+			int colon = line.indexOf(':');
+			if (colon < 0) {
+				continue;
+			}
+			String header = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(colon + 1).trim();
+			if (header.equals("content-disposition")) {
+				name = group(NAME, value);
+				filename = group(FILENAME, value);
+			} else if (header.equals("content-type")) {
+				contentType = value;
+			}
+		}
+		current = new PartInputStream();
+		return new Part(name, filename, contentType, current);
+	}
+
+	/**
+	 * Bytes read from the underlying stream so far.
+	 */
+	long bytesRead() {
+		return bytesRead;
+	}
+
+	private static String group(Pattern pattern, String value) {
+		Matcher matcher = pattern.matcher(value);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			if (!fill(1)) {
+				throw new IOException("Multipart body ended inside part headers");
+			}
+			byte b = buffer[position++];
+			if (b == '\n') {
+				byte[] bytes = line.toByteArray();
+				int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+				// Browsers send non-ASCII filenames as raw UTF-8.
+				return new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+			if (line.size() > MAX_HEADER_BYTES) {
+				throw new IOException("Multipart part headers are too long");
+			}
+			line.write(b);
+		}
+	}
+
+	/**
+	 * Makes at least {@code count} unread bytes available, unless the stream ends first.
+	 */
+	private boolean fill(int count) throws IOException {
+		if (limit - position >= count) {
+			return true;
+		}
+		delimiterSearched = false;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (limit < count) {
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				return false;
+			}
+			limit += read;
+			bytesRead += read;
+		}
+		return true;
+	}
+
+	/**
+	 * Index of the delimiter in the unread bytes, or -1. A search covers the whole buffer,
+	 * so reads smaller than the buffer do not scan the same bytes again.
+	 */
+	private int indexOfDelimiter() {
+		if (delimiterSearched && (delimiterAt < 0 || delimiterAt >= position)) {
+			return delimiterAt;
+		}
+		delimiterSearched = true;
+		delimiterAt = -1;
+		int last = limit - delimiter.length;
+		outer:
+		for (int i = position; i <= last; i++) {
+			for (int j = 0; j < delimiter.length; j++) {
+				if (buffer[i + j] != delimiter[j]) {
+					continue outer;
+				}
+			}
+			delimiterAt = i;
+			break;
+		}
+		return delimiterAt;
+	}
+
+	private final class PartInputStream extends InputStream {
+		private boolean ended;
+
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] target, int offset, int length) throws IOException {
+			if (ended) {
+				return -1;
+			}
+			if (length == 0) {
+				return 0;
+			}
+			while (true) {
+				int delimiterAt = indexOfDelimiter();
+				int available;
+				if (delimiterAt >= 0) {
+					available = delimiterAt - position;
+					if (available == 0) {
+						position += delimiter.length;
+						ended = true;
+						return -1;
+					}
+				} else {
+					// The tail may be the start of a delimiter split across reads.
+					available = limit - position - (delimiter.length - 1);
+				}
+				if (available > 0) {
+					int count = Math.min(available, length);
+					System.arraycopy(buffer, position, target, offset, count);
+					position += count;
+					return count;
+				}
+				if (!fill(limit - position + 1)) {
+					throw new IOException("Multipart body ended without its closing boundary");
+				}
+			}
+		}
+
+		void skipRemaining() throws IOException {
+			byte[] scratch = new byte[8192];
+			while (read(scratch, 0, scratch.length) >= 0) {
+				// Discard.
+			}
+		}
+	}
+}
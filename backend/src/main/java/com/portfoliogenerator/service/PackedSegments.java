@@ -0,0 +1,493 @@
+package com.portfoliogenerator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small portfolio files stored back to back in append-only segment files, so millions of
+ * portfolios do not cost millions of inodes.
+ * <p>
+ * Every write is recorded in an append-only index log ({@code index.log}) as the file's
+ * segment, offset and length, and deletes are recorded as tombstones. The log is replayed
+ * into memory at startup, so a lookup is a map probe followed by one positioned read of the
+ * segment. Data is forced to disk before its index record, so a crash can only leave
+ * unreferenced bytes behind, which compaction reclaims, and a torn record at the end of the
+ * log, which is cut off before the log is replayed and appended to again.
+ * <p>
+ * Only the newest segment is appended to. Compaction copies the live files out of older
+ * segments whose live share has dropped below a threshold, rewrites the index log from
+ * memory and deletes the old segments after a grace period, so readers that already
+ * resolved a location can still finish.
+ */
+class PackedSegments {
+	private static final Logger logger = LoggerFactory.getLogger(PackedSegments.class);
+
+	private static final String INDEX_FILE = "index.log";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String ALL_FILES = "*";
+	private static final Duration RETIRED_SEGMENT_GRACE = Duration.ofMinutes(1);
+
+	record Entry(int segment, long offset, long length, long lastModifiedMillis) {
+	}
+
+	private static final class Usage {
+		long totalBytes;
+		long liveBytes;
+	}
+
+	private final Path directory;
+	private final long segmentMaxBytes;
+	private final double compactBelowLiveRatio;
+
+	// portfolio ID -> filename -> location; the inner maps are replaced, never mutated.
+	private final ConcurrentHashMap<String, Map<String, Entry>> index = new ConcurrentHashMap<>();
+
+	// The fields below are guarded by lock, a lock rather than a monitor because it is held
+	// across file writes and fsyncs, which would pin a virtual thread.
+	private final ReentrantLock lock = new ReentrantLock();
+	private final TreeMap<Integer, Usage> segments = new TreeMap<>();
+	private final Map<Path, Long> retiredSegments = new LinkedHashMap<>();
+	private int activeSegment;
+	private FileChannel activeChannel;
+	private BufferedWriter indexWriter;
+	private FileChannel indexChannel;
+
+	PackedSegments(Path directory, long segmentMaxBytes, double compactBelowLiveRatio) throws IOException {
+		this.directory = directory;
+		this.segmentMaxBytes = segmentMaxBytes;
+		this.compactBelowLiveRatio = compactBelowLiveRatio;
+
+		Files.createDirectories(directory);
+		truncateTornRecord();
+		replayIndex();
+		loadSegments();
+		openIndexLog();
+	}
+
+	Optional<StoredFile> locate(String portfolioId, String filename) {
+		Entry entry = index.getOrDefault(portfolioId, Map.of()).get(filename);
+		if (entry == null) {
+			return Optional.empty();
+		}
+		return Optional.of(new StoredFile(segmentPath(entry.segment()), entry.offset(), entry.length(), entry.lastModifiedMillis()));
+	}
+
+	boolean contains(String portfolioId) {
+		return index.containsKey(portfolioId);
+	}
+
+	boolean contains(String portfolioId, String filename) {
+		return index.getOrDefault(portfolioId, Map.of()).containsKey(filename);
+	}
+
+	Collection<Entry> entries(String portfolioId) {
+		return index.getOrDefault(portfolioId, Map.of()).values();
+	}
+
+	/**
+	 * A live view of the IDs with packed files.
+	 */
+	Set<String> portfolioIds() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	/**
+	 * Appends the contents of {@code source} as {@code filename}, replacing any previous
+	 * version.
+	 */
+	void append(String portfolioId, String filename, Path source, long lastModifiedMillis) throws IOException {
+		lock.lock();
+		try {
+			try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+				Entry entry = write(in, 0, in.size(), lastModifiedMillis);
+				logPut(portfolioId, filename, entry);
+				put(portfolioId, filename, entry);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void remove(String portfolioId, String filename) throws IOException {
+		lock.lock();
+		try {
+			if (contains(portfolioId, filename)) {
+				logRemove(portfolioId, filename);
+				applyRemove(portfolioId, filename);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void removeAll(String portfolioId) throws IOException {
+		lock.lock();
+		try {
+			if (contains(portfolioId)) {
+				logRemove(portfolioId, ALL_FILES);
+				applyRemove(portfolioId, ALL_FILES);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Rewrites sparse segments and deletes segments retired by earlier runs. Files are
+	 * moved one at a time so writers are only blocked for a single copy.
+	 */
+	void compact() throws IOException {
+		deleteRetiredSegments();
+
+		List<Integer> victims = new ArrayList<>();
+		lock.lock();
+		try {
+			segments.forEach((segment, usage) -> {
+				if (segment != activeSegment && usage.liveBytes < usage.totalBytes * compactBelowLiveRatio) {
+					victims.add(segment);
+				}
+			});
+		} finally {
+			lock.unlock();
+		}
+		if (victims.isEmpty()) {
+			return;
+		}
+
+		long reclaimed = 0;
+		for (Map.Entry<String, Map<String, Entry>> portfolio : index.entrySet()) {
+			for (Map.Entry<String, Entry> file : portfolio.getValue().entrySet()) {
+				if (victims.contains(file.getValue().segment())) {
+					relocate(portfolio.getKey(), file.getKey(), file.getValue());
+				}
+			}
+		}
+
+		lock.lock();
+		try {
+			rewriteIndexLog();
+			long now = System.currentTimeMillis();
+			for (int victim : victims) {
+				Usage usage = segments.remove(victim);
+				reclaimed += usage.totalBytes - usage.liveBytes;
+				retiredSegments.put(segmentPath(victim), now);
+			}
+		} finally {
+			lock.unlock();
+		}
+		logger.info("Compacted {} portfolio segments, reclaiming {} bytes.", victims.size(), reclaimed);
+	}
+
+	void close() throws IOException {
+		lock.lock();
+		try {
+			activeChannel.close();
+			indexWriter.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void relocate(String portfolioId, String filename, Entry entry) throws IOException {
+		lock.lock();
+		try {
+			if (!entry.equals(index.getOrDefault(portfolioId, Map.of()).get(filename))) {
+				// Replaced or deleted since the scan.
+				return;
+			}
+			try (FileChannel in = FileChannel.open(segmentPath(entry.segment()), StandardOpenOption.READ)) {
+				Entry moved = write(in, entry.offset(), entry.length(), entry.lastModifiedMillis());
+				logPut(portfolioId, filename, moved);
+				put(portfolioId, filename, moved);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Entry write(FileChannel in, long position, long length, long lastModifiedMillis) throws IOException {
+		rollIfFull(length);
+		long offset = activeChannel.size();
+		long copied = 0;
+		while (copied < length) {
+			in.position(position + copied);
+			long transferred = activeChannel.transferFrom(in, offset + copied, length - copied);
+			if (transferred <= 0) {
+				throw new IOException("Source ended after " + copied + " of " + length + " bytes");
+			}
+			copied += transferred;
+		}
+		activeChannel.force(false);
+		segments.get(activeSegment).totalBytes += length;
+		return new Entry(activeSegment, offset, length, lastModifiedMillis);
+	}
+
+	private void rollIfFull(long length) throws IOException {
+		long size = activeChannel.size();
+		if (size > 0 && size + length > segmentMaxBytes) {
+			activeChannel.close();
+			openSegment(activeSegment + 1);
+		}
+	}
+
+	private void openSegment(int segment) throws IOException {
+		activeSegment = segment;
+		activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		segments.computeIfAbsent(segment, s -> new Usage()).totalBytes = activeChannel.size();
+	}
+
+	private void put(String portfolioId, String filename, Entry entry) {
+		index.compute(portfolioId, (id, files) -> {
+			Map<String, Entry> updated = files == null ? new HashMap<>(2) : new HashMap<>(files);
+			Entry previous = updated.put(filename, entry);
+			release(previous);
+			return Map.copyOf(updated);
+		});
+		Usage usage = segments.get(entry.segment());
+		if (usage != null) {
+			usage.liveBytes += entry.length();
+		}
+	}
+
+	private void applyRemove(String portfolioId, String filename) {
+		index.computeIfPresent(portfolioId, (id, files) -> {
+			if (ALL_FILES.equals(filename)) {
+				files.values().forEach(this::release);
+				return null;
+			}
+			Map<String, Entry> updated = new HashMap<>(files);
+			release(updated.remove(filename));
+			return updated.isEmpty() ? null : Map.copyOf(updated);
+		});
+	}
+
+	private void release(Entry entry) {
+		if (entry != null) {
+			Usage usage = segments.get(entry.segment());
+			if (usage != null) {
+				usage.liveBytes -= entry.length();
+			}
+		}
+	}
+
+	private void logPut(String portfolioId, String filename, Entry entry) throws IOException {
+		appendIndexRecord("P\t" + portfolioId + "\t" + filename + "\t" + entry.segment() + "\t" + entry.offset()
+				+ "\t" + entry.length() + "\t" + entry.lastModifiedMillis());
+	}
+
+	private void logRemove(String portfolioId, String filename) throws IOException {
+		appendIndexRecord("D\t" + portfolioId + "\t" + filename);
+	}
+
+	private void appendIndexRecord(String record) throws IOException {
+		long end = indexChannel.size();
+		try {
+			indexWriter.write(record);
+			indexWriter.write('\n');
+			indexWriter.flush();
+			indexChannel.force(false);
+		} catch (IOException e) {
+			// Drops the part of the record that made it out, and whatever is still buffered,
+			// so the next record starts on a line of its own.
+			indexChannel.truncate(end);
+			indexWriter = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(indexChannel), StandardCharsets.UTF_8));
+			throw e;
+		}
+	}
+
+	/**
+	 * Cuts the index log back to its last complete line. Otherwise the next record would be
+	 * appended to the fragment a crash left behind and be dropped on replay together with it.
+	 */
+	private void truncateTornRecord() throws IOException {
+		Path indexFile = directory.resolve(INDEX_FILE);
+		if (!Files.exists(indexFile)) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			long complete = 0;
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			// Records are short, so the last newline is almost always in the last block.
+			for (long end = size; end > 0 && complete == 0; ) {
+				long start = Math.max(0, end - buffer.capacity());
+				buffer.clear().limit((int) (end - start));
+				while (buffer.hasRemaining()) {
+					channel.read(buffer, start + buffer.position());
+				}
+				for (int i = buffer.limit() - 1; i >= 0; i--) {
+					if (buffer.get(i) == '\n') {
+						complete = start + i + 1;
+						break;
+					}
+				}
+				end = start;
+			}
+			if (complete < size) {
+				channel.truncate(complete);
+				channel.force(true);
+				logger.warn("Cut a torn record of {} bytes off the end of {}", size - complete, indexFile);
+			}
+		}
+	}
+
+	private void replayIndex() throws IOException {
+		Path indexFile = directory.resolve(INDEX_FILE);
+		if (!Files.exists(indexFile)) {
+			return;
+		}
+		int skipped = 0;
+		try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t");
+				try {
+					if (fields[0].equals("P") && fields.length == 7) {
+						put(fields[1], fields[2], new Entry(Integer.parseInt(fields[3]), Long.parseLong(fields[4]),
+								Long.parseLong(fields[5]), Long.parseLong(fields[6])));
+					} else if (fields[0].equals("D") && fields.length == 3) {
+						applyRemove(fields[1], fields[2]);
+					} else {
+						skipped++;
+					}
+				} catch (NumberFormatException e) {
+					skipped++;
+				}
+			}
+		}
+		if (skipped > 0) {
+			// Normally a record cut short by a crash.
+			logger.warn("Skipped {} malformed records in {}", skipped, indexFile);
+		}
+	}
+
+	/**
+	 * Sizes up the segment files, drops the ones nothing points to any more and opens the
+	 * newest one for appending.
+	 */
+	private void loadSegments() throws IOException {
+		Map<Integer, Long> liveBytes = new HashMap<>();
+		index.values().forEach(files -> files.values().forEach(entry ->
+				liveBytes.merge(entry.segment(), entry.length(), Long::sum)));
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				int segment = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+				Usage usage = new Usage();
+				usage.totalBytes = Files.size(file);
+				usage.liveBytes = liveBytes.getOrDefault(segment, 0L);
+				segments.put(segment, usage);
+			}
+		}
+
+		int newest = segments.isEmpty() ? 0 : segments.lastKey();
+		Iterator<Map.Entry<Integer, Usage>> unused = segments.entrySet().iterator();
+		while (unused.hasNext()) {
+			Map.Entry<Integer, Usage> segment = unused.next();
+			if (segment.getKey() != newest && segment.getValue().liveBytes == 0) {
+				Files.deleteIfExists(segmentPath(segment.getKey()));
+				unused.remove();
+			}
+		}
+		openSegment(newest);
+	}
+
+	private void openIndexLog() throws IOException {
+		indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		indexWriter = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(indexChannel), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Replaces the index log with one record per live file, dropping tombstones and
+	 * superseded records.
+	 */
+	private void rewriteIndexLog() throws IOException {
+		Path indexFile = directory.resolve(INDEX_FILE);
+		Path temp = Files.createTempFile(directory, INDEX_FILE + ".", ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			for (Map.Entry<String, Map<String, Entry>> portfolio : index.entrySet()) {
+				for (Map.Entry<String, Entry> file : portfolio.getValue().entrySet()) {
+					Entry entry = file.getValue();
+					byte[] record = ("P\t" + portfolio.getKey() + "\t" + file.getKey() + "\t" + entry.segment() + "\t"
+							+ entry.offset() + "\t" + entry.length() + "\t" + entry.lastModifiedMillis() + "\n")
+							.getBytes(StandardCharsets.UTF_8);
+					if (buffer.remaining() < record.length) {
+						buffer.flip();
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+						buffer.clear();
+					}
+					buffer.put(record);
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		indexWriter.close();
+		Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		openIndexLog();
+	}
+
+	private void deleteRetiredSegments() {
+		long cutoff = System.currentTimeMillis() - RETIRED_SEGMENT_GRACE.toMillis();
+		List<Path> expired = new ArrayList<>();
+		lock.lock();
+		try {
+			retiredSegments.entrySet().removeIf(retired -> {
+				if (retired.getValue() <= cutoff) {
+					expired.add(retired.getKey());
+					return true;
+				}
+				return false;
+			});
+		} finally {
+			lock.unlock();
+		}
+		for (Path segment : expired) {
+			try {
+				Files.deleteIfExists(segment);
+			} catch (IOException e) {
+				logger.warn("Could not delete retired segment {}: {}", segment, e.getMessage());
+			}
+		}
+	}
+
+	private Path segmentPath(int segment) {
+		return directory.resolve(String.format("%08d%s", segment, SEGMENT_SUFFIX));
+	}
+}
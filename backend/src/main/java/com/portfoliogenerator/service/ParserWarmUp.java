@@ -0,0 +1,119 @@
+package com.portfoliogenerator.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes the one-off cost of the document parsers off the first upload. The first PDF and
+ * DOCX a JVM parses pay for loading and linking a few thousand PDFBox and POI classes,
+ * POI's XMLBeans schema types and PDFBox's font mapping, which scans the system fonts for
+ * substitutes of non-embedded fonts; that is seconds on a cold container.
+ * <p>
+ * The warm-up writes a one-line PDF and DOCX to temporary files and runs them through
+ * {@link ResumeTextExtractor}, so exactly the classes and caches of a real upload are
+ * loaded. In {@code background} mode (the default) this runs on a daemon thread once the
+ * application is ready, so it does not delay startup; {@code startup} runs it before the
+ * context finishes refreshing, which is what a class data sharing training run needs to
+ * record the parser classes; {@code off} leaves it to the first upload.
+ */
+@Component
+public class ParserWarmUp implements SmartInitializingSingleton {
+	private static final Logger logger = LoggerFactory.getLogger(ParserWarmUp.class);
+	private static final String SAMPLE_TEXT = "Jane Doe - Software Engineer";
+
+	public enum Mode {
+		BACKGROUND, STARTUP, OFF
+	}
+
+	private final ResumeTextExtractor extractor;
+	private final Mode mode;
+
+	public ParserWarmUp(ResumeTextExtractor extractor, @Value("${app.parser.warm-up:background}") Mode mode) {
+		this.extractor = extractor;
+		this.mode = mode;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		if (mode == Mode.STARTUP) {
+			warmUp();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (mode == Mode.BACKGROUND) {
+			Thread.ofPlatform().name("parser-warm-up").daemon().priority(Thread.MIN_PRIORITY).start(this::warmUp);
+		}
+	}
+
+	private void warmUp() {
+		long started = System.nanoTime();
+		Path directory = null;
+		try {
+			directory = Files.createTempDirectory("parser-warm-up-");
+			extractor.extractPdf(writePdf(directory.resolve("warm-up.pdf")));
+			extractor.extractDocx(writeDocx(directory.resolve("warm-up.docx")));
+			logger.info("Warmed up the resume parsers in {} ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		} catch (IOException | RuntimeException e) {
+			// Only costs the first upload its head start.
+			logger.warn("Could not warm up the resume parsers: {}", e.getMessage());
+		} finally {
+			if (directory != null) {
+				deleteQuietly(directory.resolve("warm-up.pdf"));
+				deleteQuietly(directory.resolve("warm-up.docx"));
+				deleteQuietly(directory);
+			}
+		}
+	}
+
+	private static Path writePdf(Path file) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			PDPage page = new PDPage();
+			document.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+				// A standard 14 font is not embedded, so parsing it goes through the font mapper.
+				content.beginText();
+				content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+				content.newLineAtOffset(72, 720);
+				content.showText(SAMPLE_TEXT);
+				content.endText();
+			}
+			document.save(file.toFile());
+		}
+		return file;
+	}
+
+	private static Path writeDocx(Path file) throws IOException {
+		try (XWPFDocument document = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+			document.createParagraph().createRun().setText(SAMPLE_TEXT);
+			document.write(out);
+		}
+		return file;
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			logger.debug("Could not delete {}: {}", path, e.getMessage());
+		}
+	}
+}
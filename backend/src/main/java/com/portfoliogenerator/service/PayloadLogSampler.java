@@ -0,0 +1,35 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which requests get their resume text, prompt and model output logged. Dumping
+ * every payload costs more than the rest of the logging combined, so only a sample of
+ * requests is logged, and then only a preview of each payload.
+ */
+@Component
+public class PayloadLogSampler {
+	private final double sampleRate;
+	private final int previewChars;
+
+	public PayloadLogSampler(
+			@Value("${app.logging.payload-sample-rate:0.01}") double sampleRate,
+			@Value("${app.logging.payload-preview-chars:500}") int previewChars) {
+		this.sampleRate = sampleRate;
+		this.previewChars = previewChars;
+	}
+
+	public boolean sample() {
+		return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	public String preview(String payload) {
+		if (payload.length() <= previewChars) {
+			return payload;
+		}
+		return payload.substring(0, previewChars) + "...";
+	}
+}
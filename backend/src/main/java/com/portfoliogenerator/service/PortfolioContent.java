@@ -0,0 +1,23 @@
+package com.portfoliogenerator.service;
+
+/**
+ * Bytes of a portfolio page in one content encoding together with the validators used for
+ * conditional requests. An {@link #absent} entry records that the portfolio has no variant
+ * in that encoding, so the store is not asked again on every view.
+ */
+public record PortfolioContent(byte[] body, String etag, long lastModifiedMillis, ContentEncoding encoding) {
+	// Rough heap cost of an absent entry, so they still count against the cache budget.
+	private static final int ABSENT_SIZE = 64;
+
+	public static PortfolioContent absent(ContentEncoding encoding) {
+		return new PortfolioContent(null, null, 0, encoding);
+	}
+
+	public boolean isAbsent() {
+		return body == null;
+	}
+
+	public int size() {
+		return body == null ? ABSENT_SIZE : body.length;
+	}
+}
@@ -0,0 +1,168 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Turns allocated sequence numbers into public portfolio IDs and checks the shape of IDs
+ * on the way in.
+ * <p>
+ * An ID is {@code length - 1} base36 characters followed by one check character. The
+ * payload is a keyed permutation of the sequence number over the whole payload range: a
+ * balanced Feistel network on the smallest even bit width that covers the range,
+ * cycle-walked back into it. Being a permutation it can never map two sequence numbers
+ * to the same ID, and consecutive numbers come out unrelated. It hides allocation order;
+ * it is not meant to be cryptographically strong. The check character lets the filters
+ * tell portfolio IDs from other top-level paths without touching the disk.
+ * <p>
+ * The secret must never change once IDs have been issued, or new IDs could repeat old
+ * ones. It has no default: anyone who knows it can invert the permutation and walk IDs in
+ * allocation order, so startup fails unless a long enough one is configured.
+ */
+@Component
+public class PortfolioIdCodec {
+	public static final int MIN_LENGTH = 6;
+	// 11 payload characters need 57 bits; 12 would need 63, which the Feistel halves cannot hold.
+	public static final int MAX_LENGTH = 12;
+	public static final int LEGACY_LENGTH = 5;
+	public static final int MIN_SECRET_LENGTH = 16;
+	// The default of earlier versions, which is public.
+	private static final String PUBLISHED_SECRET = "portfolio-generator";
+
+	private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz";
+	private static final int RADIX = ALPHABET.length();
+	private static final int ROUNDS = 4;
+
+	private final int length;
+	private final long domainSize;
+	private final int halfBits;
+	private final long halfMask;
+	private final long[] roundKeys = new long[ROUNDS];
+
+	public PortfolioIdCodec(
+			@Value("${app.portfolio.id.length:8}") int length,
+			@Value("${app.portfolio.id.secret}") String secret) {
+		if (length < MIN_LENGTH || length > MAX_LENGTH) {
+			throw new IllegalArgumentException("app.portfolio.id.length must be between " + MIN_LENGTH + " and " + MAX_LENGTH + ": " + length);
+		}
+		if (secret == null || secret.isBlank() || secret.length() < MIN_SECRET_LENGTH || secret.equals(PUBLISHED_SECRET)) {
+			throw new IllegalArgumentException("app.portfolio.id.secret (PORTFOLIO_ID_SECRET) must be a private value of at least "
+					+ MIN_SECRET_LENGTH + " characters");
+		}
+		this.length = length;
+
+		long domain = 1;
+		for (int i = 1; i < length; i++) {
+			domain *= RADIX;
+		}
+		this.domainSize = domain;
+
+		int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+		this.halfBits = (bits + 1) / 2;
+		this.halfMask = (1L << halfBits) - 1;
+
+		ByteBuffer keyMaterial = ByteBuffer.wrap(sha256(secret));
+		for (int i = 0; i < ROUNDS; i++) {
+			roundKeys[i] = keyMaterial.getLong();
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Number of distinct IDs this codec can produce.
+	 */
+	public long getCapacity() {
+		return domainSize;
+	}
+
+	public String encode(long sequence) {
+		if (sequence < 0 || sequence >= domainSize) {
+			throw new IllegalArgumentException("Sequence " + sequence + " is outside the ID space of " + domainSize);
+		}
+		long value = sequence;
+		do {
+			value = permute(value);
+		} while (value >= domainSize);
+
+		char[] id = new char[length];
+		long remaining = value;
+		for (int i = length - 2; i >= 0; i--) {
+			id[i] = ALPHABET.charAt((int) (remaining % RADIX));
+			remaining /= RADIX;
+		}
+		id[length - 1] = checkCharacter(value);
+		return new String(id);
+	}
+
+	/**
+	 * Whether {@code id} is an ID this codec could have issued.
+	 */
+	public boolean isWellFormed(String id) {
+		if (id.length() != length) {
+			return false;
+		}
+		long value = 0;
+		for (int i = 0; i < length - 1; i++) {
+			int digit = ALPHABET.indexOf(id.charAt(i));
+			if (digit < 0) {
+				return false;
+			}
+			value = value * RADIX + digit;
+		}
+		return id.charAt(length - 1) == checkCharacter(value);
+	}
+
+	/**
+	 * Whether {@code id} looks like an ID from before configurable IDs (five letters).
+	 */
+	public static boolean isLegacyId(String id) {
+		if (id.length() != LEGACY_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < LEGACY_LENGTH; i++) {
+			char c = id.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long permute(long value) {
+		long left = value >>> halfBits;
+		long right = value & halfMask;
+		for (long roundKey : roundKeys) {
+			long next = left ^ (mix(right ^ roundKey) & halfMask);
+			left = right;
+			right = next;
+		}
+		return (left << halfBits) | right;
+	}
+
+	private char checkCharacter(long value) {
+		return ALPHABET.charAt((int) Long.remainderUnsigned(mix(value), RADIX));
+	}
+
+	// SplitMix64 finalizer.
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static byte[] sha256(String secret) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
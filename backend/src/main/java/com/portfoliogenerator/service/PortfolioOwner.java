@@ -0,0 +1,9 @@
+package com.portfoliogenerator.service;
+
+/**
+ * Stored next to every page as {@code owner.json}: the tenant the portfolio was generated
+ * for, whatever the generation mode. Only that tenant may regenerate or re-theme it.
+ */
+public record PortfolioOwner(String tenant) {
+	public static final String FILENAME = "owner.json";
+}
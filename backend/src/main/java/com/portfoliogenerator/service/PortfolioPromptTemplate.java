@@ -0,0 +1,46 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The portfolio generation prompt, loaded once and pre-split around the resume
+ * placeholder so each request only concatenates three strings into a presized buffer
+ * instead of re-parsing a format string.
+ */
+@Component
+public class PortfolioPromptTemplate {
+	private static final String PLACEHOLDER = "{{resumeText}}";
+
+	private final String prefix;
+	private final String suffix;
+
+	public PortfolioPromptTemplate(@Value("${app.prompt.template:classpath:prompts/portfolio-prompt.txt}") Resource template) {
+		String text;
+		try {
+			text = template.getContentAsString(StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load prompt template " + template, e);
+		}
+
+		int placeholder = text.indexOf(PLACEHOLDER);
+		if (placeholder < 0 || text.indexOf(PLACEHOLDER, placeholder + 1) >= 0) {
+			throw new IllegalStateException("Prompt template must contain " + PLACEHOLDER + " exactly once: " + template);
+		}
+		this.prefix = text.substring(0, placeholder);
+		this.suffix = text.substring(placeholder + PLACEHOLDER.length());
+	}
+
+	public String render(String resumeText) {
+		return new StringBuilder(prefix.length() + resumeText.length() + suffix.length())
+				.append(prefix)
+				.append(resumeText)
+				.append(suffix)
+				.toString();
+	}
+}
@@ -0,0 +1,436 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.RetentionStats;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deletes stored portfolios that have not been used for {@code ttl}, and the least
+ * recently used ones while the store holds more than {@code max-total-size}, so the
+ * storage path does not grow without bound. With neither set, nothing is tracked.
+ * <p>
+ * Serving a page never writes anything: a view only puts the portfolio into a map of
+ * pending accesses, at most once per {@code access-resolution}, however often it is
+ * viewed. Each retention run folds the pending accesses into the index, and the last uses
+ * are snapshotted to the storage directory like the generation cache. Sizes come from the
+ * {@link PortfolioStore}: after startup a background walk measures every stored portfolio
+ * at {@code scan-rate} portfolios per second, and written portfolios are measured again
+ * on the next run.
+ * <p>
+ * A run deletes at most {@code batch-size} portfolios, coldest first. The quota is only
+ * enforced once the walk has measured everything, so it never picks a portfolio just
+ * because the colder ones were not found yet. Portfolios used or written within
+ * {@code min-idle} are never deleted, which keeps new generations safe; regenerations,
+ * which may run longer, mark their portfolio in use for as long as they run. Generation
+ * cache entries of deleted portfolios fail their existence check and are dropped on their
+ * next lookup.
+ * <p>
+ * Last uses are only known for views served by this instance, so retention cannot be
+ * enabled with a store shared between instances: each instance would delete portfolios
+ * that are hot on the others.
+ */
+@Service
+public class PortfolioRetentionService {
+	private static final Logger logger = LoggerFactory.getLogger(PortfolioRetentionService.class);
+
+	private static final String SNAPSHOT_FILE = "portfolio-access.tsv";
+	private static final long UNMEASURED = -1;
+	// Portfolios the startup walk measures between two pauses.
+	private static final int SCAN_CHUNK = 100;
+	// In place of a use count while evict deletes the portfolio.
+	private static final int DELETING = -1;
+
+	private final PortfolioStore portfolioStore;
+	private final PortfolioViewCache viewCache;
+	private final long ttlMillis;
+	private final long maxTotalBytes;
+	private final long minIdleMillis;
+	private final long accessResolutionMillis;
+	private final int batchSize;
+	private final int scanRate;
+	private final Path snapshotPath;
+	private final boolean enabled;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	// Accesses since the last run, the latest one per portfolio.
+	private final ConcurrentHashMap<String, Long> pendingAccesses = new ConcurrentHashMap<>();
+	// Portfolios written since they were last measured.
+	private final Set<String> pendingMeasurements = ConcurrentHashMap.newKeySet();
+	// Portfolios being regenerated, with the number of regenerations.
+	private final ConcurrentHashMap<String, Integer> inUse = new ConcurrentHashMap<>();
+	private final AtomicLong storedBytes = new AtomicLong();
+	private final AtomicBoolean scanning = new AtomicBoolean();
+	private volatile boolean scanComplete;
+	private volatile boolean dirty;
+
+	private final AtomicLong expiredEvictions = new AtomicLong();
+	private final AtomicLong quotaEvictions = new AtomicLong();
+	private final AtomicLong evictedBytes = new AtomicLong();
+	private final AtomicLong failedEvictions = new AtomicLong();
+
+	public PortfolioRetentionService(
+			PortfolioStore portfolioStore,
+			PortfolioViewCache viewCache,
+			@Value("${app.portfolio.storage-path}") String storagePath,
+			@Value("${app.portfolio.store:local}") String storeType,
+			@Value("${app.portfolio.retention.ttl:PT0S}") Duration ttl,
+			@Value("${app.portfolio.retention.max-total-size:0}") DataSize maxTotalSize,
+			@Value("${app.portfolio.retention.min-idle:PT1H}") Duration minIdle,
+			@Value("${app.portfolio.retention.access-resolution:PT1M}") Duration accessResolution,
+			@Value("${app.portfolio.retention.batch-size:50}") int batchSize,
+			@Value("${app.portfolio.retention.scan-rate:1000}") int scanRate) {
+		this.portfolioStore = portfolioStore;
+		this.viewCache = viewCache;
+		this.ttlMillis = ttl.toMillis();
+		this.maxTotalBytes = maxTotalSize.toBytes();
+		this.minIdleMillis = minIdle.toMillis();
+		this.accessResolutionMillis = accessResolution.toMillis();
+		this.batchSize = Math.max(batchSize, 1);
+		this.scanRate = Math.max(scanRate, 1);
+		this.snapshotPath = Paths.get(storagePath).toAbsolutePath().normalize().resolve(SNAPSHOT_FILE);
+		this.enabled = ttlMillis > 0 || maxTotalBytes > 0;
+		if (enabled && "gcs".equals(storeType)) {
+			throw new IllegalArgumentException("app.portfolio.retention.ttl and max-total-size cannot be used with app.portfolio.store=gcs; "
+					+ "use a lifecycle rule on the bucket instead");
+		}
+		if (enabled) {
+			loadSnapshot();
+		}
+	}
+
+	/**
+	 * Records that a file of {@code portfolioId} was read. Called on every view, so it
+	 * only touches memory.
+	 */
+	public void recordAccess(String portfolioId) {
+		if (!enabled) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Entry entry = entries.get(portfolioId);
+		if (entry != null && now - entry.lastUsedMillis < accessResolutionMillis) {
+			return;
+		}
+		pendingAccesses.put(portfolioId, now);
+	}
+
+	/**
+	 * Records that a file of {@code portfolioId} was committed, so it is measured again.
+	 */
+	public void recordWrite(String portfolioId) {
+		if (!enabled) {
+			return;
+		}
+		pendingAccesses.put(portfolioId, System.currentTimeMillis());
+		pendingMeasurements.add(portfolioId);
+	}
+
+	/**
+	 * Keeps {@code portfolioId} from being deleted until {@link #release}. Returns
+	 * {@code false} if it is being deleted right now.
+	 */
+	public boolean markInUse(String portfolioId) {
+		if (!enabled) {
+			return true;
+		}
+		return inUse.merge(portfolioId, 1, (count, one) -> count == DELETING ? DELETING : count + one) != DELETING;
+	}
+
+	public void release(String portfolioId) {
+		inUse.computeIfPresent(portfolioId, (id, count) -> {
+			if (count == DELETING) {
+				// Only a failed markInUse gets here.
+				return count;
+			}
+			return count > 1 ? count - 1 : null;
+		});
+	}
+
+	@Scheduled(fixedDelayString = "${app.portfolio.retention.interval:PT10S}")
+	public void enforce() {
+		if (!enabled) {
+			return;
+		}
+		if (!scanComplete && scanning.compareAndSet(false, true)) {
+			Thread.ofPlatform().name("portfolio-retention-scan").daemon().priority(Thread.MIN_PRIORITY).start(this::scan);
+		}
+		applyPendingAccesses();
+		measurePendingWrites();
+		evictColdest();
+	}
+
+	private void applyPendingAccesses() {
+		for (Map.Entry<String, Long> access : pendingAccesses.entrySet()) {
+			String portfolioId = access.getKey();
+			long accessedAt = access.getValue();
+			// A newer access stays pending for the next run.
+			pendingAccesses.remove(portfolioId, accessedAt);
+			Entry entry = entries.computeIfAbsent(portfolioId, id -> new Entry(0));
+			entry.touch(accessedAt);
+			if (entry.bytes == UNMEASURED) {
+				pendingMeasurements.add(portfolioId);
+			}
+			dirty = true;
+		}
+	}
+
+	private void measurePendingWrites() {
+		// Writes are rare next to the walk, so the same budget per run is plenty.
+		int budget = scanRate;
+		Iterator<String> pending = pendingMeasurements.iterator();
+		while (pending.hasNext() && budget-- > 0) {
+			String portfolioId = pending.next();
+			pending.remove();
+			measure(portfolioId);
+		}
+	}
+
+	private void evictColdest() {
+		long now = System.currentTimeMillis();
+		long expiredBefore = ttlMillis > 0 ? now - ttlMillis : Long.MIN_VALUE;
+		long idleBefore = now - minIdleMillis;
+		boolean overQuota = isOverQuota();
+		if (ttlMillis == 0 && !overQuota) {
+			return;
+		}
+
+		// The batch-size coldest portfolios that may go, kept with the warmest on top.
+		PriorityQueue<Candidate> coldest = new PriorityQueue<>(batchSize + 1, Comparator.comparingLong(Candidate::lastUsedMillis).reversed());
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			long lastUsed = entry.getValue().lastUsedMillis;
+			if (entry.getValue().bytes == UNMEASURED || lastUsed >= idleBefore || !overQuota && lastUsed >= expiredBefore) {
+				continue;
+			}
+			if (coldest.size() < batchSize) {
+				coldest.add(new Candidate(entry.getKey(), lastUsed));
+			} else if (lastUsed < coldest.peek().lastUsedMillis()) {
+				coldest.poll();
+				coldest.add(new Candidate(entry.getKey(), lastUsed));
+			}
+		}
+		List<Candidate> batch = new ArrayList<>(coldest);
+		batch.sort(Comparator.comparingLong(Candidate::lastUsedMillis));
+
+		int evicted = 0;
+		long bytes = 0;
+		for (Candidate candidate : batch) {
+			boolean expired = candidate.lastUsedMillis() < expiredBefore;
+			if (!expired && !isOverQuota()) {
+				break;
+			}
+			long freed = evict(candidate.portfolioId(), expired);
+			if (freed >= 0) {
+				evicted++;
+				bytes += freed;
+			}
+		}
+		if (evicted > 0) {
+			logger.info("Deleted {} unused portfolios ({} bytes); {} bytes stored in {} portfolios.", evicted, bytes, storedBytes.get(), entries.size());
+		}
+	}
+
+	private boolean isOverQuota() {
+		return maxTotalBytes > 0 && scanComplete && storedBytes.get() > maxTotalBytes;
+	}
+
+	/**
+	 * Deletes {@code portfolioId} unless it was used or written since it was picked.
+	 * Returns the bytes freed, or -1 if it was kept.
+	 */
+	private long evict(String portfolioId, boolean expired) {
+		Entry entry = entries.get(portfolioId);
+		if (entry == null || pendingAccesses.containsKey(portfolioId) || pendingMeasurements.contains(portfolioId)) {
+			return -1;
+		}
+		if (inUse.putIfAbsent(portfolioId, DELETING) != null) {
+			return -1;
+		}
+		try {
+			portfolioStore.delete(portfolioId);
+		} catch (IOException e) {
+			failedEvictions.incrementAndGet();
+			logger.warn("Could not delete unused portfolio {}: {}", portfolioId, e.getMessage());
+			return -1;
+		} finally {
+			inUse.remove(portfolioId, DELETING);
+		}
+		viewCache.invalidate(portfolioId);
+		long freed = remove(portfolioId, entry);
+		(expired ? expiredEvictions : quotaEvictions).incrementAndGet();
+		evictedBytes.addAndGet(freed);
+		logger.debug("Deleted portfolio {} ({}), last used {}.", portfolioId, expired ? "expired" : "over quota", entry.lastUsedMillis);
+		return freed;
+	}
+
+	/**
+	 * Measures every stored portfolio once, paced to {@code scan-rate} per second, and
+	 * drops snapshot entries of portfolios that no longer exist.
+	 */
+	private void scan() {
+		long started = System.nanoTime();
+		long[] visited = {0};
+		try {
+			portfolioStore.forEachPortfolio(portfolioId -> {
+				Entry entry = entries.computeIfAbsent(portfolioId, id -> new Entry(0));
+				// Portfolios split over several layouts are listed once per layout.
+				if (entry.scanned) {
+					return;
+				}
+				entry.scanned = true;
+				measure(portfolioId);
+				if (++visited[0] % SCAN_CHUNK == 0) {
+					LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(SCAN_CHUNK) / scanRate);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Could not scan the portfolio store, will retry: {}", e.getMessage());
+			scanning.set(false);
+			return;
+		}
+		entries.entrySet().removeIf(entry -> !entry.getValue().scanned && entry.getValue().bytes == UNMEASURED
+				&& !pendingMeasurements.contains(entry.getKey()) && !pendingAccesses.containsKey(entry.getKey()));
+		dirty = true;
+		scanComplete = true;
+		logger.info("Measured {} stored portfolios ({} bytes) in {} ms.", entries.size(), storedBytes.get(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	private void measure(String portfolioId) {
+		Optional<PortfolioUsage> usage;
+		try {
+			usage = portfolioStore.usage(portfolioId);
+		} catch (IOException e) {
+			logger.warn("Could not measure portfolio {}: {}", portfolioId, e.getMessage());
+			return;
+		}
+		if (usage.isEmpty()) {
+			Entry entry = entries.get(portfolioId);
+			if (entry != null) {
+				remove(portfolioId, entry);
+				dirty = true;
+			}
+			return;
+		}
+		Entry entry = entries.computeIfAbsent(portfolioId, id -> new Entry(0));
+		entry.touch(usage.get().lastModifiedMillis());
+		synchronized (entry) {
+			storedBytes.addAndGet(usage.get().bytes() - Math.max(entry.bytes, 0));
+			entry.bytes = usage.get().bytes();
+		}
+	}
+
+	private long remove(String portfolioId, Entry entry) {
+		entries.remove(portfolioId, entry);
+		synchronized (entry) {
+			long bytes = Math.max(entry.bytes, 0);
+			storedBytes.addAndGet(-bytes);
+			entry.bytes = UNMEASURED;
+			return bytes;
+		}
+	}
+
+	public RetentionStats getStats() {
+		return new RetentionStats(enabled, scanComplete, entries.size(), storedBytes.get(), maxTotalBytes, pendingAccesses.size(),
+				expiredEvictions.get(), quotaEvictions.get(), evictedBytes.get(), failedEvictions.get());
+	}
+
+	@Scheduled(fixedDelayString = "${app.portfolio.retention.snapshot-interval:PT5M}")
+	public void snapshotIfDirty() {
+		if (dirty) {
+			writeSnapshot();
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		if (enabled) {
+			applyPendingAccesses();
+			snapshotIfDirty();
+		}
+	}
+
+	private void writeSnapshot() {
+		dirty = false;
+		try {
+			Path tempFile = Files.createTempFile(snapshotPath.getParent(), SNAPSHOT_FILE, ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					writer.write(entry.getKey() + "\t" + entry.getValue().lastUsedMillis);
+					writer.newLine();
+				}
+			}
+			Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			dirty = true;
+			logger.warn("Could not write portfolio access snapshot to {}: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	/**
+	 * Restores the last uses; sizes are unknown until the walk measures them.
+	 */
+	private void loadSnapshot() {
+		if (!Files.isReadable(snapshotPath)) {
+			return;
+		}
+		try {
+			for (String line : Files.readAllLines(snapshotPath, StandardCharsets.UTF_8)) {
+				String[] fields = line.split("\t");
+				if (fields.length == 2) {
+					entries.put(fields[0], new Entry(Long.parseLong(fields[1])));
+				}
+			}
+			logger.info("Loaded the last use of {} portfolios from {}.", entries.size(), snapshotPath);
+		} catch (IOException | NumberFormatException e) {
+			entries.clear();
+			logger.warn("Ignoring unreadable portfolio access snapshot {}: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	private static final class Entry {
+		volatile long lastUsedMillis;
+		// Guarded by the entry's monitor together with storedBytes.
+		volatile long bytes = UNMEASURED;
+		volatile boolean scanned;
+
+		Entry(long lastUsedMillis) {
+			this.lastUsedMillis = lastUsedMillis;
+		}
+
+		synchronized void touch(long usedAt) {
+			if (usedAt > lastUsedMillis) {
+				lastUsedMillis = usedAt;
+			}
+		}
+	}
+
+	private record Candidate(String portfolioId, long lastUsedMillis) {
+	}
+}
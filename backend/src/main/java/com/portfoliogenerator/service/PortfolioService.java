@@ -1,133 +1,631 @@
 package com.portfoliogenerator.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.portfoliogenerator.dto.PortfolioResponse;
 import com.portfoliogenerator.exception.FileStorageException;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import com.portfoliogenerator.exception.RegenerationInProgressException;
 import com.portfoliogenerator.exception.ResourceNotFoundException;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import com.portfoliogenerator.exception.StructuredDataMissingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class PortfolioService {
+	private static final Logger logger = LoggerFactory.getLogger(PortfolioService.class);
+	private static final int MAX_ID_ATTEMPTS = 3;
+	// Generation modes in the generation cache key; structured mode adds its theme.
+	private static final String MODE_PAGE = "page";
+	private static final String MODE_SECTIONS = "sections";
 
-	private final Path portfolioStorageLocation;
+	private final PortfolioStore portfolioStore;
 	private final IdGeneratorService idGeneratorService;
 	private final String appBaseUrl;
 	private final GeminiService geminiService;
+	private final GenerationCache generationCache;
+	private final PortfolioViewCache viewCache;
+	private final PortfolioRetentionService retentionService;
+	private final ResumeTextExtractor resumeTextExtractor;
+	private final ResumeTextPreprocessor resumeTextPreprocessor;
+	private final PipelineMetrics pipelineMetrics;
+	private final PayloadLogSampler payloadLogSampler;
+	private final HtmlPostProcessor htmlPostProcessor;
+	private final SectionedPortfolioGenerator sectionedGenerator;
+	private final ObjectMapper objectMapper;
+	private final boolean sectionsEnabled;
+	private final ThemeRenderer themeRenderer;
+	private final boolean structuredEnabled;
+	// Portfolios being regenerated from a re-upload; one regeneration per portfolio at a time.
+	private final Set<String> regenerating = ConcurrentHashMap.newKeySet();
 
-	public PortfolioService(@Value("${app.portfolio.storage-path}") String storagePath, @Value("${app.portfolio.base-url}") String baseUrl, IdGeneratorService idGeneratorService, GeminiService geminiService){
-		this.portfolioStorageLocation = Paths.get(storagePath).toAbsolutePath().normalize();
+	public PortfolioService(PortfolioStore portfolioStore, @Value("${app.portfolio.base-url}") String baseUrl, IdGeneratorService idGeneratorService, GeminiService geminiService, GenerationCache generationCache, PortfolioViewCache viewCache, PortfolioRetentionService retentionService, ResumeTextExtractor resumeTextExtractor, ResumeTextPreprocessor resumeTextPreprocessor, PipelineMetrics pipelineMetrics, PayloadLogSampler payloadLogSampler, HtmlPostProcessor htmlPostProcessor,
+							SectionedPortfolioGenerator sectionedGenerator, ObjectMapper objectMapper, @Value("${app.generation.sections.enabled:false}") boolean sectionsEnabled,
+							ThemeRenderer themeRenderer, @Value("${app.generation.structured.enabled:false}") boolean structuredEnabled){
+		this.portfolioStore = portfolioStore;
 		this.appBaseUrl = baseUrl;
 		this.idGeneratorService = idGeneratorService;
 		this.geminiService = geminiService;
+		this.generationCache = generationCache;
+		this.viewCache = viewCache;
+		this.retentionService = retentionService;
+		this.resumeTextExtractor = resumeTextExtractor;
+		this.resumeTextPreprocessor = resumeTextPreprocessor;
+		this.pipelineMetrics = pipelineMetrics;
+		this.payloadLogSampler = payloadLogSampler;
+		this.htmlPostProcessor = htmlPostProcessor;
+		this.sectionedGenerator = sectionedGenerator;
+		this.objectMapper = objectMapper;
+		this.sectionsEnabled = sectionsEnabled;
+		this.themeRenderer = themeRenderer;
+		this.structuredEnabled = structuredEnabled;
+	}
 
-		try{
-			Files.createDirectories(this.portfolioStorageLocation);
-		}catch (Exception e){
-			throw new FileStorageException("Could not create the directory where the uploaded files will be stored.", e);
+	public PortfolioResponse processResumeUpload(MultipartFile file) {
+		String originalFilename = validateResumeFilename(file.getOriginalFilename());
+		Path stagedResume = stageUpload(file);
+
+		try {
+			return processResume(originalFilename, stagedResume);
+		} finally {
+			deleteStagedUpload(stagedResume);
 		}
 	}
 
-	public PortfolioResponse processResumeUpload(MultipartFile file) {
-		String originalFilename = StringUtils.cleanPath(Objects.requireNonNull(file.getOriginalFilename()));
+	/**
+	 * Regenerates an existing portfolio from a new version of its resume. The portfolio
+	 * keeps its ID and URL; with section generation only the sections whose text changed
+	 * are sent to Gemini again.
+	 */
+	public PortfolioResponse processResumeReupload(String portfolioId, MultipartFile file) {
+		String originalFilename = validateResumeFilename(file.getOriginalFilename());
+		Path stagedResume = stageUpload(file);
+
+		try {
+			return regeneratePortfolio(portfolioId, originalFilename, stagedResume);
+		} finally {
+			deleteStagedUpload(stagedResume);
+		}
+	}
+
+	public String validateResumeFilename(String filename) {
+		String originalFilename = StringUtils.cleanPath(Objects.requireNonNull(filename));
 
 		if (originalFilename.contains("..")) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_INVALID_FILE);
 			throw new FileStorageException("Sorry! Filename contains invalid path sequence " + originalFilename);
 		}
 
-		boolean isPdf = originalFilename.endsWith(".pdf");
-		boolean isDocx = originalFilename.endsWith(".docx");
-
-		if (!isPdf && !isDocx) {
+		if (!originalFilename.endsWith(".pdf") && !originalFilename.endsWith(".docx")) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_INVALID_FILE);
 			throw new FileStorageException("Invalid file type. Only PDF and DOCX are allowed. Received: " + originalFilename);
 		}
 
-		String portfolioId;
-		Path portfolioDirectory;
+		return originalFilename;
+	}
 
-		do{
-			portfolioId = idGeneratorService.generateUniqueId();
-			portfolioDirectory = this.portfolioStorageLocation.resolve(portfolioId);
-		}while (Files.exists(portfolioDirectory));
+	/**
+	 * Moves the multipart upload out of the servlet container's temp area so that it
+	 * outlives the request, e.g. when generation is handed off to a background worker.
+	 */
+	public Path stageUpload(MultipartFile file) {
+		Path stagedResume = null;
+		try {
+			stagedResume = Files.createTempFile("resume-upload-", ".tmp");
+			file.transferTo(stagedResume);
+			return stagedResume;
+		} catch (IOException e) {
+			deleteStagedUpload(stagedResume);
+			throw new FileStorageException("Could not stage uploaded resume file.", e);
+		}
+	}
 
+	public void deleteStagedUpload(Path stagedResume) {
+		if (stagedResume == null) {
+			return;
+		}
 		try {
-				Files.createDirectories(portfolioDirectory);
-			}catch (IOException e){
-				throw new FileStorageException("Could not create directory for portfolio ID: " + portfolioId, e);
-			}
+			Files.deleteIfExists(stagedResume);
+		} catch (IOException e) {
+			logger.warn("Failed to delete staged upload {}: {}", stagedResume, e.getMessage());
+		}
+	}
+
+	public PortfolioResponse processResume(String originalFilename, Path resumeFile) {
+		return processResume(originalFilename, resumeFile, "sync");
+	}
+
+	public PortfolioResponse processResume(String originalFilename, Path resumeFile, String mode) {
+		return pipelineMetrics.generation(mode, () -> {
+			String resumeText = prepareResumeText(originalFilename, resumeFile);
+
+			String cacheKey = generationCache.keyFor(currentTenantName(), generationMode(), resumeText);
+			String portfolioId = generationCache.getOrGenerate(cacheKey, this::portfolioExists, () -> generatePortfolio(resumeText));
+
+			return toResponse(portfolioId);
+		});
+	}
+
+	/**
+	 * Like {@link #processResume} but streams the page to {@code listener} while Gemini
+	 * produces it. The page is written to a partial file as it arrives and only moved into
+	 * place once the whole document has been received and validated.
+	 */
+	public PortfolioResponse processResumeStreaming(String originalFilename, Path resumeFile, GenerationStreamListener listener) {
+		return pipelineMetrics.generation("stream", () -> {
+			String resumeText = prepareResumeText(originalFilename, resumeFile);
+
+			// Streaming always produces a single page, whatever the configured mode.
+			String cacheKey = generationCache.keyFor(currentTenantName(), MODE_PAGE, resumeText);
+			String portfolioId = generationCache.getOrGenerate(cacheKey, this::portfolioExists, () -> generatePortfolioStreaming(resumeText, listener));
+
+			return toResponse(portfolioId);
+		});
+	}
+
+	private String prepareResumeText(String originalFilename, Path resumeFile) {
+		String extractedText = pipelineMetrics.stage(PipelineMetrics.STAGE_PARSE, () -> extractResumeText(originalFilename, resumeFile));
+		return pipelineMetrics.stage(PipelineMetrics.STAGE_PREPROCESS, () -> resumeTextPreprocessor.prepare(originalFilename, extractedText));
+	}
+
+	private String extractResumeText(String originalFilename, Path resumeFile) {
+		boolean isPdf = originalFilename.endsWith(".pdf");
+		boolean isDocx = originalFilename.endsWith(".docx");
 
 		String resumeText;
-		try(InputStream inputStream = file.getInputStream()){
+		try{
 			if (isPdf) {
-				System.out.println("Parsing PDF: " + originalFilename);
-				try (PDDocument document = Loader.loadPDF(inputStream.readAllBytes())) {
-					PDFTextStripper pdfStripper = new PDFTextStripper();
-					resumeText = pdfStripper.getText(document);
-				}
+				resumeText = resumeTextExtractor.extractPdf(resumeFile);
 			} else if (isDocx) {
-				System.out.println("Parsing DOCX: " + originalFilename);
-				try (XWPFDocument document = new XWPFDocument(inputStream);
-					 XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-					resumeText = extractor.getText();
-				}
+				resumeText = resumeTextExtractor.extractDocx(resumeFile);
 			} else {
 				throw new FileStorageException("Unsupported file type for parsing: " + originalFilename);
 			}
+		}catch (FileStorageException e){
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_PARSE);
+			throw e;
 		}catch (Exception e){
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_PARSE);
 			throw new FileStorageException("Failed to parse resume file: " + originalFilename, e);
 		}
 
-		System.out.println("---- Parsed Resume Text for " + portfolioId + " ----");
-		System.out.println(resumeText.substring(0, Math.min(resumeText.length(), 500)) + "...");
-		System.out.println("--------------------------------------");
+		if (payloadLogSampler.sample()) {
+			logger.info("Sampled resume text: file={}, chars={}, preview={}", originalFilename, resumeText.length(), payloadLogSampler.preview(resumeText));
+		}
+
+		return resumeText;
+	}
+
+	private String allocatePortfolioDirectory() {
+		return pipelineMetrics.stage(PipelineMetrics.STAGE_ID_ALLOCATION, this::createPortfolioDirectory);
+	}
+
+	private String createPortfolioDirectory() {
+		// IDs are unique by construction, so a taken ID means two instances share a node ID.
+		for (int attempt = 1; ; attempt++) {
+			String portfolioId = idGeneratorService.generateUniqueId();
+			try {
+				if (portfolioStore.reserve(portfolioId)) {
+					return portfolioId;
+				}
+			} catch (IOException e) {
+				pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+				throw new FileStorageException("Could not create directory for portfolio ID: " + portfolioId, e);
+			}
+			logger.error("Portfolio ID {} was already taken; check that app.portfolio.id.node-id is unique per instance.", portfolioId);
+			if (attempt == MAX_ID_ATTEMPTS) {
+				pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+				throw new FileStorageException("Could not allocate a free portfolio ID.");
+			}
+		}
+	}
+
+	private String generatePortfolio(String resumeText) {
+		String portfolioId = allocatePortfolioDirectory();
+		String filename = portfolioId + ".html";
 
 		String generatedHtmlContent;
+		Map<String, Object> metadata = Map.of();
 
 		try{
-			System.out.println("PortfolioService: Calling GeminiService to generate HTML for ID: " + portfolioId);
-			System.out.println("Resume Text======= \n" + resumeText);
-			generatedHtmlContent = geminiService.genratePortfolioHtml(resumeText);
-		}catch (IOException e){
-			try {
-				Files.deleteIfExists(portfolioDirectory.resolve(portfolioId + ".html"));
-				Files.deleteIfExists(portfolioDirectory);
-			}catch (IOException ex){
-				System.err.println("Failed to cleanup directory " + portfolioDirectory + " after AI error: " + ex.getMessage());
+			logger.debug("Calling GeminiService to generate HTML for ID: {}", portfolioId);
+			if (structuredEnabled) {
+				StoredResume storedResume = new StoredResume(themeRenderer.defaultTheme(), currentTenantName(), geminiService.generateResumeData(resumeText));
+				generatedHtmlContent = render(storedResume);
+				metadata = Map.of(StoredResume.FILENAME, storedResume);
+			} else if (sectionsEnabled) {
+				SectionedPortfolioGenerator.SectionedPage page = sectionedGenerator.generate(resumeText, null);
+				generatedHtmlContent = page.html();
+				metadata = Map.of(SectionManifest.FILENAME, new SectionManifest(page.templateVersion(), currentTenantName(), page.sections()));
+			} else {
+				generatedHtmlContent = geminiService.genratePortfolioHtml(resumeText);
 			}
+		}catch (IOException e){
+			discardPortfolio(portfolioId, null);
 			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		}catch (LlmUnavailableException e){
+			discardPortfolio(portfolioId, null);
+			throw e;
 		}
 
-		Path targetLocation = portfolioDirectory.resolve(portfolioId + ".html");
-
+		String pageHtml;
+		try {
+			pageHtml = postProcess(portfolioId, generatedHtmlContent);
+		} catch (FileStorageException e) {
+			discardPortfolio(portfolioId, null);
+			throw e;
+		}
 		try{
-			Files.writeString(targetLocation, generatedHtmlContent, StandardCharsets.UTF_8);
+			storePage(portfolioId, pageHtml, metadata, false);
 		}catch (Exception ex){
-			try {
-				Files.deleteIfExists(targetLocation);
-				Files.deleteIfExists(portfolioDirectory);
-			} catch (IOException e) {
-				System.err.println("Failed to cleanup directory " + portfolioDirectory + ": " + e.getMessage());
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+			discardPortfolio(portfolioId, null);
+			throw new FileStorageException("Could not store generated HTML file " + filename + ". Please try again!", ex);
+		}
+		viewCache.invalidate(portfolioId);
+
+		return portfolioId;
+	}
+
+	/**
+	 * Regenerates {@code portfolioId} in place. A portfolio generated in structured mode is
+	 * extracted again and rendered with its current theme, and for a section-generated one
+	 * sections whose hash matches the stored manifest are reused; if nothing changed the
+	 * stored page is left as it is. A portfolio without either is regenerated in the
+	 * configured generation mode. A failed regeneration leaves the existing portfolio
+	 * untouched.
+	 */
+	private PortfolioResponse regeneratePortfolio(String portfolioId, String originalFilename, Path resumeFile) {
+		if (!regenerating.add(portfolioId)) {
+			throw new RegenerationInProgressException("Portfolio " + portfolioId + " is already being regenerated.");
+		}
+		try {
+			markInUse(portfolioId);
+			// Validates the ID and makes sure the portfolio exists before any work is done.
+			loadPortfolioFile(portfolioId, portfolioId + ".html");
+			return pipelineMetrics.generation("regenerate", () -> {
+				StoredResume storedResume = loadMetadata(portfolioId, StoredResume.FILENAME, StoredResume.class);
+				SectionManifest previous = storedResume == null ? loadMetadata(portfolioId, SectionManifest.FILENAME, SectionManifest.class) : null;
+				checkOwner(portfolioId, storedResume, previous);
+
+				String resumeText = prepareResumeText(originalFilename, resumeFile);
+				String mode;
+				if (storedResume != null || structuredEnabled && previous == null) {
+					// Keeps the theme chosen for the portfolio unless it has since been removed.
+					String theme = storedResume != null && themeRenderer.hasTheme(storedResume.theme()) ? storedResume.theme() : themeRenderer.defaultTheme();
+					regenerateStructured(portfolioId, resumeText, theme);
+					mode = structuredMode(theme);
+				} else if (previous != null || sectionsEnabled) {
+					regenerateSections(portfolioId, resumeText, previous);
+					mode = MODE_SECTIONS;
+				} else {
+					regenerateSinglePage(portfolioId, resumeText);
+					mode = MODE_PAGE;
+				}
+				generationCache.rebind(generationCache.keyFor(currentTenantName(), mode, resumeText), portfolioId);
+
+				return toResponse(portfolioId);
+			});
+		} finally {
+			retentionService.release(portfolioId);
+			regenerating.remove(portfolioId);
+		}
+	}
+
+	/**
+	 * Keeps retention from deleting {@code portfolioId} while it is regenerated, which can
+	 * take longer than retention's idle threshold. Callers release it when done.
+	 */
+	private void markInUse(String portfolioId) {
+		if (!retentionService.markInUse(portfolioId)) {
+			throw new ResourceNotFoundException("Portfolio " + portfolioId + " is being deleted.");
+		}
+	}
+
+	private void regenerateStructured(String portfolioId, String resumeText, String theme) {
+		ResumeData resume;
+		try {
+			resume = geminiService.generateResumeData(resumeText);
+		} catch (IOException e) {
+			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		}
+		replacePage(portfolioId, new StoredResume(theme, currentTenantName(), resume));
+	}
+
+	private void regenerateSections(String portfolioId, String resumeText, SectionManifest previous) {
+		SectionedPortfolioGenerator.SectionedPage page;
+		try {
+			page = sectionedGenerator.generate(resumeText, previous);
+		} catch (IOException e) {
+			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		}
+		logger.info("Regenerated {} of {} sections of portfolio {}", page.generatedSections(), page.sections().size(), portfolioId);
+
+		if (previous == null || page.generatedSections() > 0 || !previous.sections().equals(page.sections())) {
+			SectionManifest manifest = new SectionManifest(page.templateVersion(), currentTenantName(), page.sections());
+			replacePage(portfolioId, postProcess(portfolioId, page.html()), Map.of(SectionManifest.FILENAME, manifest));
+		}
+	}
+
+	private void regenerateSinglePage(String portfolioId, String resumeText) {
+		String html;
+		try {
+			html = geminiService.genratePortfolioHtml(resumeText);
+		} catch (IOException e) {
+			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		}
+		replacePage(portfolioId, postProcess(portfolioId, html), Map.of());
+	}
+
+	/**
+	 * Renders a structured-mode portfolio with another theme, from its stored resume data and
+	 * without calling Gemini.
+	 */
+	public PortfolioResponse rethemePortfolio(String portfolioId, String theme) {
+		if (!themeRenderer.hasTheme(theme)) {
+			throw new IllegalArgumentException("Unknown theme '" + theme + "'. Available themes: " + String.join(", ", themeRenderer.themes()));
+		}
+		if (!regenerating.add(portfolioId)) {
+			throw new RegenerationInProgressException("Portfolio " + portfolioId + " is already being regenerated.");
+		}
+		try {
+			markInUse(portfolioId);
+			loadPortfolioFile(portfolioId, portfolioId + ".html");
+			return pipelineMetrics.generation("retheme", () -> {
+				StoredResume storedResume = loadMetadata(portfolioId, StoredResume.FILENAME, StoredResume.class);
+				if (storedResume == null) {
+					throw new StructuredDataMissingException("Portfolio " + portfolioId + " was not generated in structured mode and cannot be re-themed.");
+				}
+				checkOwner(portfolioId, storedResume, null);
+				if (!theme.equals(storedResume.theme())) {
+					replacePage(portfolioId, new StoredResume(theme, storedResume.tenant(), storedResume.resume()));
+					// Uploads of the same resume expect the default theme.
+					generationCache.forget(portfolioId);
+				}
+				return toResponse(portfolioId);
+			});
+		} finally {
+			retentionService.release(portfolioId);
+			regenerating.remove(portfolioId);
+		}
+	}
+
+	public Set<String> availableThemes() {
+		return themeRenderer.themes();
+	}
+
+	private String render(StoredResume storedResume) {
+		return pipelineMetrics.stage(PipelineMetrics.STAGE_RENDER, () -> themeRenderer.render(storedResume.theme(), storedResume.resume()));
+	}
+
+	private void replacePage(String portfolioId, StoredResume storedResume) {
+		replacePage(portfolioId, postProcess(portfolioId, render(storedResume)), Map.of(StoredResume.FILENAME, storedResume));
+	}
+
+	private void replacePage(String portfolioId, String pageHtml, Map<String, Object> metadata) {
+		try {
+			storePage(portfolioId, pageHtml, metadata, true);
+		} catch (IOException e) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+			throw new FileStorageException("Could not store regenerated portfolio " + portfolioId + ". Please try again!", e);
+		} finally {
+			// A partly replaced set of variants must not stay cached either.
+			viewCache.invalidate(portfolioId);
+		}
+	}
+
+	private <T> T loadMetadata(String portfolioId, String filename, Class<T> type) {
+		Optional<StoredFile> metadataFile = findPortfolioFile(portfolioId, filename);
+		if (metadataFile.isEmpty()) {
+			return null;
+		}
+		try {
+			return objectMapper.readValue(readFully(metadataFile.get()), type);
+		} catch (IOException e) {
+			throw new FileStorageException("Could not read " + filename + " of portfolio " + portfolioId, e);
+		}
+	}
+
+	/**
+	 * Only the tenant a portfolio was generated for may change it; other tenants are not
+	 * told that the ID exists. Portfolios stored before {@link PortfolioOwner} was recorded
+	 * fall back to the tenant in their structured or section metadata, and without any
+	 * owner no tenant may change them.
+	 */
+	private void checkOwner(String portfolioId, StoredResume storedResume, SectionManifest manifest) {
+		PortfolioOwner owner = loadMetadata(portfolioId, PortfolioOwner.FILENAME, PortfolioOwner.class);
+		if (owner == null && storedResume != null) {
+			owner = new PortfolioOwner(storedResume.tenant());
+		} else if (owner == null && manifest != null) {
+			owner = new PortfolioOwner(manifest.tenant());
+		}
+		if (owner == null || !Objects.equals(owner.tenant(), currentTenantName())) {
+			throw new ResourceNotFoundException("Portfolio page not found: " + portfolioId);
+		}
+	}
+
+	/**
+	 * The kind of page a new upload is generated as, for the generation cache key.
+	 */
+	private String generationMode() {
+		if (structuredEnabled) {
+			return structuredMode(themeRenderer.defaultTheme());
+		}
+		return sectionsEnabled ? MODE_SECTIONS : MODE_PAGE;
+	}
+
+	private static String structuredMode(String theme) {
+		return "structured:" + theme;
+	}
+
+	private static String currentTenantName() {
+		Tenant tenant = TenantContext.get();
+		return tenant == null ? null : tenant.name();
+	}
+
+	private String generatePortfolioStreaming(String resumeText, GenerationStreamListener listener) {
+		String portfolioId = allocatePortfolioDirectory();
+		String filename = portfolioId + ".html";
+
+		Path stagingFile;
+		try {
+			stagingFile = portfolioStore.stagingFile(portfolioId, filename);
+		} catch (IOException e) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+			discardPortfolio(portfolioId, null);
+			throw new FileStorageException("Could not store generated HTML file " + filename + ". Please try again!", e);
+		}
+
+		listener.onStarted(portfolioId);
+
+		try (BufferedWriter writer = Files.newBufferedWriter(stagingFile, StandardCharsets.UTF_8)) {
+			geminiService.streamPortfolioHtml(resumeText, html -> {
+				try {
+					writer.write(html);
+				} catch (IOException e) {
+					pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+					throw new UncheckedIOException(e);
+				}
+				listener.onChunk(html);
+			});
+		} catch (IOException | UncheckedIOException e) {
+			discardPortfolio(portfolioId, stagingFile);
+			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		} catch (LlmUnavailableException e) {
+			discardPortfolio(portfolioId, stagingFile);
+			throw e;
+		}
+
+		// The client has seen the page as Gemini wrote it; what is stored is the post-processed version.
+		String streamedHtml;
+		try {
+			streamedHtml = Files.readString(stagingFile, StandardCharsets.UTF_8);
+			Files.delete(stagingFile);
+		} catch (IOException e) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+			discardPortfolio(portfolioId, stagingFile);
+			throw new FileStorageException("Could not store generated HTML file " + filename + ". Please try again!", e);
+		}
+
+		String pageHtml;
+		try {
+			pageHtml = postProcess(portfolioId, streamedHtml);
+		} catch (FileStorageException e) {
+			discardPortfolio(portfolioId, null);
+			throw e;
+		}
+		try {
+			storePage(portfolioId, pageHtml, Map.of(), false);
+		} catch (IOException e) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_STORAGE);
+			discardPortfolio(portfolioId, null);
+			throw new FileStorageException("Could not store generated HTML file " + filename + ". Please try again!", e);
+		}
+		viewCache.invalidate(portfolioId);
+
+		return portfolioId;
+	}
+
+	private String postProcess(String portfolioId, String cleanedHtml) {
+		try {
+			return pipelineMetrics.stage(PipelineMetrics.STAGE_POSTPROCESS, () -> htmlPostProcessor.process(cleanedHtml));
+		} catch (IOException e) {
+			pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_INVALID_HTML);
+			logger.warn("Rejected generated page for {}: {}", portfolioId, e.getMessage());
+			throw new FileStorageException("Failed to generate portfolio HTML using AI: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Stores the page together with its precompressed variants and its {@code metadata}
+	 * files (the section manifest or the structured resume), written as JSON, and for a new
+	 * page its {@link PortfolioOwner}. The page is
+	 * committed last, so a visible page always has the rest. When {@code replacing} an existing page, every variant it had is rewritten,
+	 * so none of them can be left over from the old page.
+	 */
+	private void storePage(String portfolioId, String pageHtml, Map<String, Object> metadata, boolean replacing) throws IOException {
+		byte[] page = pageHtml.getBytes(StandardCharsets.UTF_8);
+		Set<ContentEncoding> existing = EnumSet.noneOf(ContentEncoding.class);
+		if (replacing) {
+			for (ContentEncoding encoding : ContentEncoding.values()) {
+				if (encoding != ContentEncoding.IDENTITY && portfolioStore.exists(portfolioId, encoding.filename(portfolioId))) {
+					existing.add(encoding);
+				}
 			}
-			throw new FileStorageException("Could not store generated HTML file " + portfolioId + ".html. Please try again!", ex);
 		}
+		Map<ContentEncoding, byte[]> variants = pipelineMetrics.stage(PipelineMetrics.STAGE_PRECOMPRESS, () -> htmlPostProcessor.compress(page, existing));
+		Map<String, byte[]> metadataJson = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> file : metadata.entrySet()) {
+			metadataJson.put(file.getKey(), objectMapper.writeValueAsBytes(file.getValue()));
+		}
+		if (!replacing) {
+			metadataJson.put(PortfolioOwner.FILENAME, objectMapper.writeValueAsBytes(new PortfolioOwner(currentTenantName())));
+		}
+		pipelineMetrics.stage(PipelineMetrics.STAGE_DISK_WRITE, () -> {
+			for (Map.Entry<ContentEncoding, byte[]> variant : variants.entrySet()) {
+				commitFile(portfolioId, variant.getKey().filename(portfolioId), variant.getValue());
+			}
+			for (Map.Entry<String, byte[]> file : metadataJson.entrySet()) {
+				commitFile(portfolioId, file.getKey(), file.getValue());
+			}
+			commitFile(portfolioId, ContentEncoding.IDENTITY.filename(portfolioId), page);
+			return null;
+		});
+	}
 
+	private void commitFile(String portfolioId, String filename, byte[] content) throws IOException {
+		Path stagingFile = portfolioStore.stagingFile(portfolioId, filename);
+		try {
+			Files.write(stagingFile, content);
+			portfolioStore.commit(portfolioId, filename, stagingFile);
+			retentionService.recordWrite(portfolioId);
+		} catch (IOException e) {
+			Files.deleteIfExists(stagingFile);
+			throw e;
+		}
+	}
+
+	private void discardPortfolio(String portfolioId, Path stagingFile) {
+		try {
+			if (stagingFile != null) {
+				Files.deleteIfExists(stagingFile);
+			}
+			portfolioStore.delete(portfolioId);
+		} catch (IOException e) {
+			logger.warn("Failed to clean up portfolio {} after a failed generation: {}", portfolioId, e.getMessage());
+		}
+	}
+
+	private boolean portfolioExists(String portfolioId) {
+		return portfolioStore.exists(portfolioId, portfolioId + ".html");
+	}
+
+	private PortfolioResponse toResponse(String portfolioId) {
 		String portfolioUrl = appBaseUrl + "/" + portfolioId;
 		String downloadUrl = appBaseUrl + "/api/v1/portfolios/" + portfolioId + "/download";
 
@@ -142,24 +640,100 @@ public class PortfolioService {
                 .replace("'", "'");
     }
 
-	public Resource loadPortfolioFile(String portfolioId, String filename) {
-		try{
-			Path portfolioDir = this.portfolioStorageLocation.resolve(portfolioId).normalize();
-			Path filePath = portfolioDir.resolve(filename).normalize();
+	public StoredFile loadPortfolioFile(String portfolioId, String filename) {
+		return findPortfolioFile(portfolioId, filename).orElseThrow(() ->
+				new ResourceNotFoundException("File not found or not readable: " + filename + " in portfolio " + portfolioId));
+	}
 
-			if(!filePath.startsWith(portfolioDir)){
-				throw new FileStorageException("Can not access files outside of portfolio directory.");
+	private Optional<StoredFile> findPortfolioFile(String portfolioId, String filename) {
+		if (filename.contains("/") || filename.contains("\\") || filename.equals("..") || portfolioId.contains("/") || portfolioId.contains("..")) {
+			throw new FileStorageException("Can not access files outside of portfolio directory.");
+		}
+
+		Optional<StoredFile> storedFile;
+		try {
+			storedFile = portfolioStore.locate(portfolioId, filename);
+		} catch (IOException e) {
+			throw new FileStorageException("Could not read portfolio file for " + portfolioId, e);
+		}
+		if (storedFile.isPresent()) {
+			retentionService.recordAccess(portfolioId);
+		}
+		return storedFile;
+	}
+
+	/**
+	 * Returns the stored page in the first of the {@code accepted} encodings it exists in,
+	 * as ordered by {@link ContentEncoding#negotiate}.
+	 */
+	public PortfolioVariant loadPortfolioVariant(String portfolioId, List<ContentEncoding> accepted) {
+		for (ContentEncoding encoding : accepted) {
+			Optional<StoredFile> storedFile = findPortfolioFile(portfolioId, encoding.filename(portfolioId));
+			if (storedFile.isPresent()) {
+				return new PortfolioVariant(encoding, storedFile.get());
 			}
+		}
+		throw new ResourceNotFoundException("Portfolio page not found: " + portfolioId);
+	}
 
-			Resource resource = new UrlResource((filePath.toUri()));
+	/**
+	 * Returns the page for the view endpoint in the first of the {@code accepted} encodings
+	 * it exists in, from memory when it is hot. Returns empty when that variant is too large
+	 * to be buffered; callers should stream it from {@link #loadPortfolioVariant} instead.
+	 */
+	public Optional<PortfolioContent> loadPortfolioContent(String portfolioId, List<ContentEncoding> accepted) {
+		for (ContentEncoding encoding : accepted) {
+			Optional<PortfolioContent> cached = viewCache.get(portfolioId, encoding);
+			if (cached.isPresent()) {
+				if (cached.get().isAbsent()) {
+					continue;
+				}
+				retentionService.recordAccess(portfolioId);
+				return cached;
+			}
 
-			if(resource.exists() && resource.isReadable()){
-				return resource;
-			}else {
-				throw new ResourceNotFoundException("File not found or not readable: " + filename + " in portfolio " + portfolioId);
+			long stamp = viewCache.currentStamp();
+			Optional<StoredFile> storedFile = findPortfolioFile(portfolioId, encoding.filename(portfolioId));
+			if (storedFile.isEmpty()) {
+				// Portfolios stored before precompression have no variants.
+				if (encoding != ContentEncoding.IDENTITY) {
+					viewCache.put(portfolioId, PortfolioContent.absent(encoding), stamp);
+				}
+				continue;
+			}
+			if (!viewCache.accepts(storedFile.get().length())) {
+				return Optional.empty();
 			}
-		}catch (MalformedURLException e){
-			throw new ResourceNotFoundException("File not found: " + filename + " --- "+ e);
+			try {
+				byte[] body = readFully(storedFile.get());
+				PortfolioContent content = new PortfolioContent(body, strongEtag(body), storedFile.get().lastModifiedMillis(), encoding);
+				viewCache.put(portfolioId, content, stamp);
+				return Optional.of(content);
+			} catch (IOException e) {
+				throw new FileStorageException("Could not read portfolio file for " + portfolioId, e);
+			}
+		}
+		throw new ResourceNotFoundException("Portfolio page not found: " + portfolioId);
+	}
+
+	private byte[] readFully(StoredFile storedFile) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(storedFile.length()));
+		try (FileChannel channel = FileChannel.open(storedFile.path(), StandardOpenOption.READ)) {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, storedFile.offset() + buffer.position()) < 0) {
+					throw new EOFException("Portfolio file ended early: " + storedFile.path());
+				}
+			}
+		}
+		return buffer.array();
+	}
+
+	private String strongEtag(byte[] body) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+			return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
 		}
 	}
 }
@@ -0,0 +1,62 @@
+package com.portfoliogenerator.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Where generated portfolio files are kept. A portfolio is a set of named files under its
+ * ID. Files are written to a staging file first and only become visible on
+ * {@link #commit}, so readers never see a partial file.
+ */
+public interface PortfolioStore {
+
+	/**
+	 * Claims {@code portfolioId} for a new portfolio. Returns {@code false} if it is
+	 * already in use.
+	 */
+	boolean reserve(String portfolioId) throws IOException;
+
+	/**
+	 * Returns a fresh local file to write {@code filename} into before committing it.
+	 */
+	Path stagingFile(String portfolioId, String filename) throws IOException;
+
+	/**
+	 * Publishes a staging file from {@link #stagingFile} as {@code filename}, replacing any
+	 * previous version. The staging file is consumed.
+	 */
+	void commit(String portfolioId, String filename, Path stagingFile) throws IOException;
+
+	Optional<StoredFile> locate(String portfolioId, String filename) throws IOException;
+
+	/**
+	 * How long a copy of a file read from this store may be served without locating it
+	 * again, when other instances can rewrite or delete it. Empty when only this instance
+	 * writes to the store.
+	 */
+	default Optional<Duration> revalidateAfter() {
+		return Optional.empty();
+	}
+
+	boolean exists(String portfolioId, String filename);
+
+	/**
+	 * Removes the portfolio and all of its files.
+	 */
+	void delete(String portfolioId) throws IOException;
+
+	/**
+	 * Size and last modification of everything stored under {@code portfolioId}, or empty
+	 * if nothing is.
+	 */
+	Optional<PortfolioUsage> usage(String portfolioId) throws IOException;
+
+	/**
+	 * Calls {@code visitor} with the ID of every stored portfolio, in no particular order
+	 * and possibly more than once. Walks the whole store, so it is for background work.
+	 */
+	void forEachPortfolio(Consumer<String> visitor) throws IOException;
+}
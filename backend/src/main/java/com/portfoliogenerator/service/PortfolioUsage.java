@@ -0,0 +1,8 @@
+package com.portfoliogenerator.service;
+
+/**
+ * Total size of the files stored under one portfolio ID and the newest of their
+ * modification times.
+ */
+public record PortfolioUsage(long bytes, long lastModifiedMillis) {
+}
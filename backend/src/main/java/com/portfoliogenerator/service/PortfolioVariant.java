@@ -0,0 +1,7 @@
+package com.portfoliogenerator.service;
+
+/**
+ * The stored file of a portfolio page in the content encoding chosen for a request.
+ */
+public record PortfolioVariant(ContentEncoding encoding, StoredFile file) {
+}
@@ -0,0 +1,123 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.ViewCacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of encoded portfolio pages for the view endpoint, bounded by the total number
+ * of cached bytes rather than by entry count. Pages larger than the per-entry limit are
+ * never cached so one big page cannot flush the popular ones. Each content encoding of a
+ * page is its own entry. When other instances can rewrite the store, entries expire after
+ * the store's {@link PortfolioStore#revalidateAfter() revalidation interval}, since only
+ * this instance's own writes invalidate them.
+ */
+@Service
+public class PortfolioViewCache {
+	private final long maxBytes;
+	private final long maxEntryBytes;
+	// 0 when entries only go stale through invalidate.
+	private final long maxAgeNanos;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long usedBytes;
+	// Bumped on every invalidation so reads that started before a rewrite cannot re-cache stale bytes.
+	private long invalidations;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public PortfolioViewCache(
+			@Value("${app.portfolio.view-cache.max-size:64MB}") DataSize maxSize,
+			@Value("${app.portfolio.view-cache.max-entry-size:1MB}") DataSize maxEntrySize,
+			PortfolioStore store) {
+		this.maxBytes = maxSize.toBytes();
+		this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxBytes);
+		this.maxAgeNanos = store.revalidateAfter().map(Duration::toNanos).orElse(0L);
+	}
+
+	public Optional<PortfolioContent> get(String portfolioId, ContentEncoding encoding) {
+		PortfolioContent content = null;
+		synchronized (entries) {
+			String key = encoding.filename(portfolioId);
+			Entry entry = entries.get(key);
+			if (entry != null && maxAgeNanos > 0 && System.nanoTime() - entry.cachedAtNanos() >= maxAgeNanos) {
+				entries.remove(key);
+				usedBytes -= entry.content().size();
+			} else if (entry != null) {
+				content = entry.content();
+			}
+		}
+		(content != null ? hits : misses).incrementAndGet();
+		return Optional.ofNullable(content);
+	}
+
+	/**
+	 * Returns a stamp to pass to {@link #put} for content read after this call.
+	 */
+	public long currentStamp() {
+		synchronized (entries) {
+			return invalidations;
+		}
+	}
+
+	public boolean accepts(long size) {
+		return size <= maxEntryBytes;
+	}
+
+	public void put(String portfolioId, PortfolioContent content, long stamp) {
+		if (!accepts(content.size())) {
+			return;
+		}
+		synchronized (entries) {
+			if (stamp != invalidations) {
+				return;
+			}
+			Entry previous = entries.put(content.encoding().filename(portfolioId), new Entry(content, System.nanoTime()));
+			if (previous != null) {
+				usedBytes -= previous.content().size();
+			}
+			usedBytes += content.size();
+			evictOverBudget();
+		}
+	}
+
+	public void invalidate(String portfolioId) {
+		synchronized (entries) {
+			invalidations++;
+			for (ContentEncoding encoding : ContentEncoding.values()) {
+				Entry removed = entries.remove(encoding.filename(portfolioId));
+				if (removed != null) {
+					usedBytes -= removed.content().size();
+				}
+			}
+		}
+	}
+
+	private void evictOverBudget() {
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (usedBytes > maxBytes && eldest.hasNext()) {
+			usedBytes -= eldest.next().getValue().content().size();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	private record Entry(PortfolioContent content, long cachedAtNanos) {
+	}
+
+	public ViewCacheStats getStats() {
+		synchronized (entries) {
+			return new ViewCacheStats(entries.size(), usedBytes, maxBytes, hits.get(), misses.get(), evictions.get());
+		}
+	}
+}
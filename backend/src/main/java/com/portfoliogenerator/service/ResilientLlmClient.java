@@ -0,0 +1,525 @@
+package com.portfoliogenerator.service;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.portfoliogenerator.config.LlmResilienceProperties;
+import com.portfoliogenerator.dto.LlmResilienceStats;
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Wraps the configured {@link LlmClient} so that a slow or failing backend degrades
+ * uploads instead of hanging them:
+ * <ul>
+ *   <li>every attempt has a timeout and every call an overall deadline;</li>
+ *   <li>timeouts and retryable gRPC statuses are retried with full-jitter exponential
+ *       backoff while the deadline allows;</li>
+ *   <li>optionally, a call still running after the configured latency percentile is
+ *       hedged with a second identical request, within a budget of extra calls and only
+ *       if {@link WeightedFairScheduler} has a slot free for it without waiting;</li>
+ *   <li>a circuit breaker rejects calls with {@link LlmUnavailableException} while most
+ *       recent calls fail;</li>
+ *   <li>latency, timeouts and throttling feed {@link AdaptiveConcurrencyLimit}.</li>
+ * </ul>
+ * Streams are retried only before their first chunk and never hedged, since chunks already
+ * passed on cannot be taken back. They report only failures to the concurrency limit, as
+ * a stream's duration is not comparable with a plain call's.
+ */
+@Component
+@Primary
+public class ResilientLlmClient implements LlmClient {
+	private static final Logger logger = LoggerFactory.getLogger(ResilientLlmClient.class);
+
+	private static final Set<StatusCode.Code> RETRYABLE_CODES = EnumSet.of(
+			StatusCode.Code.UNAVAILABLE,
+			StatusCode.Code.RESOURCE_EXHAUSTED,
+			StatusCode.Code.DEADLINE_EXCEEDED,
+			StatusCode.Code.ABORTED,
+			StatusCode.Code.INTERNAL);
+	private static final Set<StatusCode.Code> OVERLOAD_CODES = EnumSet.of(
+			StatusCode.Code.RESOURCE_EXHAUSTED,
+			StatusCode.Code.DEADLINE_EXCEEDED);
+
+	private static final int LATENCY_WINDOW = 256;
+	private static final int MIN_HEDGE_SAMPLES = 20;
+	private static final double MAX_HEDGE_TOKENS = 10;
+
+	private final LlmClient delegate;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final WeightedFairScheduler scheduler;
+	private final LlmCircuitBreaker circuitBreaker;
+	private final ExecutorService executor;
+	private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final long attemptTimeoutNanos;
+	private final long deadlineNanos;
+	private final long streamTimeoutNanos;
+	private final int maxAttempts;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+	private final boolean hedgeEnabled;
+	private final double hedgePercentile;
+	private final long hedgeMinDelayNanos;
+	private final double hedgeBudget;
+
+	// Recent successful call latencies, for the hedge delay; guarded by latencies.
+	private final long[] latencies = new long[LATENCY_WINDOW];
+	private int latencyCount;
+	private int latencyNext;
+	// Guarded by latencies as well.
+	private double hedgeTokens;
+
+	private final Counter attempts;
+	private final Counter retries;
+	private final Counter hedges;
+	private final Counter hedgeWins;
+	private final Counter hedgesSkipped;
+	private final Counter rejected;
+
+	public ResilientLlmClient(
+			@Qualifier("llmProvider") LlmClient delegate,
+			AdaptiveConcurrencyLimit concurrencyLimit,
+			WeightedFairScheduler scheduler,
+			LlmResilienceProperties properties,
+			MeterRegistry meterRegistry,
+			@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.delegate = delegate;
+		this.concurrencyLimit = concurrencyLimit;
+		this.scheduler = scheduler;
+		this.circuitBreaker = new LlmCircuitBreaker(properties.getCircuitBreaker());
+		this.executor = WorkerThreads.unbounded("llm-call-", virtualThreads);
+
+		this.attemptTimeoutNanos = properties.getAttemptTimeout().toNanos();
+		this.deadlineNanos = properties.getDeadline().toNanos();
+		this.streamTimeoutNanos = properties.getStreamTimeout().toNanos();
+		this.maxAttempts = Math.max(1, properties.getRetry().getMaxAttempts());
+		this.initialBackoffNanos = properties.getRetry().getInitialBackoff().toNanos();
+		this.maxBackoffNanos = properties.getRetry().getMaxBackoff().toNanos();
+		this.hedgeEnabled = properties.getHedge().isEnabled();
+		this.hedgePercentile = properties.getHedge().getPercentile();
+		this.hedgeMinDelayNanos = properties.getHedge().getMinDelay().toNanos();
+		this.hedgeBudget = properties.getHedge().getBudget();
+
+		this.attempts = meterRegistry.counter("portfolio.llm.attempts");
+		this.retries = meterRegistry.counter("portfolio.llm.retries");
+		this.hedges = meterRegistry.counter("portfolio.llm.hedges");
+		this.hedgeWins = meterRegistry.counter("portfolio.llm.hedge.wins");
+		this.hedgesSkipped = meterRegistry.counter("portfolio.llm.hedge.skipped");
+		this.rejected = meterRegistry.counter("portfolio.llm.rejected");
+		Gauge.builder("portfolio.llm.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+		Gauge.builder("portfolio.llm.circuit.open", circuitBreaker,
+				breaker -> breaker.state() == LlmCircuitBreaker.State.OPEN ? 1 : 0).register(meterRegistry);
+	}
+
+	@Override
+	public String generateContent(String prompt) throws IOException {
+		return call(() -> delegate.generateContent(prompt));
+	}
+
+	@Override
+	public String generateJson(String prompt, String responseSchema) throws IOException {
+		return call(() -> delegate.generateJson(prompt, responseSchema));
+	}
+
+	/**
+	 * Runs a plain (non-streaming) request with retries, hedging and circuit breaking.
+	 */
+	private String call(Observation.CheckedCallable<String, IOException> request) throws IOException {
+		long deadline = System.nanoTime() + deadlineNanos;
+		for (int attempt = 1; ; attempt++) {
+			acquirePermission();
+			try {
+				String result = attemptWithHedge(request, deadline);
+				circuitBreaker.onSuccess();
+				return result;
+			} catch (IOException e) {
+				backOffOrThrow(e, attempt, deadline);
+			} catch (RuntimeException e) {
+				circuitBreaker.onIgnored();
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public void streamContent(String prompt, Consumer<String> chunkConsumer) throws IOException {
+		long deadline = System.nanoTime() + streamTimeoutNanos;
+		AtomicBoolean delivered = new AtomicBoolean();
+		for (int attempt = 1; ; attempt++) {
+			acquirePermission();
+			AttemptConsumer consumer = new AttemptConsumer(chunkConsumer, delivered);
+			Future<Void> call = executor.submit(timed(() -> {
+				delegate.streamContent(prompt, consumer);
+				return null;
+			}, false));
+			try {
+				await(call, deadline);
+				circuitBreaker.onSuccess();
+				return;
+			} catch (UncheckedIOException e) {
+				// Raised by the consumer, so says nothing about the backend.
+				circuitBreaker.onIgnored();
+				throw e;
+			} catch (IOException e) {
+				if (delivered.get()) {
+					recordOutcome(e);
+					throw e;
+				}
+				backOffOrThrow(e, attempt, deadline);
+			} catch (RuntimeException e) {
+				circuitBreaker.onIgnored();
+				throw e;
+			} finally {
+				consumer.abandon();
+				call.cancel(true);
+			}
+		}
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return delegate.isHealthy() && circuitBreaker.state() != LlmCircuitBreaker.State.OPEN;
+	}
+
+	public LlmResilienceStats getStats() {
+		return new LlmResilienceStats(concurrencyLimit.getLimit(), inFlight.get(), circuitBreaker.state().name(),
+				(long) attempts.count(), (long) retries.count(), (long) hedges.count(), (long) hedgeWins.count(),
+				(long) rejected.count());
+	}
+
+	private void acquirePermission() {
+		if (!circuitBreaker.tryAcquire()) {
+			rejected.increment();
+			throw new LlmUnavailableException("The AI service is temporarily unavailable. Please try again shortly.",
+					circuitBreaker.retryAfterSeconds());
+		}
+	}
+
+	/**
+	 * Records a failed attempt with the breaker and returns after the backoff if it should
+	 * be retried; otherwise rethrows it.
+	 */
+	private void backOffOrThrow(IOException failure, int attempt, long deadline) throws IOException {
+		boolean retryable = recordOutcome(failure);
+		if (!retryable || attempt >= maxAttempts) {
+			throw failure;
+		}
+		long backoffNanos = backoffNanos(attempt);
+		if (System.nanoTime() + backoffNanos - deadline >= 0) {
+			throw failure;
+		}
+		retries.increment();
+		logger.info("Retrying LLM call in {} ms after attempt {} failed: {}",
+				TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempt, failure.getMessage());
+		try {
+			TimeUnit.NANOSECONDS.sleep(backoffNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off before an LLM retry");
+		}
+	}
+
+	private boolean recordOutcome(IOException failure) {
+		boolean retryable = isRetryable(failure);
+		if (retryable) {
+			circuitBreaker.onFailure();
+		} else {
+			circuitBreaker.onIgnored();
+		}
+		return retryable;
+	}
+
+	/**
+	 * Full jitter: uniformly random between zero and the capped exponential backoff, so
+	 * that callers that failed together do not retry together.
+	 */
+	private long backoffNanos(int attempt) {
+		long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	/**
+	 * One attempt of a plain call: the request, plus a hedge if it is still running at the
+	 * hedge delay. The first success wins and the other request is cancelled; if one fails
+	 * the attempt waits for the other. The request runs in the caller's scheduler slot, the
+	 * hedge in one of its own that is held until the attempt ends.
+	 */
+	private String attemptWithHedge(Observation.CheckedCallable<String, IOException> request, long deadline) throws IOException {
+		long start = System.nanoTime();
+		long attemptDeadline = deadline - start < attemptTimeoutNanos ? deadline : start + attemptTimeoutNanos;
+		long hedgeDelay = hedgeDelayNanos();
+		long hedgeAt = start + hedgeDelay;
+		boolean hedgePending = hedgeDelay >= 0;
+
+		ExecutorCompletionService<String> race = new ExecutorCompletionService<>(executor);
+		List<Future<String>> calls = new ArrayList<>(2);
+		calls.add(race.submit(timed(request, true)));
+		int running = 1;
+		IOException failure = null;
+		WeightedFairScheduler.Slot hedgeSlot = null;
+		try {
+			while (running > 0) {
+				long now = System.nanoTime();
+				long waitUntil = hedgePending && hedgeAt - attemptDeadline < 0 ? hedgeAt : attemptDeadline;
+				Future<String> done = race.poll(Math.max(0, waitUntil - now), TimeUnit.NANOSECONDS);
+				if (done == null) {
+					if (System.nanoTime() - attemptDeadline >= 0) {
+						concurrencyLimit.onDropped(start);
+						throw new AttemptTimeoutException(TimeUnit.NANOSECONDS.toMillis(attemptDeadline - start));
+					}
+					hedgePending = false;
+					hedgeSlot = hedgeSlot();
+					if (hedgeSlot != null) {
+						hedges.increment();
+						calls.add(race.submit(timed(request, true)));
+						running++;
+					}
+					continue;
+				}
+				running--;
+				try {
+					String result = done.get();
+					if (calls.size() > 1 && done == calls.get(1)) {
+						hedgeWins.increment();
+					}
+					return result;
+				} catch (ExecutionException e) {
+					failure = toIOException(e.getCause());
+				}
+			}
+			throw failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the LLM");
+		} finally {
+			calls.forEach(call -> call.cancel(true));
+			if (hedgeSlot != null) {
+				hedgeSlot.close();
+			}
+		}
+	}
+
+	/**
+	 * A scheduler slot for a hedge if the budget allows one and a slot is free, or
+	 * {@code null}. Hedges never wait for a slot, so they stay within the concurrency limit
+	 * and do not delay other tenants' calls.
+	 */
+	private WeightedFairScheduler.Slot hedgeSlot() {
+		if (!takeHedgeToken()) {
+			return null;
+		}
+		WeightedFairScheduler.Slot slot = scheduler.tryAcquire(TenantContext.get());
+		if (slot == null) {
+			hedgesSkipped.increment();
+			synchronized (latencies) {
+				hedgeTokens++;
+			}
+		}
+		return slot;
+	}
+
+	private void await(Future<?> call, long deadline) throws IOException {
+		long start = System.nanoTime();
+		try {
+			call.get(Math.max(0, deadline - start), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			concurrencyLimit.onDropped(start);
+			throw new AttemptTimeoutException(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (ExecutionException e) {
+			throw toIOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the LLM");
+		}
+	}
+
+	/**
+	 * Runs a request on the calling thread's trace and tenant context and reports its
+	 * outcome to the concurrency limit.
+	 */
+	private <T> Callable<T> timed(Observation.CheckedCallable<T, IOException> request, boolean sampleLatency) {
+		Callable<T> task = () -> {
+			int concurrent = inFlight.incrementAndGet();
+			attempts.increment();
+			long start = System.nanoTime();
+			try {
+				T result = request.call();
+				if (sampleLatency) {
+					long latency = System.nanoTime() - start;
+					concurrencyLimit.onSuccess(start, latency, concurrent);
+					recordLatency(latency);
+				}
+				return result;
+			} catch (IOException e) {
+				if (isOverload(e)) {
+					concurrencyLimit.onDropped(start);
+				}
+				throw e;
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		};
+		return contextSnapshotFactory.captureAll().wrap(task);
+	}
+
+	private static IOException toIOException(Throwable cause) {
+		if (cause instanceof IOException ioException) {
+			return ioException;
+		}
+		if (cause instanceof RuntimeException runtimeException) {
+			throw runtimeException;
+		}
+		if (cause instanceof Error error) {
+			throw error;
+		}
+		return new IOException(cause);
+	}
+
+	private void recordLatency(long latencyNanos) {
+		synchronized (latencies) {
+			latencies[latencyNext] = latencyNanos;
+			latencyNext = (latencyNext + 1) % latencies.length;
+			latencyCount = Math.min(latencies.length, latencyCount + 1);
+		}
+	}
+
+	/**
+	 * The configured percentile of recent latencies, but at least the minimum delay, or -1
+	 * when hedging is off or there are too few samples yet. Each call also earns
+	 * {@code budget} of a hedge token.
+	 */
+	private long hedgeDelayNanos() {
+		if (!hedgeEnabled) {
+			return -1;
+		}
+		long[] sorted;
+		synchronized (latencies) {
+			hedgeTokens = Math.min(MAX_HEDGE_TOKENS, hedgeTokens + hedgeBudget);
+			if (latencyCount < MIN_HEDGE_SAMPLES) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(latencies, latencyCount);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(hedgePercentile * sorted.length) - 1);
+		return Math.max(hedgeMinDelayNanos, sorted[Math.max(0, index)]);
+	}
+
+	private boolean takeHedgeToken() {
+		synchronized (latencies) {
+			if (hedgeTokens < 1) {
+				return false;
+			}
+			hedgeTokens--;
+			return true;
+		}
+	}
+
+	private static boolean isRetryable(IOException e) {
+		if (e instanceof AttemptTimeoutException) {
+			return true;
+		}
+		if (e instanceof InterruptedIOException) {
+			return false;
+		}
+		StatusCode.Code code = statusCode(e);
+		return code != null && RETRYABLE_CODES.contains(code);
+	}
+
+	private static boolean isOverload(IOException e) {
+		StatusCode.Code code = statusCode(e);
+		return code != null && OVERLOAD_CODES.contains(code);
+	}
+
+	private static StatusCode.Code statusCode(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ApiException apiException) {
+				return apiException.getStatusCode().getCode();
+			}
+		}
+		return null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static final class AttemptTimeoutException extends IOException {
+		AttemptTimeoutException(long elapsedMillis) {
+			super("LLM call timed out after " + elapsedMillis + " ms");
+		}
+	}
+
+	/**
+	 * Passes chunks on until the attempt is abandoned, so a cancelled stream that is still
+	 * winding down cannot interleave with a retry. A lock rather than a monitor, because
+	 * the target writes to the client and would otherwise pin a virtual thread.
+	 */
+	private static final class AttemptConsumer implements Consumer<String> {
+		private final Consumer<String> target;
+		private final AtomicBoolean delivered;
+		private final ReentrantLock lock = new ReentrantLock();
+		private boolean abandoned;
+
+		AttemptConsumer(Consumer<String> target, AtomicBoolean delivered) {
+			this.target = target;
+			this.delivered = delivered;
+		}
+
+		@Override
+		public void accept(String chunk) {
+			lock.lock();
+			try {
+				if (!abandoned) {
+					delivered.set(true);
+					target.accept(chunk);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void abandon() {
+			lock.lock();
+			try {
+				abandoned = true;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
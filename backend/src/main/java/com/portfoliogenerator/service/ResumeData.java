@@ -0,0 +1,46 @@
+package com.portfoliogenerator.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * Resume content as Gemini extracts it in structured mode, validated by
+ * {@link ResumeDataParser} and rendered into a page by {@link ThemeRenderer}. Text fields
+ * may be {@code null} and lists empty; lists are never {@code null} after parsing. Fields
+ * the model adds beyond the schema are ignored.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ResumeData(String name, String title, Contact contact, String summary, List<SkillGroup> skills,
+						 List<Experience> experience, List<Project> projects, List<Education> education,
+						 List<Group> additional) {
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record Contact(String email, String phone, String location, String linkedin, String github, String website) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record SkillGroup(String category, List<String> items) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record Experience(String title, String company, String location, String startDate, String endDate,
+							 List<String> highlights) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record Project(String name, String description, List<String> technologies, String url) {
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record Education(String degree, String institution, String location, String startDate, String endDate,
+							String details) {
+	}
+
+	/**
+	 * Any other content, such as certifications, awards or languages, under its heading.
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public record Group(String title, List<String> items) {
+	}
+}
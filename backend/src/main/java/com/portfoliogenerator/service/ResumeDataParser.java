@@ -0,0 +1,155 @@
+package com.portfoliogenerator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Turns Gemini's structured-mode response into {@link ResumeData}. Vertex AI already
+ * constrains the response to the schema, but other clients only follow the prompt, and
+ * both can produce text that must not reach a page unchecked, so the response is validated
+ * here: a name is required, text is trimmed and length-capped, blank entries are dropped,
+ * lists are capped, and links must be plain {@code http(s)} URLs and e-mail addresses.
+ */
+@Component
+public class ResumeDataParser {
+	private static final int MAX_TEXT_LENGTH = 2000;
+	private static final int MAX_SHORT_TEXT_LENGTH = 200;
+	private static final int MAX_ITEMS = 50;
+	private static final Pattern EMAIL = Pattern.compile("[^\\s@<>\"']+@[^\\s@<>\"']+\\.[^\\s@<>\"']+");
+	private static final Pattern SCHEMELESS_URL = Pattern.compile("(www\\.)?[a-z0-9-]+(\\.[a-z0-9-]+)+(/\\S*)?", Pattern.CASE_INSENSITIVE);
+
+	private final ObjectMapper objectMapper;
+
+	public ResumeDataParser(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * @throws IOException if the response is not valid resume JSON
+	 */
+	public ResumeData parse(String rawResponse) throws IOException {
+		ResumeData data;
+		try {
+			data = objectMapper.readValue(stripCodeFence(rawResponse), ResumeData.class);
+		} catch (JsonProcessingException e) {
+			throw new IOException("Gemini did not return valid resume JSON: " + e.getOriginalMessage(), e);
+		}
+		if (data == null) {
+			throw new IOException("Gemini returned an empty resume.");
+		}
+		String name = shortText(data.name());
+		if (name == null) {
+			throw new IOException("Gemini returned a resume without a name.");
+		}
+
+		ResumeData.Contact contact = data.contact();
+		if (contact != null) {
+			contact = new ResumeData.Contact(email(contact.email()), shortText(contact.phone()), shortText(contact.location()),
+					url(contact.linkedin()), url(contact.github()), url(contact.website()));
+		}
+		return new ResumeData(name, shortText(data.title()), contact, text(data.summary()),
+				list(data.skills(), group -> {
+					List<String> items = strings(group.items());
+					return items.isEmpty() ? null : new ResumeData.SkillGroup(shortText(group.category()), items);
+				}),
+				list(data.experience(), role -> {
+					String title = shortText(role.title());
+					String company = shortText(role.company());
+					return title == null && company == null ? null : new ResumeData.Experience(title, company,
+							shortText(role.location()), shortText(role.startDate()), shortText(role.endDate()), strings(role.highlights()));
+				}),
+				list(data.projects(), project -> {
+					String projectName = shortText(project.name());
+					return projectName == null ? null : new ResumeData.Project(projectName, text(project.description()),
+							strings(project.technologies()), url(project.url()));
+				}),
+				list(data.education(), education -> {
+					String degree = shortText(education.degree());
+					String institution = shortText(education.institution());
+					return degree == null && institution == null ? null : new ResumeData.Education(degree, institution,
+							shortText(education.location()), shortText(education.startDate()), shortText(education.endDate()),
+							text(education.details()));
+				}),
+				list(data.additional(), group -> {
+					List<String> items = strings(group.items());
+					return items.isEmpty() ? null : new ResumeData.Group(shortText(group.title()), items);
+				}));
+	}
+
+	private static String stripCodeFence(String response) {
+		String json = response.strip();
+		if (json.startsWith("```")) {
+			int newline = json.indexOf('\n');
+			json = newline < 0 ? "" : json.substring(newline + 1);
+		}
+		if (json.endsWith("```")) {
+			json = json.substring(0, json.length() - 3);
+		}
+		return json.strip();
+	}
+
+	private static <T> List<T> list(List<T> entries, Function<T, T> normalizer) {
+		if (entries == null) {
+			return List.of();
+		}
+		return entries.stream()
+				.filter(Objects::nonNull)
+				.map(normalizer)
+				.filter(Objects::nonNull)
+				.limit(MAX_ITEMS)
+				.toList();
+	}
+
+	private static List<String> strings(List<String> entries) {
+		return list(entries, ResumeDataParser::text);
+	}
+
+	private static String text(String value) {
+		return cap(value, MAX_TEXT_LENGTH);
+	}
+
+	private static String shortText(String value) {
+		return cap(value, MAX_SHORT_TEXT_LENGTH);
+	}
+
+	private static String cap(String value, int maxLength) {
+		if (value == null || value.isBlank()) {
+			return null;
+		}
+		String text = value.strip();
+		return text.length() > maxLength ? text.substring(0, maxLength) : text;
+	}
+
+	private static String email(String value) {
+		String email = shortText(value);
+		if (email != null && email.toLowerCase(Locale.ROOT).startsWith("mailto:")) {
+			email = email.substring("mailto:".length());
+		}
+		return email != null && EMAIL.matcher(email).matches() ? email : null;
+	}
+
+	/**
+	 * Accepts {@code http(s)} URLs and bare host names, which get {@code https://}; anything
+	 * else ({@code javascript:} and the like) is dropped.
+	 */
+	private static String url(String value) {
+		String url = shortText(value);
+		if (url == null || url.chars().anyMatch(c -> Character.isWhitespace(c) || c == '"' || c == '<' || c == '>')) {
+			return null;
+		}
+		String lowerCase = url.toLowerCase(Locale.ROOT);
+		if (lowerCase.startsWith("https://") || lowerCase.startsWith("http://")) {
+			return url;
+		}
+		return SCHEMELESS_URL.matcher(url).matches() ? "https://" + url : null;
+	}
+}
@@ -0,0 +1,183 @@
+package com.portfoliogenerator.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recognizes PDF and DOCX files from their first bytes, so uploads of anything else can
+ * be turned away before the rest of the body is read.
+ * <p>
+ * A PDF must carry its {@code %PDF-x.y} header within the first 1024 bytes, the offset
+ * readers tolerate. A DOCX is a zip whose first bytes are a local file header; the headers
+ * within the window are walked to refuse encrypted entries, unknown compression methods
+ * and other zip-based formats (spreadsheets, presentations, OpenDocument). When the whole
+ * file fits in the window, a PDF must also end with {@code %%EOF} and a DOCX must contain
+ * a Word document part, which catches truncated uploads.
+ */
+final class ResumeFormatSniffer {
+	private static final int PDF_HEADER_WINDOW = 1024;
+	private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] PDF_EOF = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+	private static final int ZIP_LOCAL_HEADER = 0x04034b50;
+	private static final int ZIP_LOCAL_HEADER_SIZE = 30;
+	private static final int ZIP_CENTRAL_HEADER = 0x02014b50;
+	private static final byte[] WORD_PREFIX = "word/".getBytes(StandardCharsets.US_ASCII);
+	private static final int ZIP_FLAG_ENCRYPTED = 0x1;
+	private static final int ZIP_FLAG_DATA_DESCRIPTOR = 0x8;
+	private static final int ZIP_STORED = 0;
+	private static final int ZIP_DEFLATED = 8;
+	private static final int ZIP_MAX_VERSION_NEEDED = 63;
+
+	enum Format {
+		PDF(".pdf"), DOCX(".docx");
+
+		private final String extension;
+
+		Format(String extension) {
+			this.extension = extension;
+		}
+
+		String extension() {
+			return extension;
+		}
+	}
+
+	/**
+	 * The detected format, or {@code null} with the reason the content was refused.
+	 */
+	record Result(Format format, String problem) {
+		static Result accept(Format format) {
+			return new Result(format, null);
+		}
+
+		static Result reject(String problem) {
+			return new Result(null, problem);
+		}
+
+		boolean accepted() {
+			return format != null;
+		}
+	}
+
+	private ResumeFormatSniffer() {
+	}
+
+	/**
+	 * Looks at {@code head[0..length)}; {@code complete} says whether that is the whole file.
+	 */
+	static Result sniff(byte[] head, int length, boolean complete) {
+		if (length == 0) {
+			return Result.reject("The file is empty");
+		}
+		if (length >= 4 && readInt(head, 0) == ZIP_LOCAL_HEADER) {
+			return sniffDocx(head, length, complete);
+		}
+		int pdfHeader = indexOf(head, Math.min(length, PDF_HEADER_WINDOW), PDF_MAGIC, 0);
+		if (pdfHeader >= 0) {
+			return sniffPdf(head, length, complete, pdfHeader);
+		}
+		return Result.reject("The file is neither a PDF nor a DOCX document");
+	}
+
+	private static Result sniffPdf(byte[] head, int length, boolean complete, int header) {
+		int version = header + PDF_MAGIC.length;
+		if (length < version + 3 || !isDigit(head[version]) || head[version + 1] != '.' || !isDigit(head[version + 2])) {
+			return Result.reject("The PDF header has no valid version");
+		}
+		if (complete && lastIndexOf(head, length, PDF_EOF) < 0) {
+			return Result.reject("The PDF is truncated");
+		}
+		return Result.accept(Format.PDF);
+	}
+
+	private static Result sniffDocx(byte[] head, int length, boolean complete) {
+		boolean contentTypes = false;
+		boolean wordPart = false;
+		int offset = 0;
+		// Entries followed by a data descriptor do not declare their size up front, which
+		// ends the walk; the parser then has the last word.
+		while (offset + ZIP_LOCAL_HEADER_SIZE <= length && readInt(head, offset) == ZIP_LOCAL_HEADER) {
+			int versionNeeded = readShort(head, offset + 4);
+			int flags = readShort(head, offset + 6);
+			int method = readShort(head, offset + 8);
+			long compressedSize = readInt(head, offset + 18) & 0xFFFFFFFFL;
+			int nameLength = readShort(head, offset + 26);
+			int extraLength = readShort(head, offset + 28);
+			if (versionNeeded > ZIP_MAX_VERSION_NEEDED || nameLength == 0) {
+				return Result.reject("The file is not a valid DOCX package");
+			}
+			if ((flags & ZIP_FLAG_ENCRYPTED) != 0) {
+				return Result.reject("Encrypted documents are not supported");
+			}
+			if (method != ZIP_STORED && method != ZIP_DEFLATED) {
+				return Result.reject("The DOCX package uses an unsupported compression method");
+			}
+			int nameStart = offset + ZIP_LOCAL_HEADER_SIZE;
+			if (nameStart + nameLength > length) {
+				break;
+			}
+			String name = new String(head, nameStart, nameLength, StandardCharsets.UTF_8);
+			if (name.equals("mimetype") || name.startsWith("xl/") || name.startsWith("ppt/")) {
+				return Result.reject("The file is a zip archive but not a Word document");
+			}
+			contentTypes |= name.equals("[Content_Types].xml");
+			wordPart |= name.startsWith("word/");
+			if ((flags & ZIP_FLAG_DATA_DESCRIPTOR) != 0 && compressedSize == 0) {
+				break;
+			}
+			long next = (long) nameStart + nameLength + extraLength + compressedSize;
+			if (next > length) {
+				break;
+			}
+			offset = (int) next;
+		}
+		if (offset == 0 && length < ZIP_LOCAL_HEADER_SIZE) {
+			return Result.reject("The DOCX package is truncated");
+		}
+		if (complete && !wordPart && (offset + 4 > length || readInt(head, offset) != ZIP_CENTRAL_HEADER)) {
+			// The walk stopped early; entry names are also stored, uncompressed, in the central directory.
+			wordPart = indexOf(head, length, WORD_PREFIX, offset) >= 0;
+		}
+		if (complete && !wordPart) {
+			return Result.reject(contentTypes ? "The package contains no Word document" : "The file is not a valid DOCX package");
+		}
+		return Result.accept(Format.DOCX);
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static int readShort(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+	}
+
+	private static int indexOf(byte[] bytes, int length, byte[] pattern, int from) {
+		outer:
+		for (int i = from; i <= length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static int lastIndexOf(byte[] bytes, int length, byte[] pattern) {
+		outer:
+		for (int i = length - pattern.length; i >= 0; i--) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,192 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.IngestStats;
+import com.portfoliogenerator.dto.PortfolioResponse;
+import com.portfoliogenerator.exception.FileStorageException;
+import com.portfoliogenerator.exception.RejectedUploadException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming upload path ({@code POST /api/v1/resume/ingest}). The multipart body is read
+ * straight from the request instead of being spooled by the servlet container first: the
+ * filename is checked as soon as the part headers arrive and the content by its first
+ * bytes ({@link ResumeFormatSniffer}), so junk, mislabeled or oversized files are refused
+ * after a few KB rather than after the whole upload, a temp file and a parser attempt.
+ * <p>
+ * Accepted content is written once, to the file the parser opens; PDF and DOCX both keep
+ * their index at the end of the file, so parsing cannot start before the upload is
+ * complete. Rejections count the declared body bytes that were never read as saved.
+ */
+@Service
+public class ResumeIngestService {
+	private static final Logger logger = LoggerFactory.getLogger(ResumeIngestService.class);
+	private static final String FILE_PART = "resumeFile";
+	// Allowance for part headers, boundaries and small form fields around the file.
+	private static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+	private final PortfolioService portfolioService;
+	private final PipelineMetrics pipelineMetrics;
+	private final MeterRegistry meterRegistry;
+	private final long maxFileBytes;
+	private final int sniffBytes;
+
+	private final Counter acceptedCounter;
+	private final Counter bytesReceivedCounter;
+	private final Counter bytesSavedCounter;
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	public ResumeIngestService(PortfolioService portfolioService, PipelineMetrics pipelineMetrics, MeterRegistry meterRegistry,
+							   @Value("${spring.servlet.multipart.max-file-size:10MB}") DataSize maxFileSize,
+							   @Value("${app.ingest.sniff-size:8KB}") DataSize sniffSize) {
+		this.portfolioService = portfolioService;
+		this.pipelineMetrics = pipelineMetrics;
+		this.meterRegistry = meterRegistry;
+		this.maxFileBytes = maxFileSize.toBytes();
+		this.sniffBytes = (int) Math.max(sniffSize.toBytes(), 64);
+		this.acceptedCounter = Counter.builder("portfolio.ingest.accepted")
+				.description("Streamed uploads that passed the early checks")
+				.register(meterRegistry);
+		this.bytesReceivedCounter = Counter.builder("portfolio.ingest.bytes.received")
+				.description("Request bytes read by the streaming upload path")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		this.bytesSavedCounter = Counter.builder("portfolio.ingest.bytes.saved")
+				.description("Declared request bytes never read because the upload was rejected early")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+	}
+
+	public PortfolioResponse ingest(HttpServletRequest request) {
+		long contentLength = request.getContentLengthLong();
+		String boundary = MultipartStreamReader.boundary(request.getContentType());
+		if (boundary == null) {
+			throw reject(RejectedUploadException.Reason.UNSUPPORTED_TYPE, "Expected a multipart/form-data request", contentLength, 0);
+		}
+		if (contentLength > maxFileBytes + MULTIPART_OVERHEAD) {
+			throw reject(RejectedUploadException.Reason.TOO_LARGE, "The upload exceeds " + DataSize.ofBytes(maxFileBytes).toMegabytes() + " MB", contentLength, 0);
+		}
+
+		MultipartStreamReader reader;
+		try {
+			reader = new MultipartStreamReader(request.getInputStream(), boundary);
+		} catch (IOException e) {
+			throw new FileStorageException("Could not read the upload.", e);
+		}
+		String originalFilename = null;
+		Path stagedResume = null;
+		try {
+			MultipartStreamReader.Part part;
+			while ((part = reader.nextPart()) != null) {
+				if (reader.bytesRead() > maxFileBytes + MULTIPART_OVERHEAD) {
+					throw reject(RejectedUploadException.Reason.TOO_LARGE, "The upload is too large", contentLength, reader.bytesRead());
+				}
+				if (FILE_PART.equals(part.name()) && part.filename() != null) {
+					originalFilename = checkFilename(part.filename(), contentLength, reader);
+					stagedResume = stage(part.content(), originalFilename, contentLength, reader);
+					break;
+				}
+			}
+		} catch (IOException e) {
+			portfolioService.deleteStagedUpload(stagedResume);
+			throw reject(RejectedUploadException.Reason.MALFORMED, "Malformed multipart body: " + e.getMessage(), contentLength, reader.bytesRead());
+		} catch (RuntimeException e) {
+			portfolioService.deleteStagedUpload(stagedResume);
+			throw e;
+		} finally {
+			bytesReceived.addAndGet(reader.bytesRead());
+			bytesReceivedCounter.increment(reader.bytesRead());
+		}
+		if (stagedResume == null) {
+			throw reject(RejectedUploadException.Reason.MALFORMED, "Required part '" + FILE_PART + "' is not present", contentLength, reader.bytesRead());
+		}
+
+		accepted.incrementAndGet();
+		acceptedCounter.increment();
+		try {
+			return portfolioService.processResume(originalFilename, stagedResume, "ingest");
+		} finally {
+			portfolioService.deleteStagedUpload(stagedResume);
+		}
+	}
+
+	private String checkFilename(String filename, long contentLength, MultipartStreamReader reader) {
+		if (!filename.endsWith(".pdf") && !filename.endsWith(".docx")) {
+			throw reject(RejectedUploadException.Reason.UNSUPPORTED_TYPE, "Only PDF and DOCX are allowed. Received: " + filename, contentLength, reader.bytesRead());
+		}
+		try {
+			return portfolioService.validateResumeFilename(filename);
+		} catch (FileStorageException e) {
+			throw reject(RejectedUploadException.Reason.MALFORMED, e.getMessage(), contentLength, reader.bytesRead());
+		}
+	}
+
+	/**
+	 * Sniffs the first bytes of the file and, if they pass, writes them and the rest of the
+	 * part to a staged file.
+	 */
+	private Path stage(InputStream content, String originalFilename, long contentLength, MultipartStreamReader reader) throws IOException {
+		byte[] head = content.readNBytes(sniffBytes);
+		boolean complete = head.length < sniffBytes;
+		ResumeFormatSniffer.Result result = ResumeFormatSniffer.sniff(head, head.length, complete);
+		if (!result.accepted()) {
+			throw reject(RejectedUploadException.Reason.UNSUPPORTED_TYPE, result.problem() + ": " + originalFilename, contentLength, reader.bytesRead());
+		}
+		if (!originalFilename.endsWith(result.format().extension())) {
+			throw reject(RejectedUploadException.Reason.UNSUPPORTED_TYPE,
+					"The content of " + originalFilename + " is a " + result.format().name() + " document", contentLength, reader.bytesRead());
+		}
+
+		Path stagedResume = Files.createTempFile("resume-ingest-", ".tmp");
+		try (OutputStream out = Files.newOutputStream(stagedResume)) {
+			out.write(head);
+			long written = head.length;
+			byte[] chunk = new byte[64 * 1024];
+			int read;
+			while ((read = content.read(chunk)) >= 0) {
+				written += read;
+				if (written > maxFileBytes) {
+					throw reject(RejectedUploadException.Reason.TOO_LARGE,
+							"The file exceeds " + DataSize.ofBytes(maxFileBytes).toMegabytes() + " MB", contentLength, reader.bytesRead());
+				}
+				out.write(chunk, 0, read);
+			}
+		} catch (IOException | RuntimeException e) {
+			portfolioService.deleteStagedUpload(stagedResume);
+			throw e;
+		}
+		return stagedResume;
+	}
+
+	private RejectedUploadException reject(RejectedUploadException.Reason reason, String message, long contentLength, long bytesRead) {
+		long saved = contentLength > bytesRead ? contentLength - bytesRead : 0;
+		rejected.incrementAndGet();
+		bytesSaved.addAndGet(saved);
+		bytesSavedCounter.increment(saved);
+		meterRegistry.counter("portfolio.ingest.rejected", "reason", reason.name().toLowerCase(Locale.ROOT)).increment();
+		pipelineMetrics.recordFailure(PipelineMetrics.FAILURE_INVALID_FILE);
+		logger.info("Rejected streamed upload after {} of {} bytes: {}", bytesRead, contentLength, message);
+		return new RejectedUploadException(reason, message);
+	}
+
+	public IngestStats getStats() {
+		return new IngestStats(accepted.get(), rejected.get(), bytesReceived.get(), bytesSaved.get());
+	}
+}
@@ -0,0 +1,59 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prompt and response schema for structured mode, in which Gemini returns
+ * {@link ResumeData} as JSON instead of a page. Like {@link PortfolioPromptTemplate}, the
+ * prompt is pre-split around the resume placeholder.
+ */
+@Component
+public class ResumePromptTemplate {
+	private static final String PLACEHOLDER = "{{resumeText}}";
+
+	private final String prefix;
+	private final String suffix;
+	private final String responseSchema;
+
+	public ResumePromptTemplate(
+			@Value("${app.prompt.resume-template:classpath:prompts/resume-prompt.txt}") Resource template,
+			@Value("${app.prompt.resume-schema:classpath:prompts/resume-schema.json}") Resource schema) {
+		String text = load(template);
+		int placeholder = text.indexOf(PLACEHOLDER);
+		if (placeholder < 0 || text.indexOf(PLACEHOLDER, placeholder + 1) >= 0) {
+			throw new IllegalStateException("Prompt template must contain " + PLACEHOLDER + " exactly once: " + template);
+		}
+		this.prefix = text.substring(0, placeholder);
+		this.suffix = text.substring(placeholder + PLACEHOLDER.length());
+		this.responseSchema = load(schema);
+	}
+
+	private static String load(Resource resource) {
+		try {
+			return resource.getContentAsString(StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load prompt template " + resource, e);
+		}
+	}
+
+	public String render(String resumeText) {
+		return new StringBuilder(prefix.length() + resumeText.length() + suffix.length())
+				.append(prefix)
+				.append(resumeText)
+				.append(suffix)
+				.toString();
+	}
+
+	/**
+	 * The response schema as an OpenAPI schema object in JSON.
+	 */
+	public String responseSchema() {
+		return responseSchema;
+	}
+}
@@ -0,0 +1,72 @@
+package com.portfoliogenerator.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Sections of a portfolio page in the order the generation prompt lays them out. Each
+ * section knows the resume headings that start it and what the model should make of it;
+ * text before the first recognized heading belongs to {@link #HEADER}.
+ */
+public enum ResumeSection {
+	HEADER(null,
+			"the page header (hero): full name in a large heading, the professional title, and location, phone, "
+					+ "email, LinkedIn and GitHub as text links (mailto: for email, target='_blank' for web links)."),
+	SUMMARY("(professional\\s+)?(summary|profile|objective|about( me)?)",
+			"the summary / about me section as a clear, readable paragraph."),
+	SKILLS("(technical\\s+)?skills|core competencies|technologies",
+			"the skills section. Keep categories if the resume has them and show each skill as a tag."),
+	EXPERIENCE("(work\\s+|professional\\s+)?experience|employment( history)?",
+			"the experience section. For each role: job title, company name and location, dates, and the "
+					+ "responsibilities and achievements as bullet points; each role is an item card."),
+	PROJECTS("(personal\\s+|key\\s+)?projects",
+			"the projects section. For each project: name, description and the technologies used if mentioned; "
+					+ "each project is an item card."),
+	EDUCATION("education|academic background|qualifications",
+			"the education section. For each qualification: degree, institution and dates, concisely."),
+	ADDITIONAL("certifications?|achievements|awards|publications|languages|volunteering|volunteer experience",
+			"a section for the remaining resume content (certifications, awards, publications, languages, "
+					+ "volunteering), with a fitting heading for each group.");
+
+	private final Pattern heading;
+	private final String guidance;
+
+	ResumeSection(String headingPattern, String guidance) {
+		this.heading = headingPattern == null ? null : Pattern.compile("(?i)(" + headingPattern + ")\\s*:?");
+		this.guidance = guidance;
+	}
+
+	/**
+	 * Name used in prompts, element IDs and the section manifest.
+	 */
+	public String id() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	public String guidance() {
+		return guidance;
+	}
+
+	/**
+	 * The element the generated HTML of this section must consist of.
+	 */
+	public String elementName() {
+		return this == HEADER ? "header" : "section";
+	}
+
+	public String openingTag() {
+		return this == HEADER ? "<header class=\"hero\" id=\"header\">" : "<section class=\"section\" id=\"" + id() + "\">";
+	}
+
+	/**
+	 * Returns the section a line starts, or {@code null} if it is not a section heading.
+	 */
+	public static ResumeSection forHeading(String line) {
+		for (ResumeSection section : values()) {
+			if (section.heading != null && section.heading.matcher(line).matches()) {
+				return section;
+			}
+		}
+		return null;
+	}
+}
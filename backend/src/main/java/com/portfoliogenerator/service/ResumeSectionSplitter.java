@@ -0,0 +1,40 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Splits prepared resume text into {@link ResumeSection}s at recognized heading lines.
+ * Heading lines stay with their section so the model sees them; a section heading that
+ * occurs twice collects both parts, and sections without any text are left out.
+ */
+@Component
+public class ResumeSectionSplitter {
+
+	public Map<ResumeSection, String> split(String resumeText) {
+		Map<ResumeSection, StringBuilder> builders = new EnumMap<>(ResumeSection.class);
+		ResumeSection current = ResumeSection.HEADER;
+		for (String line : resumeText.split("\n")) {
+			ResumeSection heading = ResumeSection.forHeading(line.trim());
+			if (heading != null) {
+				current = heading;
+			}
+			StringBuilder text = builders.computeIfAbsent(current, section -> new StringBuilder());
+			if (!text.isEmpty()) {
+				text.append('\n');
+			}
+			text.append(line);
+		}
+
+		Map<ResumeSection, String> sections = new EnumMap<>(ResumeSection.class);
+		builders.forEach((section, text) -> {
+			String sectionText = text.toString().strip();
+			if (!sectionText.isEmpty()) {
+				sections.put(section, sectionText);
+			}
+		});
+		return sections;
+	}
+}
@@ -0,0 +1,141 @@
+package com.portfoliogenerator.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Extracts plain text from uploaded resumes without loading the whole file onto the heap.
+ * <p>
+ * PDFs are parsed straight from the staged upload file, and PDFBox keeps decoded streams
+ * in memory only up to a fixed budget before spilling to scratch files. Longer documents
+ * are split into at most one contiguous page range per worker of a dedicated fork-join
+ * pool, at least {@code pages-per-task} pages each, so no more documents are open at once
+ * than the pool has workers. Documents are not thread-safe, so every range loads its own
+ * {@link PDDocument}, once; the first range is stripped on the calling thread from the
+ * document opened to count the pages.
+ * DOCX files are opened read-only as a zip on disk instead of being buffered as a stream.
+ */
+@Service
+public class ResumeTextExtractor {
+	private final long pdfMaxMainMemoryBytes;
+	private final int pagesPerTask;
+	private final int parallelThresholdPages;
+	private final ForkJoinPool pagePool;
+
+	public ResumeTextExtractor(
+			@Value("${app.parser.pdf.max-main-memory:4MB}") DataSize pdfMaxMainMemory,
+			@Value("${app.parser.pdf.pages-per-task:4}") int pagesPerTask,
+			@Value("${app.parser.pdf.parallel-threshold-pages:8}") int parallelThresholdPages,
+			@Value("${app.parser.pdf.parallelism:0}") int parallelism) {
+		this.pdfMaxMainMemoryBytes = pdfMaxMainMemory.toBytes();
+		this.pagesPerTask = Math.max(1, pagesPerTask);
+		this.parallelThresholdPages = parallelThresholdPages;
+		this.pagePool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+	public String extractPdf(Path file) throws IOException {
+		try (PDDocument document = load(file)) {
+			int pageCount = document.getNumberOfPages();
+			int ranges = Math.min(pagePool.getParallelism(), (pageCount + pagesPerTask - 1) / pagesPerTask);
+			if (pageCount < parallelThresholdPages || ranges < 2) {
+				return new PDFTextStripper().getText(document);
+			}
+
+			int pagesPerRange = (pageCount + ranges - 1) / ranges;
+			List<ForkJoinTask<String>> tail = new ArrayList<>();
+			for (int startPage = pagesPerRange + 1; startPage <= pageCount; startPage += pagesPerRange) {
+				int endPage = Math.min(startPage + pagesPerRange - 1, pageCount);
+				tail.add(pagePool.submit(new PageRangeTask(file, startPage, endPage)));
+			}
+			try {
+				StringBuilder text = new StringBuilder(stripRange(document, 1, pagesPerRange));
+				for (ForkJoinTask<String> range : tail) {
+					text.append(range.join());
+				}
+				return text.toString();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				tail.forEach(range -> range.cancel(false));
+			}
+		}
+	}
+
+	public String extractDocx(Path file) throws IOException {
+		OPCPackage opcPackage;
+		try {
+			opcPackage = OPCPackage.open(file.toFile(), PackageAccess.READ);
+		} catch (InvalidFormatException e) {
+			throw new IOException("Not a valid DOCX package", e);
+		}
+		try {
+			XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(opcPackage));
+			return extractor.getText();
+		} finally {
+			// Read-only packages are released with revert(); close() would try to save.
+			opcPackage.revert();
+		}
+	}
+
+	private PDDocument load(Path file) throws IOException {
+		return Loader.loadPDF(file.toFile(), this::createStreamCache);
+	}
+
+	private RandomAccessStreamCache createStreamCache() throws IOException {
+		return MemoryUsageSetting.setupMixed(pdfMaxMainMemoryBytes).streamCache.create();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pagePool.shutdown();
+	}
+
+	private static String stripRange(PDDocument document, int startPage, int endPage) throws IOException {
+		PDFTextStripper stripper = new PDFTextStripper();
+		stripper.setStartPage(startPage);
+		stripper.setEndPage(endPage);
+		return stripper.getText(document);
+	}
+
+	private class PageRangeTask implements Callable<String> {
+		private final Path file;
+		private final int startPage;
+		private final int endPage;
+
+		PageRangeTask(Path file, int startPage, int endPage) {
+			this.file = file;
+			this.startPage = startPage;
+			this.endPage = endPage;
+		}
+
+		@Override
+		public String call() {
+			try (PDDocument document = load(file)) {
+				return stripRange(document, startPage, endPage);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
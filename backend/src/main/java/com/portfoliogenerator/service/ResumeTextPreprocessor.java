@@ -0,0 +1,158 @@
+package com.portfoliogenerator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Cleans extracted resume text before it is put into the prompt. PDF and DOCX extraction
+ * leaves page numbers, running headers and footers, words hyphenated across line breaks
+ * and long whitespace runs in the text; none of it helps the model and all of it is paid
+ * for in input tokens. The cleaned text is also held to a token budget, dropping
+ * low-value sections (references, hobbies, ...) first and cutting from the end last.
+ */
+@Service
+public class ResumeTextPreprocessor {
+	private static final Logger logger = LoggerFactory.getLogger(ResumeTextPreprocessor.class);
+
+	// Rough average for English prose with the Gemini tokenizer; good enough for budgeting.
+	private static final int CHARS_PER_TOKEN = 4;
+
+	private static final Pattern LINE_BREAKS = Pattern.compile("\\r\\n?|[\\f\\u000B\\u2028\\u2029]");
+	private static final Pattern CONTROL_CHARS = Pattern.compile("[\\p{Cc}\\p{Cf}&&[^\\n\\t]]");
+	private static final Pattern HYPHENATED_BREAK = Pattern.compile("(\\p{L})-\\n[ \\t]*(\\p{Ll})");
+	private static final Pattern HORIZONTAL_WHITESPACE = Pattern.compile("[\\t\\p{Zs}]+");
+	private static final Pattern PAGE_NUMBER = Pattern.compile(
+			"(?i)(page\\s*)?\\d{1,3}(\\s*(of|/)\\s*\\d{1,3})?|[-\\u2013\\u2014]\\s*\\d{1,3}\\s*[-\\u2013\\u2014]");
+
+	private static final Pattern SECTION_HEADING = Pattern.compile(
+			"(?i)(professional\\s+)?(summary|profile|objective|about( me)?|skills|technical skills|experience|work experience|"
+					+ "employment( history)?|projects|education|certifications?|achievements|awards|publications|languages|"
+					+ "volunteering|volunteer experience|references?|hobbies|interests|hobbies (and|&) interests|"
+					+ "personal (details|information)|declaration|extra[- ]curricular activities)\\s*:?");
+	private static final Pattern LOW_VALUE_HEADING = Pattern.compile(
+			"(?i)(references?|hobbies|interests|hobbies (and|&) interests|personal (details|information)|declaration|"
+					+ "extra[- ]curricular activities)\\s*:?");
+
+	// Lines longer than this are content, not a running header or footer.
+	private static final int MAX_REPEATED_LINE_LENGTH = 120;
+
+	private final int maxResumeTokens;
+	private final int repeatedLineThreshold;
+
+	public ResumeTextPreprocessor(
+			@Value("${app.prompt.max-resume-tokens:6000}") int maxResumeTokens,
+			@Value("${app.prompt.repeated-line-threshold:3}") int repeatedLineThreshold) {
+		this.maxResumeTokens = maxResumeTokens;
+		this.repeatedLineThreshold = Math.max(2, repeatedLineThreshold);
+	}
+
+	public String prepare(String sourceName, String rawText) {
+		List<String> lines = normalize(rawText);
+		lines = dropRepeatedLines(lines);
+
+		String text = joinLines(lines);
+		boolean trimmed = false;
+		if (estimateTokens(text) > maxResumeTokens) {
+			lines = dropLowValueSections(lines);
+			text = truncateToBudget(joinLines(lines));
+			trimmed = true;
+		}
+
+		int tokensBefore = estimateTokens(rawText);
+		int tokensAfter = estimateTokens(text);
+		logger.info("Prepared resume text for {}: ~{} -> ~{} tokens ({} saved{}).",
+				sourceName, tokensBefore, tokensAfter, tokensBefore - tokensAfter, trimmed ? ", trimmed to budget" : "");
+		return text;
+	}
+
+	public int estimateTokens(String text) {
+		return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+	}
+
+	private List<String> normalize(String rawText) {
+		String text = Normalizer.normalize(rawText, Normalizer.Form.NFKC);
+		text = LINE_BREAKS.matcher(text).replaceAll("\n");
+		text = CONTROL_CHARS.matcher(text).replaceAll("");
+		text = HYPHENATED_BREAK.matcher(text).replaceAll("$1$2");
+
+		List<String> lines = new ArrayList<>();
+		boolean previousBlank = true;
+		for (String line : text.split("\n", -1)) {
+			String cleaned = HORIZONTAL_WHITESPACE.matcher(line).replaceAll(" ").trim();
+			if (PAGE_NUMBER.matcher(cleaned).matches()) {
+				continue;
+			}
+			boolean blank = cleaned.isEmpty();
+			if (blank && previousBlank) {
+				continue;
+			}
+			lines.add(cleaned);
+			previousBlank = blank;
+		}
+		if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+			lines.remove(lines.size() - 1);
+		}
+		return lines;
+	}
+
+	/**
+	 * Keeps only the first occurrence of short lines that repeat on many pages, which is
+	 * what running headers and footers look like once the page structure is gone.
+	 */
+	private List<String> dropRepeatedLines(List<String> lines) {
+		Map<String, Integer> counts = new HashMap<>();
+		for (String line : lines) {
+			if (!line.isEmpty() && line.length() <= MAX_REPEATED_LINE_LENGTH) {
+				counts.merge(line, 1, Integer::sum);
+			}
+		}
+
+		Set<String> seen = new HashSet<>();
+		List<String> kept = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			if (counts.getOrDefault(line, 0) >= repeatedLineThreshold && !seen.add(line)) {
+				continue;
+			}
+			kept.add(line);
+		}
+		return kept;
+	}
+
+	private List<String> dropLowValueSections(List<String> lines) {
+		List<String> kept = new ArrayList<>(lines.size());
+		boolean skipping = false;
+		for (String line : lines) {
+			if (SECTION_HEADING.matcher(line).matches()) {
+				skipping = LOW_VALUE_HEADING.matcher(line).matches();
+			}
+			if (!skipping) {
+				kept.add(line);
+			}
+		}
+		return kept;
+	}
+
+	private String truncateToBudget(String text) {
+		int maxChars = maxResumeTokens * CHARS_PER_TOKEN;
+		if (text.length() <= maxChars) {
+			return text;
+		}
+		int cut = text.lastIndexOf('\n', maxChars);
+		return text.substring(0, cut > 0 ? cut : maxChars);
+	}
+
+	private String joinLines(List<String> lines) {
+		return String.join("\n", lines);
+	}
+}
@@ -0,0 +1,16 @@
+package com.portfoliogenerator.service;
+
+import java.util.List;
+
+/**
+ * Stored next to a section-generated page as {@code sections.json}: per section, a hash of
+ * its resume text (and of the templates) and the HTML generated for it, so a re-upload
+ * only regenerates the sections whose hash changed. {@code tenant} is the tenant the
+ * portfolio was generated for; only that tenant may regenerate it.
+ */
+public record SectionManifest(String templateVersion, String tenant, List<Section> sections) {
+	public static final String FILENAME = "sections.json";
+
+	public record Section(String id, String hash, String html) {
+	}
+}
@@ -0,0 +1,113 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Prompt and page skeleton for section-parallel generation. The skeleton is a complete
+ * document carrying the shared stylesheet, with slots for the header and the other
+ * sections; the prompt asks for one section's HTML using only the skeleton's classes, so
+ * sections generated independently still form one consistent page.
+ * <p>
+ * {@link #version()} changes whenever either file does, which makes stored section hashes
+ * stale and forces those sections to be regenerated.
+ */
+@Component
+public class SectionPromptTemplate {
+	private static final String OPENING_TAG = "{{openingTag}}";
+	private static final String GUIDANCE = "{{guidance}}";
+	private static final String SECTION_TEXT = "{{sectionText}}";
+	private static final String TITLE = "{{title}}";
+	private static final String HEADER = "{{header}}";
+	private static final String SECTIONS = "{{sections}}";
+
+	private final String prompt;
+	// The skeleton split around its title, header and sections slots.
+	private final String[] skeletonParts;
+	private final String version;
+
+	public SectionPromptTemplate(
+			@Value("${app.prompt.section-template:classpath:prompts/section-prompt.txt}") Resource promptTemplate,
+			@Value("${app.prompt.section-skeleton:classpath:prompts/section-skeleton.html}") Resource skeletonTemplate) {
+		this.prompt = load(promptTemplate, OPENING_TAG, GUIDANCE, SECTION_TEXT);
+		String skeleton = load(skeletonTemplate, TITLE, HEADER, SECTIONS);
+		this.skeletonParts = splitSkeleton(skeleton, skeletonTemplate);
+		this.version = sha256(prompt + "\u0000" + skeleton).substring(0, 16);
+	}
+
+	private static String[] splitSkeleton(String skeleton, Resource template) {
+		int title = skeleton.indexOf(TITLE);
+		int header = skeleton.indexOf(HEADER);
+		int sections = skeleton.indexOf(SECTIONS);
+		if (!(title < header && header < sections)) {
+			throw new IllegalStateException("Section skeleton must contain " + TITLE + ", " + HEADER + " and " + SECTIONS + " in that order: " + template);
+		}
+		return new String[]{
+				skeleton.substring(0, title),
+				skeleton.substring(title + TITLE.length(), header),
+				skeleton.substring(header + HEADER.length(), sections),
+				skeleton.substring(sections + SECTIONS.length())};
+	}
+
+	private static String load(Resource template, String... placeholders) {
+		String text;
+		try {
+			text = template.getContentAsString(StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load section template " + template, e);
+		}
+		for (String placeholder : placeholders) {
+			if (!text.contains(placeholder)) {
+				throw new IllegalStateException("Section template must contain " + placeholder + ": " + template);
+			}
+		}
+		return text;
+	}
+
+	public String render(ResumeSection section, String sectionText) {
+		// The section text goes in last so placeholders inside resume text are left alone.
+		return prompt.replace(OPENING_TAG, section.openingTag())
+				.replace(GUIDANCE, section.guidance())
+				.replace(SECTION_TEXT, sectionText);
+	}
+
+	/**
+	 * Puts generated sections into the skeleton, in the order given.
+	 */
+	public String assemble(String title, String headerHtml, List<String> sectionsHtml) {
+		StringBuilder page = new StringBuilder(skeletonParts[0].length() + skeletonParts[3].length() + 4096)
+				.append(skeletonParts[0]).append(escape(title))
+				.append(skeletonParts[1]).append(headerHtml)
+				.append(skeletonParts[2]);
+		for (String sectionHtml : sectionsHtml) {
+			page.append(sectionHtml).append('\n');
+		}
+		return page.append(skeletonParts[3]).toString();
+	}
+
+	public String version() {
+		return version;
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	static String sha256(String text) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
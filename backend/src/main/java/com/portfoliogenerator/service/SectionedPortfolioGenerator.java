@@ -0,0 +1,164 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.exception.LlmUnavailableException;
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a page section by section: the resume text is split into
+ * {@link ResumeSection}s, every section that needs it is generated by its own Gemini call,
+ * all of them at once, and the results are put into the shared skeleton of
+ * {@link SectionPromptTemplate}. Page latency is that of the slowest section rather than
+ * of one long response.
+ * <p>
+ * Given the manifest of an earlier generation, sections whose text and templates hash the
+ * same reuse the stored HTML, so a small resume edit only regenerates what changed. The
+ * calls still go through {@link WeightedFairScheduler}, which bounds how many run at once.
+ */
+@Service
+public class SectionedPortfolioGenerator {
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final int MAX_TITLE_LENGTH = 100;
+
+	private final GeminiService geminiService;
+	private final ResumeSectionSplitter splitter;
+	private final SectionPromptTemplate template;
+	private final ExecutorService executor;
+	private final Counter generatedSections;
+	private final Counter reusedSections;
+
+	private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+
+	public SectionedPortfolioGenerator(GeminiService geminiService, ResumeSectionSplitter splitter, SectionPromptTemplate template,
+									   MeterRegistry meterRegistry,
+									   @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+		this.geminiService = geminiService;
+		this.splitter = splitter;
+		this.template = template;
+		// Unbounded: the threads mostly wait for an LLM slot from the scheduler.
+		this.executor = WorkerThreads.unbounded("section-worker-", virtualThreads);
+		this.generatedSections = Counter.builder("portfolio.sections")
+				.description("Page sections generated by Gemini or reused from an earlier generation")
+				.tag("result", "generated")
+				.register(meterRegistry);
+		this.reusedSections = Counter.builder("portfolio.sections")
+				.description("Page sections generated by Gemini or reused from an earlier generation")
+				.tag("result", "reused")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * A generated page with the sections it was assembled from.
+	 */
+	public record SectionedPage(String html, String templateVersion, List<SectionManifest.Section> sections, int generatedSections) {
+	}
+
+	/**
+	 * Generates the page for {@code resumeText}, reusing sections of {@code previous}
+	 * (which may be {@code null}) whose hashes still match.
+	 */
+	public SectionedPage generate(String resumeText, SectionManifest previous) throws IOException {
+		Map<ResumeSection, String> texts = splitter.split(resumeText);
+		Map<String, SectionManifest.Section> previousSections = new HashMap<>();
+		if (previous != null) {
+			previous.sections().forEach(section -> previousSections.put(section.id(), section));
+		}
+
+		ContextSnapshot context = contextSnapshotFactory.captureAll();
+		Map<ResumeSection, String> hashes = new EnumMap<>(ResumeSection.class);
+		Map<ResumeSection, String> reused = new EnumMap<>(ResumeSection.class);
+		Map<ResumeSection, Future<String>> pending = new EnumMap<>(ResumeSection.class);
+		try {
+			texts.forEach((section, text) -> {
+				String hash = hash(section, text);
+				hashes.put(section, hash);
+				SectionManifest.Section stored = previousSections.get(section.id());
+				if (stored != null && stored.hash().equals(hash)) {
+					reused.put(section, stored.html());
+				} else {
+					pending.put(section, executor.submit(context.wrap(() -> geminiService.generateSectionHtml(section, text))));
+				}
+			});
+
+			Map<ResumeSection, String> html = new EnumMap<>(reused);
+			for (Map.Entry<ResumeSection, Future<String>> generation : pending.entrySet()) {
+				html.put(generation.getKey(), await(generation.getValue()));
+			}
+			generatedSections.increment(pending.size());
+			reusedSections.increment(reused.size());
+			return assemble(texts, hashes, html, pending.size());
+		} finally {
+			// Only does anything if a section failed; the others are not worth finishing.
+			pending.values().forEach(future -> future.cancel(true));
+		}
+	}
+
+	private String await(Future<String> generation) throws IOException {
+		try {
+			return generation.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating page sections", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException cause) {
+				throw cause;
+			}
+			if (e.getCause() instanceof LlmUnavailableException cause) {
+				throw cause;
+			}
+			throw new IOException("Section generation failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private SectionedPage assemble(Map<ResumeSection, String> texts, Map<ResumeSection, String> hashes,
+								   Map<ResumeSection, String> html, int generated) {
+		List<SectionManifest.Section> sections = new ArrayList<>(html.size());
+		List<String> bodySections = new ArrayList<>(html.size());
+		html.forEach((section, sectionHtml) -> {
+			sections.add(new SectionManifest.Section(section.id(), hashes.get(section), sectionHtml));
+			if (section != ResumeSection.HEADER) {
+				bodySections.add(sectionHtml);
+			}
+		});
+		String page = template.assemble(title(texts.get(ResumeSection.HEADER)),
+				html.getOrDefault(ResumeSection.HEADER, ""), bodySections);
+		return new SectionedPage(page, template.version(), sections, generated);
+	}
+
+	/**
+	 * The first line of the header text, which is normally the person's name.
+	 */
+	private String title(String headerText) {
+		if (headerText == null || headerText.isBlank()) {
+			return "Portfolio";
+		}
+		String firstLine = headerText.strip().lines().findFirst().orElse("Portfolio").strip();
+		return firstLine.length() > MAX_TITLE_LENGTH ? firstLine.substring(0, MAX_TITLE_LENGTH) : firstLine;
+	}
+
+	private String hash(ResumeSection section, String text) {
+		String normalized = WHITESPACE.matcher(text).replaceAll(" ").strip();
+		return SectionPromptTemplate.sha256(template.version() + "\n" + section.id() + "\n" + normalized);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,10 @@
+package com.portfoliogenerator.service;
+
+import java.nio.file.Path;
+
+/**
+ * A stored portfolio file as a byte region of a local file, ready to be read or sent
+ * with {@code sendfile}. For plain files the region is the whole file.
+ */
+public record StoredFile(Path path, long offset, long length, long lastModifiedMillis) {
+}
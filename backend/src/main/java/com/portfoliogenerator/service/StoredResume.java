@@ -0,0 +1,11 @@
+package com.portfoliogenerator.service;
+
+/**
+ * Stored next to a page generated in structured mode as {@code resume.json}: the extracted
+ * resume and the theme it is rendered with, so the page can be re-themed without calling
+ * Gemini. {@code tenant} is the tenant the portfolio was generated for; only that tenant
+ * may re-theme or regenerate it.
+ */
+public record StoredResume(String theme, String tenant, ResumeData resume) {
+	public static final String FILENAME = "resume.json";
+}
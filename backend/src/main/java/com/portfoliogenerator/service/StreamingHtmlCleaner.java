@@ -0,0 +1,166 @@
+package com.portfoliogenerator.service;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Incremental version of the Gemini response cleanup: strips a leading markdown code
+ * fence (```html or ```), a trailing ``` fence and surrounding whitespace, and checks
+ * that the document starts with {@code <!DOCTYPE html>}, while text is still arriving.
+ * <p>
+ * Text is only held back while it could still turn out to be part of a fence or of
+ * trailing whitespace; everything else is released as soon as it is accepted.
+ * Instances are single-use and not thread-safe.
+ */
+public class StreamingHtmlCleaner {
+	private static final String FENCE = "```";
+	private static final String HTML_FENCE = "```html";
+	private static final String DOCTYPE = "<!doctype html>";
+	// Language tags after an opening fence are short; longer first lines are treated as content.
+	private static final int MAX_FENCE_LINE = 15;
+
+	private enum State { LEADING, FENCE_HEADER, DOCTYPE, BODY }
+
+	private final StringBuilder pending = new StringBuilder();
+	private State state = State.LEADING;
+	private boolean fenced;
+
+	/**
+	 * Accepts the next chunk of raw model output and returns the cleaned text that can be
+	 * emitted now, which may be empty.
+	 *
+	 * @throws IOException if the output can no longer be a valid HTML document
+	 */
+	public String accept(String chunk) throws IOException {
+		pending.append(chunk);
+		return drain(false);
+	}
+
+	/**
+	 * Signals the end of the model output and returns whatever cleaned text is left.
+	 *
+	 * @throws IOException if the complete output is not a valid HTML document
+	 */
+	public String finish() throws IOException {
+		return drain(true);
+	}
+
+	private String drain(boolean finished) throws IOException {
+		if (state == State.LEADING) {
+			stripLeadingWhitespace();
+			if (pending.isEmpty() || (!finished && couldStillBe(pending, HTML_FENCE))) {
+				return waitForMore(finished);
+			}
+			if (startsWith(pending, FENCE)) {
+				fenced = true;
+				state = State.FENCE_HEADER;
+			} else {
+				state = State.DOCTYPE;
+			}
+		}
+
+		if (state == State.FENCE_HEADER) {
+			int newline = pending.indexOf("\n");
+			if (startsWith(pending, HTML_FENCE)) {
+				pending.delete(0, HTML_FENCE.length());
+			} else if (newline != -1 && newline < MAX_FENCE_LINE) {
+				pending.delete(0, newline + 1);
+			} else if (newline == -1 && pending.length() < MAX_FENCE_LINE && !finished) {
+				return "";
+			} else {
+				pending.delete(0, FENCE.length());
+			}
+			state = State.DOCTYPE;
+		}
+
+		if (state == State.DOCTYPE) {
+			stripLeadingWhitespace();
+			if (pending.length() < DOCTYPE.length() && !finished) {
+				if (!couldStillBe(pending, DOCTYPE)) {
+					throw invalidHtml();
+				}
+				return "";
+			}
+			if (!startsWith(pending, DOCTYPE)) {
+				throw invalidHtml();
+			}
+			state = State.BODY;
+		}
+
+		return finished ? releaseAll() : releaseSafePrefix();
+	}
+
+	/**
+	 * Releases everything except a tail that may still be trailing whitespace or a
+	 * closing fence.
+	 */
+	private String releaseSafePrefix() {
+		int release = pending.length();
+		release = skipWhitespaceBackwards(release);
+		if (fenced) {
+			release = skipWhitespaceBackwards(Math.max(0, release - FENCE.length()));
+		}
+		if (release == 0) {
+			return "";
+		}
+		String text = pending.substring(0, release);
+		pending.delete(0, release);
+		return text;
+	}
+
+	private String releaseAll() {
+		pending.setLength(pending.length() - trailingWhitespaceLength());
+		if (fenced && endsWith(pending, FENCE)) {
+			pending.setLength(pending.length() - FENCE.length());
+			pending.setLength(pending.length() - trailingWhitespaceLength());
+		}
+		String text = pending.toString();
+		pending.setLength(0);
+		return text;
+	}
+
+	private String waitForMore(boolean finished) throws IOException {
+		if (finished) {
+			throw invalidHtml();
+		}
+		return "";
+	}
+
+	private void stripLeadingWhitespace() {
+		int start = 0;
+		while (start < pending.length() && Character.isWhitespace(pending.charAt(start))) {
+			start++;
+		}
+		pending.delete(0, start);
+	}
+
+	private int trailingWhitespaceLength() {
+		return pending.length() - skipWhitespaceBackwards(pending.length());
+	}
+
+	private int skipWhitespaceBackwards(int end) {
+		while (end > 0 && Character.isWhitespace(pending.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	private static boolean couldStillBe(CharSequence text, String prefix) {
+		return text.length() < prefix.length() && prefix.startsWith(text.toString().toLowerCase(Locale.ROOT));
+	}
+
+	private static boolean startsWith(CharSequence text, String prefix) {
+		return text.length() >= prefix.length()
+				&& text.subSequence(0, prefix.length()).toString().toLowerCase(Locale.ROOT).equals(prefix);
+	}
+
+	private static boolean endsWith(CharSequence text, String suffix) {
+		return text.length() >= suffix.length()
+				&& text.subSequence(text.length() - suffix.length(), text.length()).toString().equals(suffix);
+	}
+
+	private IOException invalidHtml() {
+		String preview = pending.substring(0, Math.min(pending.length(), 200));
+		return new IOException("Gemini did not return valid HTML after cleaning. Cleaned response preview: " + preview);
+	}
+}
@@ -0,0 +1,192 @@
+package com.portfoliogenerator.service;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiExceptionFactory;
+import io.grpc.Status;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Vertex AI client. Returns a small, valid portfolio page, a
+ * single section element for section prompts, or resume JSON in structured mode, after a
+ * configurable delay so the upload pipeline can be run and benchmarked offline.
+ * In streaming mode the delay is spread evenly over the emitted chunks.
+ * <p>
+ * With {@code latency-sigma} above zero the delay is log-normally distributed around
+ * {@code latency} as its median, which gives the long tail real model calls have.
+ * <p>
+ * To exercise {@link ResilientLlmClient}, a fraction of calls can be made slow
+ * ({@code slow-rate}, taking {@code slow-latency}) or fail straight away the way Vertex AI
+ * does when it is unavailable ({@code error-rate}).
+ */
+@Component
+@Qualifier("llmProvider")
+@ConditionalOnProperty(name = "app.llm.provider", havingValue = "stub")
+public class StubLlmClient implements LlmClient {
+	private static final String RESUME_START = "Input Resume Text:\n```\n";
+	private static final String SECTION_START = "Resume text for this section:\n```\n";
+	private static final Pattern SECTION_OPENING_TAG = Pattern.compile("starting with `(<(\\w+)[^`]*>)`");
+
+	private final Duration latency;
+	private final double latencySigma;
+	private final int streamChunks;
+	private final double errorRate;
+	private final double slowRate;
+	private final Duration slowLatency;
+
+	public StubLlmClient(
+			@Value("${app.llm.stub.latency:PT0S}") Duration latency,
+			@Value("${app.llm.stub.latency-sigma:0}") double latencySigma,
+			@Value("${app.llm.stub.stream-chunks:20}") int streamChunks,
+			@Value("${app.llm.stub.error-rate:0}") double errorRate,
+			@Value("${app.llm.stub.slow-rate:0}") double slowRate,
+			@Value("${app.llm.stub.slow-latency:PT0S}") Duration slowLatency) {
+		this.latency = latency;
+		this.latencySigma = latencySigma;
+		this.streamChunks = Math.max(1, streamChunks);
+		this.errorRate = errorRate;
+		this.slowRate = slowRate;
+		this.slowLatency = slowLatency;
+	}
+
+	@Override
+	public String generateContent(String prompt) throws IOException {
+		pause(nextLatency().toNanos());
+		return renderResponse(prompt);
+	}
+
+	@Override
+	public String generateJson(String prompt, String responseSchema) throws IOException {
+		pause(nextLatency().toNanos());
+		return "```json\n" + renderResumeJson(extractResumeText(prompt, RESUME_START)) + "\n```";
+	}
+
+	@Override
+	public void streamContent(String prompt, Consumer<String> chunkConsumer) throws IOException {
+		long pausePerChunk = nextLatency().toNanos() / streamChunks;
+		String page = renderResponse(prompt);
+		int chunkLength = (page.length() + streamChunks - 1) / streamChunks;
+
+		for (int start = 0; start < page.length(); start += chunkLength) {
+			pause(pausePerChunk);
+			chunkConsumer.accept(page.substring(start, Math.min(page.length(), start + chunkLength)));
+		}
+	}
+
+	/**
+	 * Picks this call's delay, or fails it if it is one of the injected errors.
+	 */
+	private Duration nextLatency() throws IOException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (errorRate > 0 && random.nextDouble() < errorRate) {
+			throw new IOException("Injected stub failure", ApiExceptionFactory.createException(
+					"Injected stub failure", null, GrpcStatusCode.of(Status.Code.UNAVAILABLE), true));
+		}
+		if (slowRate > 0 && random.nextDouble() < slowRate) {
+			return slowLatency;
+		}
+		if (latencySigma > 0) {
+			return Duration.ofNanos((long) (latency.toNanos() * Math.exp(latencySigma * random.nextGaussian())));
+		}
+		return latency;
+	}
+
+	private void pause(long nanos) throws IOException {
+		if (nanos <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Stub generation was interrupted", e);
+		}
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return true;
+	}
+
+	private String renderResponse(String prompt) {
+		// Wrapped in a code fence the way Gemini often answers, to exercise the cleanup path.
+		Matcher section = SECTION_OPENING_TAG.matcher(prompt);
+		if (prompt.contains(SECTION_START) && section.find()) {
+			return "```html\n" + renderSection(section.group(1), section.group(2), extractResumeText(prompt, SECTION_START)) + "\n```";
+		}
+		return "```html\n" + renderPage(extractResumeText(prompt, RESUME_START)) + "\n```";
+	}
+
+	private String extractResumeText(String prompt, String marker) {
+		int start = prompt.indexOf(marker);
+		if (start < 0) {
+			return "";
+		}
+		start += marker.length();
+		int end = prompt.indexOf("\n```", start);
+		return end < 0 ? prompt.substring(start) : prompt.substring(start, end);
+	}
+
+	private String renderPage(String resumeText) {
+		StringBuilder html = new StringBuilder(resumeText.length() + 512);
+		html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"UTF-8\">\n")
+				.append("<title>Portfolio</title>\n<style>body{font-family:Arial,sans-serif;margin:2rem;}</style>\n")
+				.append("</head>\n<body>\n<main>\n");
+		appendParagraphs(html, resumeText);
+		return html.append("</main>\n</body>\n</html>").toString();
+	}
+
+	/**
+	 * The first line becomes the name, the second the title and the rest the summary.
+	 */
+	private String renderResumeJson(String resumeText) {
+		List<String> lines = resumeText.lines().map(String::strip).filter(line -> !line.isEmpty()).toList();
+		String name = lines.isEmpty() ? "Stub Resume" : lines.get(0);
+		String title = lines.size() > 1 ? lines.get(1) : "";
+		String summary = lines.size() > 2 ? String.join(" ", lines.subList(2, lines.size())) : "";
+		return "{\"name\":" + jsonString(name) + ",\"title\":" + jsonString(title) + ",\"summary\":" + jsonString(summary)
+				+ ",\"skills\":[],\"experience\":[],\"projects\":[],\"education\":[],\"additional\":[]}";
+	}
+
+	private String jsonString(String text) {
+		StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+		for (char c : text.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private String renderSection(String openingTag, String elementName, String sectionText) {
+		StringBuilder html = new StringBuilder(sectionText.length() + 128).append(openingTag).append('\n');
+		appendParagraphs(html, sectionText);
+		return html.append("</").append(elementName).append('>').toString();
+	}
+
+	private void appendParagraphs(StringBuilder html, String text) {
+		for (String line : text.split("\n")) {
+			if (!line.isBlank()) {
+				html.append("<p>").append(escape(line.trim())).append("</p>\n");
+			}
+		}
+	}
+
+	private String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
@@ -0,0 +1,10 @@
+package com.portfoliogenerator.service;
+
+/**
+ * A caller identified by its API key. {@code weight} is the tenant's share of LLM
+ * concurrency relative to other busy tenants. The per-minute quotas apply to the tenant
+ * as a whole, or to each client address separately when {@code quotaPerClient} is set,
+ * which suits a browser frontend whose users all share one key.
+ */
+public record Tenant(String name, int weight, int uploadsPerMinute, int requestsPerMinute, boolean quotaPerClient) {
+}
@@ -0,0 +1,30 @@
+package com.portfoliogenerator.service;
+
+/**
+ * The tenant of the request being handled on the current thread. Set by
+ * {@code ApiKeyAuthFilter} and registered with the context-propagation registry, so it
+ * follows generation work onto the worker pool together with the trace context.
+ */
+public final class TenantContext {
+	public static final String CONTEXT_KEY = "portfolio.tenant";
+
+	private static final ThreadLocal<Tenant> CURRENT = new ThreadLocal<>();
+
+	private TenantContext() {
+	}
+
+	/**
+	 * Returns the current tenant, or {@code null} outside an authenticated request.
+	 */
+	public static Tenant get() {
+		return CURRENT.get();
+	}
+
+	public static void set(Tenant tenant) {
+		CURRENT.set(tenant);
+	}
+
+	public static void clear() {
+		CURRENT.remove();
+	}
+}
@@ -0,0 +1,105 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.config.TenantProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves API keys to tenants. Only SHA-256 digests of the keys are held, indexed by
+ * digest, so authenticating is one hash and one map probe however many keys exist. The
+ * probe compares digests rather than keys, so its timing says nothing useful about the
+ * key, and the final comparison uses {@link MessageDigest#isEqual}, which is constant-time.
+ * <p>
+ * A non-empty {@code app.security.api-key} is registered as the {@code default} tenant
+ * with per-client quotas, which keeps single-key deployments behaving as before.
+ */
+@Service
+public class TenantRegistry {
+	private static final Logger logger = LoggerFactory.getLogger(TenantRegistry.class);
+
+	public static final String DEFAULT_TENANT = "default";
+
+	private record KeyEntry(byte[] digest, Tenant tenant) {
+	}
+
+	private final Map<String, KeyEntry> keysByDigest = new HashMap<>();
+	private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+
+	public TenantRegistry(TenantProperties properties,
+						  @Value("${app.security.api-key:}") String defaultApiKey,
+						  @Value("${app.security.default-tenant-weight:1}") int defaultTenantWeight) {
+		if (defaultApiKey != null && !defaultApiKey.isEmpty()) {
+			register(new Tenant(DEFAULT_TENANT, defaultTenantWeight, 3, 10, true), sha256(defaultApiKey));
+		}
+		for (TenantProperties.TenantDefinition definition : properties.getTenants()) {
+			if (definition.getName() == null || definition.getName().isBlank() || definition.getWeight() < 1) {
+				throw new IllegalStateException("Tenants need a name and a weight of at least 1: " + definition);
+			}
+			Tenant tenant = new Tenant(definition.getName(), definition.getWeight(),
+					definition.getUploadsPerMinute(), definition.getRequestsPerMinute(), definition.isQuotaPerClient());
+			for (String keyDigest : definition.getKeySha256()) {
+				register(tenant, parseDigest(tenant.name(), keyDigest));
+			}
+		}
+		logger.info("Loaded {} tenants with {} API keys.", tenants.size(), keysByDigest.size());
+	}
+
+	private void register(Tenant tenant, byte[] digest) {
+		if (tenants.putIfAbsent(tenant.name(), tenant) != null && !tenants.get(tenant.name()).equals(tenant)) {
+			throw new IllegalStateException("Tenant " + tenant.name() + " is configured more than once.");
+		}
+		KeyEntry previous = keysByDigest.putIfAbsent(toHex(digest), new KeyEntry(digest, tenant));
+		if (previous != null) {
+			throw new IllegalStateException("An API key is assigned to both " + previous.tenant().name() + " and " + tenant.name());
+		}
+	}
+
+	public Optional<Tenant> authenticate(String apiKey) {
+		if (apiKey == null || apiKey.isEmpty()) {
+			return Optional.empty();
+		}
+		byte[] digest = sha256(apiKey);
+		KeyEntry entry = keysByDigest.get(toHex(digest));
+		if (entry == null || !MessageDigest.isEqual(entry.digest(), digest)) {
+			return Optional.empty();
+		}
+		return Optional.of(entry.tenant());
+	}
+
+	public Collection<Tenant> getTenants() {
+		return tenants.values();
+	}
+
+	private static byte[] parseDigest(String tenantName, String hex) {
+		String normalized = hex.trim().toLowerCase(Locale.ROOT);
+		if (!normalized.matches("[0-9a-f]{64}")) {
+			throw new IllegalStateException("Key for tenant " + tenantName + " is not a hex SHA-256 digest.");
+		}
+		return HexFormat.of().parseHex(normalized);
+	}
+
+	private static String toHex(byte[] digest) {
+		return HexFormat.of().formatHex(digest);
+	}
+
+	private static byte[] sha256(String value) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
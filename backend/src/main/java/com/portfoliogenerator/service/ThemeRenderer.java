@@ -0,0 +1,118 @@
+package com.portfoliogenerator.service;
+
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.Template;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders {@link ResumeData} into a page with one of the configured themes. Themes are
+ * Mustache templates under {@code app.render.theme-location}, {@code <name>.mustache},
+ * which may include shared partials such as {@code _content}. All of them are compiled
+ * and rendered once at startup, so a broken theme fails the start and a request never
+ * compiles anything.
+ * <p>
+ * Values are HTML-escaped by the template engine; links are only ever the plain URLs that
+ * {@link ResumeDataParser} lets through.
+ */
+@Component
+public class ThemeRenderer {
+	private static final String SUFFIX = ".mustache";
+	private static final ResumeData SAMPLE = new ResumeData("Sample", null, null, null,
+			List.of(), List.of(), List.of(), List.of(), List.of());
+	private static final ResumeData.Contact NO_CONTACT = new ResumeData.Contact(null, null, null, null, null, null);
+
+	private final Map<String, Template> themes;
+	private final String defaultTheme;
+
+	public ThemeRenderer(
+			@Value("${app.render.themes:classic,modern,minimal}") String[] themeNames,
+			@Value("${app.render.default-theme:classic}") String defaultTheme,
+			@Value("${app.render.theme-location:classpath:themes/}") String location,
+			ResourceLoader resourceLoader) {
+		Mustache.Compiler compiler = Mustache.compiler()
+				.defaultValue("")
+				.emptyStringIsFalse(true)
+				.withLoader(name -> reader(resourceLoader.getResource(location + name + SUFFIX)));
+
+		Map<String, Template> compiled = new LinkedHashMap<>();
+		for (String name : themeNames) {
+			String theme = name.trim();
+			if (theme.isEmpty()) {
+				continue;
+			}
+			try {
+				Template template = compiler.compile(reader(resourceLoader.getResource(location + theme + SUFFIX)));
+				// Loads and compiles the partials too, which happens on first use.
+				template.execute(view(SAMPLE));
+				compiled.put(theme, template);
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not compile theme " + theme + " from " + location, e);
+			}
+		}
+		if (!compiled.containsKey(defaultTheme)) {
+			throw new IllegalStateException("Default theme " + defaultTheme + " is not one of app.render.themes " + compiled.keySet());
+		}
+		this.themes = Collections.unmodifiableMap(compiled);
+		this.defaultTheme = defaultTheme;
+	}
+
+	private static InputStreamReader reader(Resource resource) {
+		try {
+			return new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load theme template " + resource, e);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if {@code theme} is not a configured theme
+	 */
+	public String render(String theme, ResumeData resume) {
+		Template template = themes.get(theme);
+		if (template == null) {
+			throw new IllegalArgumentException("Unknown theme '" + theme + "'. Available themes: " + String.join(", ", themes.keySet()));
+		}
+		return template.execute(view(resume));
+	}
+
+	public boolean hasTheme(String theme) {
+		return themes.containsKey(theme);
+	}
+
+	public Set<String> themes() {
+		return themes.keySet();
+	}
+
+	public String defaultTheme() {
+		return defaultTheme;
+	}
+
+	/**
+	 * The template context: the resume, its contact details (never {@code null}) and flags
+	 * for the sections that have content, which Mustache cannot test for lists directly.
+	 */
+	private static Map<String, Object> view(ResumeData resume) {
+		Map<String, Object> view = new HashMap<>();
+		view.put("resume", resume);
+		view.put("contact", resume.contact() != null ? resume.contact() : NO_CONTACT);
+		view.put("hasSkills", !resume.skills().isEmpty());
+		view.put("hasExperience", !resume.experience().isEmpty());
+		view.put("hasProjects", !resume.projects().isEmpty());
+		view.put("hasEducation", !resume.education().isEmpty());
+		return view;
+	}
+}
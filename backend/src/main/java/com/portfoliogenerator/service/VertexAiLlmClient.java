@@ -0,0 +1,243 @@
+package com.portfoliogenerator.service;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.vertexai.VertexAI;
+import com.google.cloud.vertexai.api.GenerateContentResponse;
+import com.google.cloud.vertexai.api.GenerationConfig;
+import com.google.cloud.vertexai.generativeai.GenerativeModel;
+import com.google.cloud.vertexai.generativeai.ResponseHandler;
+import com.google.cloud.vertexai.generativeai.ResponseStream;
+import com.google.cloud.vertexai.generativeai.SchemaMaker;
+import com.google.protobuf.InvalidProtocolBufferException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Vertex AI backed {@link LlmClient}. A single {@link VertexAI} instance (and with it the
+ * gRPC channel and credentials) is created and warmed at startup and shared by all
+ * requests. A periodic health check rebuilds the client if the channel stops working.
+ * Timeouts, retries and circuit breaking are added by {@link ResilientLlmClient}.
+ */
+@Component
+@Qualifier("llmProvider")
+@ConditionalOnProperty(name = "app.llm.provider", havingValue = "vertex", matchIfMissing = true)
+public class VertexAiLlmClient implements LlmClient {
+	private static final Logger logger = LoggerFactory.getLogger(VertexAiLlmClient.class);
+
+	private static final Set<StatusCode.Code> CHANNEL_FAILURE_CODES = EnumSet.of(
+			StatusCode.Code.UNAVAILABLE,
+			StatusCode.Code.UNAUTHENTICATED,
+			StatusCode.Code.INTERNAL);
+
+	private final String projectId;
+	private final String location;
+	private final String modelName;
+
+	private final ReentrantLock lifecycleLock = new ReentrantLock();
+	// Parsed response schemas; there is one per structured prompt.
+	private final Map<String, GenerationConfig> jsonConfigs = new ConcurrentHashMap<>();
+	private volatile Connection connection;
+	private volatile boolean healthy;
+
+	public VertexAiLlmClient(
+			@Value("${gemini.project-id}") String projectId,
+			@Value("${gemini.location}") String location,
+			@Value("${gemini.model-name}") String modelName) {
+		this.projectId = projectId;
+		this.location = location;
+		this.modelName = modelName;
+	}
+
+	@PostConstruct
+	public void start() {
+		try {
+			connect(null);
+		} catch (Exception e) {
+			// Do not block startup on Vertex AI; the health check keeps retrying.
+			logger.warn("Could not warm up the Vertex AI client at startup: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public String generateContent(String prompt) throws IOException {
+		return generate(currentConnection().model(), prompt);
+	}
+
+	@Override
+	public String generateJson(String prompt, String responseSchema) throws IOException {
+		GenerationConfig config = jsonConfigs.get(responseSchema);
+		if (config == null) {
+			try {
+				config = GenerationConfig.newBuilder()
+						.setResponseMimeType("application/json")
+						.setResponseSchema(SchemaMaker.fromJsonString(responseSchema))
+						.build();
+			} catch (InvalidProtocolBufferException e) {
+				throw new IllegalArgumentException("Invalid response schema: " + e.getMessage(), e);
+			}
+			jsonConfigs.put(responseSchema, config);
+		}
+		// Only copies the model's settings; the connection is shared.
+		return generate(currentConnection().model().withGenerationConfig(config), prompt);
+	}
+
+	private String generate(GenerativeModel model, String prompt) throws IOException {
+		GenerateContentResponse response;
+		try {
+			response = model.generateContent(prompt);
+		} catch (Exception e) {
+			if (isChannelFailure(e)) {
+				healthy = false;
+			}
+			throw new IOException("Failed to generate content from Gemini: " + e.getMessage(), e);
+		}
+
+		if (response == null || response.getCandidatesList().isEmpty()) {
+			throw new IOException("Received no response or empty candidates list from Gemini.");
+		}
+		return ResponseHandler.getText(response);
+	}
+
+	@Override
+	public void streamContent(String prompt, Consumer<String> chunkConsumer) throws IOException {
+		Connection current = currentConnection();
+
+		try {
+			ResponseStream<GenerateContentResponse> stream = current.model().generateContentStream(prompt);
+			for (GenerateContentResponse response : stream) {
+				// The final message of a stream may carry only the finish reason and no text.
+				if (response.getCandidatesCount() > 0 && response.getCandidates(0).getContent().getPartsCount() > 0) {
+					chunkConsumer.accept(ResponseHandler.getText(response));
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			// Failures raised by the consumer are not Gemini errors.
+			throw e;
+		} catch (Exception e) {
+			if (isChannelFailure(e)) {
+				healthy = false;
+			}
+			throw new IOException("Failed to stream content from Gemini: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean isHealthy() {
+		return healthy;
+	}
+
+	@Scheduled(fixedDelayString = "${app.llm.health-check-interval:PT1M}", initialDelayString = "${app.llm.health-check-interval:PT1M}")
+	public void checkHealth() {
+		Connection current = connection;
+		if (current != null) {
+			try {
+				current.model().countTokens("ping");
+				healthy = true;
+				return;
+			} catch (Exception e) {
+				logger.warn("Vertex AI health check failed, rebuilding client: {}", e.getMessage());
+			}
+		}
+
+		try {
+			connect(current);
+		} catch (Exception e) {
+			healthy = false;
+			logger.error("Could not rebuild the Vertex AI client: {}", e.getMessage());
+		}
+	}
+
+	private Connection currentConnection() throws IOException {
+		Connection current = connection;
+		if (current != null) {
+			return current;
+		}
+		try {
+			return connect(null);
+		} catch (Exception e) {
+			throw new IOException("Vertex AI client is not available: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Builds a new connection in place of {@code stale}, or returns the current one if another
+	 * thread has already replaced it. {@code null} asks for any connection.
+	 */
+	private Connection connect(Connection stale) throws IOException {
+		lifecycleLock.lock();
+		try {
+			Connection existing = connection;
+			if (existing != null && existing != stale) {
+				return existing;
+			}
+			VertexAI vertexAI = new VertexAI(projectId, location);
+			try {
+				GenerativeModel model = new GenerativeModel(modelName, vertexAI);
+				// Creates the channel, loads credentials and completes the TLS handshake up front.
+				vertexAI.getPredictionServiceClient();
+				model.countTokens("ping");
+
+				Connection fresh = new Connection(vertexAI, model);
+				connection = fresh;
+				healthy = true;
+				if (existing != null) {
+					existing.vertexAI().close();
+				}
+				logger.info("Vertex AI client ready for model {} in {}.", modelName, location);
+				return fresh;
+			} catch (IOException | RuntimeException e) {
+				vertexAI.close();
+				throw e;
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	private boolean isChannelFailure(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ApiException apiException
+					&& CHANNEL_FAILURE_CODES.contains(apiException.getStatusCode().getCode())) {
+				return true;
+			}
+			if (cause instanceof IllegalStateException) {
+				// Thrown by gax when a call is made on a channel that has been shut down.
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@PreDestroy
+	public void close() {
+		lifecycleLock.lock();
+		try {
+			if (connection != null) {
+				connection.vertexAI().close();
+				connection = null;
+			}
+		} finally {
+			lifecycleLock.unlock();
+		}
+	}
+
+	private record Connection(VertexAI vertexAI, GenerativeModel model) {
+	}
+}
@@ -0,0 +1,262 @@
+package com.portfoliogenerator.service;
+
+import com.portfoliogenerator.dto.TenantQueueStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares the concurrent LLM calls allowed by {@link AdaptiveConcurrencyLimit} between
+ * tenants in proportion to their weights, so one tenant's burst queues behind its own work
+ * instead of everyone else's.
+ * <p>
+ * This is weighted fair queueing: each waiting call gets a virtual finish tag of
+ * {@code max(virtualTime, tenant's previous tag) + 1 / weight} and the free slot goes to
+ * the smallest tag. A tenant with weight 2 therefore gets two slots for every one of a
+ * weight-1 tenant while both are busy. Idle tenants do not bank credit, because their next
+ * tag starts from the current virtual time.
+ * <p>
+ * When the limit shrinks, slots are simply not handed out again until fewer calls than the
+ * new limit are running; when it grows, the next release grants the extra slots.
+ * <p>
+ * Waiting callers park on a {@link ReentrantLock} condition of their own rather than a
+ * monitor, so with virtual threads a queued upload releases its carrier thread and a
+ * release wakes only the callers it granted a slot to.
+ * <p>
+ * Speculative calls, such as hedged requests, take a slot with {@link #tryAcquire} instead:
+ * only when one is free and no call is waiting, and charged to the tenant like any other.
+ */
+@Service
+public class WeightedFairScheduler {
+	private static final String UNKNOWN_TENANT = "unknown";
+
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final MeterRegistry meterRegistry;
+
+	// Everything below is guarded by lock.
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<String, TenantState> tenants = new LinkedHashMap<>();
+	private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+			Comparator.comparingDouble((Waiter waiter) -> waiter.finishTag).thenComparingLong(waiter -> waiter.sequence));
+	private int inUse;
+	private double virtualTime;
+	private long sequence;
+
+	private final class TenantState {
+		final String name;
+		final int weight;
+		final Timer queueWait;
+		double lastFinishTag;
+		int queued;
+		int active;
+		long dispatched;
+		long totalQueueWaitNanos;
+
+		TenantState(String name, int weight) {
+			this.name = name;
+			this.weight = weight;
+			this.queueWait = Timer.builder("portfolio.tenant.queue.wait").tag("tenant", name).register(meterRegistry);
+			Gauge.builder("portfolio.tenant.queue.depth", this, state -> state.snapshot().getQueued())
+					.tag("tenant", name).register(meterRegistry);
+			Gauge.builder("portfolio.tenant.llm.active", this, state -> state.snapshot().getActive())
+					.tag("tenant", name).register(meterRegistry);
+		}
+
+		TenantQueueStats snapshot() {
+			lock.lock();
+			try {
+				return new TenantQueueStats(name, weight, queued, active, dispatched, TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos));
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static final class Waiter {
+		final TenantState tenant;
+		final double startTag;
+		final double finishTag;
+		final long sequence;
+		final Condition turn;
+		boolean granted;
+
+		Waiter(TenantState tenant, double startTag, double finishTag, long sequence, Condition turn) {
+			this.tenant = tenant;
+			this.startTag = startTag;
+			this.finishTag = finishTag;
+			this.sequence = sequence;
+			this.turn = turn;
+		}
+	}
+
+	public WeightedFairScheduler(
+			AdaptiveConcurrencyLimit concurrencyLimit,
+			TenantRegistry tenantRegistry,
+			MeterRegistry meterRegistry) {
+		this.concurrencyLimit = concurrencyLimit;
+		this.meterRegistry = meterRegistry;
+		lock.lock();
+		try {
+			for (Tenant tenant : tenantRegistry.getTenants()) {
+				tenants.put(tenant.name(), new TenantState(tenant.name(), tenant.weight()));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs {@code work} once the tenant's turn for an LLM slot comes up. A {@code null}
+	 * tenant, which only happens outside an authenticated request, shares one weight-1 slot
+	 * queue.
+	 */
+	public <T> T run(Tenant tenant, Observation.CheckedCallable<T, IOException> work) throws IOException {
+		TenantState state = acquire(tenant);
+		try {
+			return work.call();
+		} finally {
+			release(state);
+		}
+	}
+
+	/**
+	 * Takes a slot for {@code tenant} without waiting, or returns {@code null} if every slot
+	 * is in use or other calls are queued for one. The slot is given back by closing it.
+	 */
+	public Slot tryAcquire(Tenant tenant) {
+		lock.lock();
+		try {
+			if (inUse >= concurrencyLimit.getLimit() || !waiting.isEmpty()) {
+				return null;
+			}
+			TenantState state = tenantState(tenant);
+			grant(newWaiter(state, null));
+			return new Slot(state);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private TenantState acquire(Tenant tenant) throws InterruptedIOException {
+		long enqueuedAt = System.nanoTime();
+		TenantState state;
+		lock.lock();
+		try {
+			state = tenantState(tenant);
+			Waiter waiter = newWaiter(state, lock.newCondition());
+
+			if (inUse < concurrencyLimit.getLimit() && waiting.isEmpty()) {
+				grant(waiter);
+			} else {
+				waiting.add(waiter);
+				state.queued++;
+				try {
+					while (!waiter.granted) {
+						waiter.turn.await();
+					}
+				} catch (InterruptedException e) {
+					if (waiter.granted) {
+						release(state);
+					} else {
+						waiting.remove(waiter);
+						state.queued--;
+					}
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for an LLM slot");
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		long waitNanos = System.nanoTime() - enqueuedAt;
+		state.queueWait.record(waitNanos, TimeUnit.NANOSECONDS);
+		lock.lock();
+		try {
+			state.totalQueueWaitNanos += waitNanos;
+		} finally {
+			lock.unlock();
+		}
+		return state;
+	}
+
+	private TenantState tenantState(Tenant tenant) {
+		return tenants.computeIfAbsent(tenant != null ? tenant.name() : UNKNOWN_TENANT,
+				name -> new TenantState(name, tenant != null ? tenant.weight() : 1));
+	}
+
+	private Waiter newWaiter(TenantState state, Condition turn) {
+		double startTag = Math.max(virtualTime, state.lastFinishTag);
+		Waiter waiter = new Waiter(state, startTag, startTag + 1.0 / state.weight, sequence++, turn);
+		state.lastFinishTag = waiter.finishTag;
+		return waiter;
+	}
+
+	private void release(TenantState state) {
+		lock.lock();
+		try {
+			inUse--;
+			state.active--;
+			while (inUse < concurrencyLimit.getLimit() && !waiting.isEmpty()) {
+				Waiter next = waiting.poll();
+				next.tenant.queued--;
+				grant(next);
+				next.turn.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void grant(Waiter waiter) {
+		inUse++;
+		waiter.granted = true;
+		waiter.tenant.active++;
+		waiter.tenant.dispatched++;
+		virtualTime = Math.max(virtualTime, waiter.startTag);
+	}
+
+	/**
+	 * A slot taken by {@link #tryAcquire}. Closing it more than once has no further effect.
+	 */
+	public final class Slot implements AutoCloseable {
+		private final TenantState tenant;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Slot(TenantState tenant) {
+			this.tenant = tenant;
+		}
+
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) {
+				release(tenant);
+			}
+		}
+	}
+
+	public List<TenantQueueStats> getStats() {
+		lock.lock();
+		try {
+			List<TenantQueueStats> stats = new ArrayList<>(tenants.size());
+			tenants.values().forEach(state -> stats.add(state.snapshot()));
+			return stats;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
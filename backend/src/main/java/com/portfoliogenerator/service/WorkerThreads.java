@@ -0,0 +1,34 @@
+package com.portfoliogenerator.service;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads for the internal executors, virtual when {@code spring.threads.virtual.enabled}
+ * is set (which also moves Tomcat and the scheduler onto virtual threads), platform
+ * otherwise. Pools keep their configured sizes in both modes, since those sizes bound how
+ * much work runs at once rather than how many threads can be afforded.
+ * <p>
+ * CPU-bound work such as parallel PDF page extraction stays on its own platform pool.
+ */
+public final class WorkerThreads {
+
+	private WorkerThreads() {
+	}
+
+	public static ThreadFactory factory(String namePrefix, boolean virtual) {
+		return virtual ? Thread.ofVirtual().name(namePrefix, 1).factory() : new CustomizableThreadFactory(namePrefix);
+	}
+
+	/**
+	 * An unbounded executor: a new virtual thread per task, or a cached platform pool.
+	 */
+	public static ExecutorService unbounded(String namePrefix, boolean virtual) {
+		return virtual
+				? Executors.newThreadPerTaskExecutor(factory(namePrefix, true))
+				: Executors.newCachedThreadPool(factory(namePrefix, false));
+	}
+}
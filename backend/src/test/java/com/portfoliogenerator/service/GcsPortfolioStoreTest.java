@@ -0,0 +1,240 @@
+package com.portfoliogenerator.service;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Two stores over one in-memory fake of the GCS API stand in for two instances sharing a
+ * bucket, each with its own local cache.
+ */
+class GcsPortfolioStoreTest {
+	private static final String BUCKET = "portfolios-test";
+	private static final String PREFIX = "portfolios/";
+
+	private final Storage storage = withCreatePreconditions(LocalStorageHelper.customOptions(false).getService());
+	private final List<GcsPortfolioStore> stores = new ArrayList<>();
+
+	@TempDir
+	Path cacheRoot;
+
+	@AfterEach
+	void shutDown() throws InterruptedException {
+		for (GcsPortfolioStore store : stores) {
+			store.shutdown();
+		}
+	}
+
+	@Test
+	void readsThroughFilesWrittenByAnotherInstance() throws IOException, InterruptedException {
+		GcsPortfolioStore writer = store("a", Duration.ofHours(1));
+		GcsPortfolioStore reader = store("b", Duration.ofHours(1));
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		awaitUploaded("abc123/abc123.html", "<p>first</p>");
+
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>first</p>");
+		assertThat(reader.exists("abc123", "abc123.html")).isTrue();
+		assertThat(read(reader, "abc123", "missing.html")).isEmpty();
+	}
+
+	@Test
+	void servesRewritesFromAnotherInstanceOnceRevalidated() throws IOException, InterruptedException {
+		GcsPortfolioStore writer = store("a", Duration.ZERO);
+		GcsPortfolioStore reader = store("b", Duration.ZERO);
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		awaitUploaded("abc123/abc123.html", "<p>first</p>");
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>first</p>");
+
+		write(writer, "abc123", "abc123.html", "<p>second</p>");
+		awaitUploaded("abc123/abc123.html", "<p>second</p>");
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>second</p>");
+	}
+
+	@Test
+	void uploadsARewriteCommittedWhileTheFirstUploadIsInFlight() throws Exception {
+		CountDownLatch firstSent = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger uploads = new AtomicInteger();
+		doAnswer(invocation -> {
+			Object blob = invocation.callRealMethod();
+			if (uploads.getAndIncrement() == 0) {
+				firstSent.countDown();
+				release.await();
+			}
+			return blob;
+		}).when(storage).createFrom(any(BlobInfo.class), any(Path.class));
+		GcsPortfolioStore writer = store("a", Duration.ZERO, 2);
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		assertThat(firstSent.await(10, TimeUnit.SECONDS)).isTrue();
+		write(writer, "abc123", "abc123.html", "<p>second</p>");
+		release.countDown();
+
+		awaitUploaded("abc123/abc123.html", "<p>second</p>");
+		assertThat(uploads.get()).isEqualTo(2);
+		assertThat(read(store("b", Duration.ZERO), "abc123", "abc123.html")).contains("<p>second</p>");
+	}
+
+	@Test
+	void keepsServingTheCachedCopyUntilItIsDueForRevalidation() throws IOException, InterruptedException {
+		GcsPortfolioStore writer = store("a", Duration.ZERO);
+		GcsPortfolioStore reader = store("b", Duration.ofHours(1));
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		awaitUploaded("abc123/abc123.html", "<p>first</p>");
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>first</p>");
+
+		write(writer, "abc123", "abc123.html", "<p>second</p>");
+		awaitUploaded("abc123/abc123.html", "<p>second</p>");
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>first</p>");
+		assertThat(reader.revalidateAfter()).contains(Duration.ofHours(1));
+	}
+
+	@Test
+	void dropsCachedCopiesOfPortfoliosDeletedByAnotherInstance() throws IOException, InterruptedException {
+		GcsPortfolioStore writer = store("a", Duration.ZERO);
+		GcsPortfolioStore reader = store("b", Duration.ZERO);
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		awaitUploaded("abc123/abc123.html", "<p>first</p>");
+		assertThat(read(reader, "abc123", "abc123.html")).contains("<p>first</p>");
+
+		writer.delete("abc123");
+		assertThat(storage.get(blobId("abc123/abc123.html"))).isNull();
+		assertThat(read(reader, "abc123", "abc123.html")).isEmpty();
+		assertThat(reader.exists("abc123", "abc123.html")).isFalse();
+		assertThat(cacheRoot.resolve("b/abc123/abc123.html")).doesNotExist();
+	}
+
+	@Test
+	void reportsUsageAndListsPortfoliosFromTheBucket() throws IOException, InterruptedException {
+		GcsPortfolioStore writer = store("a", Duration.ZERO);
+		GcsPortfolioStore other = store("b", Duration.ZERO);
+
+		write(writer, "abc123", "abc123.html", "<p>first</p>");
+		write(writer, "def456", "def456.html", "<p>other</p>");
+		awaitUploaded("abc123/abc123.html", "<p>first</p>");
+		awaitUploaded("def456/def456.html", "<p>other</p>");
+
+		assertThat(other.usage("abc123")).hasValueSatisfying(usage -> assertThat(usage.bytes()).isEqualTo(12));
+		assertThat(other.usage("missing")).isEmpty();
+		Set<String> ids = new HashSet<>();
+		other.forEachPortfolio(ids::add);
+		assertThat(ids).containsExactlyInAnyOrder("abc123", "def456");
+	}
+
+	@Test
+	void reservesEachIdOnceAcrossInstances() throws IOException {
+		GcsPortfolioStore first = store("a", Duration.ZERO);
+		GcsPortfolioStore second = store("b", Duration.ZERO);
+
+		assertThat(first.reserve("abc123")).isTrue();
+		assertThat(second.reserve("abc123")).isFalse();
+		assertThat(first.reserve("abc123")).isFalse();
+		assertThat(second.reserve("def456")).isTrue();
+	}
+
+	@Test
+	void refusesToStartWithoutAnExplicitNodeId() {
+		assertThatThrownBy(() -> new GcsPortfolioStore(storage, BUCKET, PREFIX, cacheRoot.resolve("a").toString(),
+				DataSize.ofMegabytes(1), Duration.ZERO, 1, false, null))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("app.portfolio.id.node-id");
+	}
+
+	private GcsPortfolioStore store(String instance, Duration revalidateAfter) throws IOException {
+		return store(instance, revalidateAfter, 1);
+	}
+
+	private GcsPortfolioStore store(String instance, Duration revalidateAfter, int uploadThreads) throws IOException {
+		GcsPortfolioStore store = new GcsPortfolioStore(storage, BUCKET, PREFIX,
+				cacheRoot.resolve(instance).toString(), DataSize.ofMegabytes(1), revalidateAfter, uploadThreads, false, 0);
+		stores.add(store);
+		return store;
+	}
+
+	/**
+	 * The fake ignores preconditions, so {@code doesNotExist} on {@code create} is checked here.
+	 */
+	private static Storage withCreatePreconditions(Storage fake) {
+		Storage storage = spy(fake);
+		Object lock = new Object();
+		doAnswer(invocation -> {
+			BlobInfo info = invocation.getArgument(0);
+			synchronized (lock) {
+				if (fake.get(info.getBlobId()) != null) {
+					throw new StorageException(HttpURLConnection.HTTP_PRECON_FAILED, "Precondition Failed");
+				}
+				return invocation.callRealMethod();
+			}
+		}).when(storage).create(any(BlobInfo.class), any(byte[].class), any(Storage.BlobTargetOption[].class));
+		return storage;
+	}
+
+	private static void write(GcsPortfolioStore store, String portfolioId, String filename, String content) throws IOException {
+		Path staging = store.stagingFile(portfolioId, filename);
+		Files.writeString(staging, content);
+		store.commit(portfolioId, filename, staging);
+	}
+
+	private static Optional<String> read(GcsPortfolioStore store, String portfolioId, String filename) throws IOException {
+		Optional<StoredFile> file = store.locate(portfolioId, filename);
+		if (file.isEmpty()) {
+			return Optional.empty();
+		}
+		return Optional.of(Files.readString(file.get().path()));
+	}
+
+	/**
+	 * Uploads run in the background; waits until the writer "a" has no upload pending for
+	 * {@code key} and checks that the object holds {@code content}. The bucket is not
+	 * polled meanwhile: the fake garbles the size of an object read while it is uploaded.
+	 */
+	private void awaitUploaded(String key, String content) throws InterruptedException {
+		Path marker = cacheRoot.resolve("a").resolve(key + ".pending");
+		long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (Files.exists(marker)) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("Not uploaded: " + key);
+			}
+			Thread.sleep(10);
+		}
+		Blob blob = storage.get(blobId(key));
+		assertThat(blob).isNotNull();
+		assertThat(new String(blob.getContent(), StandardCharsets.UTF_8)).isEqualTo(content);
+	}
+
+	private static BlobId blobId(String key) {
+		return BlobId.of(BUCKET, PREFIX + key);
+	}
+}
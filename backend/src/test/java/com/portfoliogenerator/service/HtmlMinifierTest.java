@@ -0,0 +1,67 @@
+package com.portfoliogenerator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HtmlMinifierTest {
+
+	@Test
+	void dropsWhitespaceAroundTheDocumentAndInTheHead() throws IOException {
+		String html = """
+				<!DOCTYPE html>
+				<html lang="en">
+				  <head>
+				    <meta charset="utf-8">
+				    <title>  Jane   Doe  </title>
+				    <style> body { margin : 0 } </style>
+				  </head>
+				  <body>
+				    <p>Hello</p>
+				  </body>
+				</html>
+				""";
+
+		assertThat(HtmlMinifier.minify(html)).isEqualTo(
+				"<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\"><title>Jane Doe</title>"
+						+ "<style>body{margin:0}</style></head><body><p>Hello</p></body></html>");
+	}
+
+	@Test
+	void keepsOneSpaceBetweenElementsThatMayBeInline() throws IOException {
+		String html = """
+				<body>
+				  <ul class="nav">
+				    <li style="display: inline-block">About</li>
+				    <li style="display: inline-block">Work</li>
+				  </ul>
+				  <div class="tag">Java</div>
+				  <div class="tag">Go</div>
+				</body>
+				""";
+
+		assertThat(HtmlMinifier.minify(html)).isEqualTo(
+				"<body><ul class=\"nav\"> <li style=\"display:inline-block\">About</li> <li style=\"display:inline-block\">Work</li> </ul> "
+						+ "<div class=\"tag\">Java</div> <div class=\"tag\">Go</div></body>");
+	}
+
+	@Test
+	void keepsSpacesAroundScriptsInText() throws IOException {
+		assertThat(HtmlMinifier.minify("<body><p>a <script>x()</script> b <!-- note --> c</p></body>"))
+				.isEqualTo("<body><p>a <script>x()</script> b c</p></body>");
+	}
+
+	@Test
+	void copiesPreformattedTextAsItIs() throws IOException {
+		assertThat(HtmlMinifier.minify("<body><pre>  a\n   b</pre></body>")).isEqualTo("<body><pre>  a\n   b</pre></body>");
+	}
+
+	@Test
+	void rejectsUnterminatedStructure() {
+		assertThatThrownBy(() -> HtmlMinifier.minify("<body><p class=\"x>text</p></body>")).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> HtmlMinifier.minify("<body><!-- open")).isInstanceOf(IOException.class);
+	}
+}
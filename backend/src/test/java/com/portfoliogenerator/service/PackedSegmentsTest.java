@@ -0,0 +1,70 @@
+package com.portfoliogenerator.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackedSegmentsTest {
+	private static final long SEGMENT_MAX_BYTES = 1024 * 1024;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void keepsRecordsWrittenAfterARecordTornByACrash() throws IOException {
+		PackedSegments segments = open();
+		append(segments, "abc123", "<p>first</p>");
+		segments.close();
+		// A crash in the middle of the next index record.
+		Files.writeString(directory.resolve("index.log"), "P\tdef456\tdef456.ht", StandardOpenOption.APPEND);
+
+		segments = open();
+		append(segments, "ghi789", "<p>third</p>");
+		segments.close();
+
+		segments = open();
+		assertThat(read(segments, "abc123")).isEqualTo("<p>first</p>");
+		assertThat(read(segments, "ghi789")).isEqualTo("<p>third</p>");
+		assertThat(segments.contains("def456")).isFalse();
+		segments.close();
+		assertThat(Files.readAllLines(directory.resolve("index.log"))).hasSize(2);
+	}
+
+	@Test
+	void startsOverWhenTheOnlyRecordIsTorn() throws IOException {
+		Files.writeString(directory.resolve("index.log"), "P\tabc123\tabc");
+
+		PackedSegments segments = open();
+		append(segments, "def456", "<p>second</p>");
+		segments.close();
+
+		segments = open();
+		assertThat(segments.contains("abc123")).isFalse();
+		assertThat(read(segments, "def456")).isEqualTo("<p>second</p>");
+		segments.close();
+	}
+
+	private PackedSegments open() throws IOException {
+		return new PackedSegments(directory, SEGMENT_MAX_BYTES, 0.5);
+	}
+
+	private void append(PackedSegments segments, String portfolioId, String content) throws IOException {
+		Path source = Files.createTempFile(directory, "source", ".html");
+		Files.writeString(source, content);
+		segments.append(portfolioId, portfolioId + ".html", source, System.currentTimeMillis());
+		Files.deleteIfExists(source);
+	}
+
+	private static String read(PackedSegments segments, String portfolioId) throws IOException {
+		StoredFile file = segments.locate(portfolioId, portfolioId + ".html").orElseThrow();
+		byte[] bytes = Files.readAllBytes(file.path());
+		return new String(bytes, Math.toIntExact(file.offset()), Math.toIntExact(file.length()), StandardCharsets.UTF_8);
+	}
+}